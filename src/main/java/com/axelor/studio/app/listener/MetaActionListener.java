@@ -0,0 +1,36 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.app.listener;
+
+import com.axelor.meta.db.MetaAction;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.service.MetaActionViewCache;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class MetaActionListener {
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void onChange(MetaAction action) {
+    // A view read before the commit would put the old actions back in the cache.
+    BpmTools.afterCommit(MetaActionViewCache::invalidate);
+  }
+}
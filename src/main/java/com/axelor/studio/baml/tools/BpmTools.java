@@ -17,8 +17,17 @@
  */
 package com.axelor.studio.baml.tools;
 
+import com.axelor.db.JPA;
+import com.axelor.db.tenants.TenantAware;
 import com.axelor.db.tenants.TenantConfig;
 import com.axelor.db.tenants.TenantResolver;
+import com.axelor.inject.Beans;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.util.Collections;
+import javax.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
 
 public class BpmTools {
 
@@ -31,4 +40,58 @@ public class BpmTools {
 
     return tenantId;
   }
+
+  /**
+   * Run the action once the current transaction is committed, or right away without transaction.
+   * Nothing is run if the transaction is rolled back.
+   */
+  public static void afterCommit(Runnable action) {
+
+    EntityManager em = JPA.em();
+    if (!em.getTransaction().isActive()) {
+      action.run();
+      return;
+    }
+
+    em.unwrap(SessionImplementor.class)
+        .getActionQueue()
+        .registerProcess(
+            (success, session) -> {
+              if (success) {
+                action.run();
+              }
+            });
+  }
+
+  /**
+   * Run the task in the current thread on the database of the given tenant, in a request scope.
+   *
+   * <p>Meant for the threads of the pools shared by the tenants: the task gets its own unit of
+   * work, closed at the end, so the session of the next task is opened on the database of its
+   * own tenant.
+   */
+  public static void runInTenant(String tenantId, Runnable task) {
+
+    UnitOfWork unitOfWork = Beans.get(UnitOfWork.class);
+    // A session left open in the thread is bound to the database it was opened on.
+    unitOfWork.end();
+
+    Runnable scoped =
+        () -> {
+          final RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+          try (RequestScoper.CloseableScope ignore = scope.open()) {
+            task.run();
+          } finally {
+            unitOfWork.end();
+          }
+        };
+
+    if (tenantId == null || TenantConfig.DEFAULT_TENANT_ID.equals(tenantId)) {
+      scoped.run();
+      return;
+    }
+
+    // Not started: run in the current thread, with the tenant set until the task ends.
+    new TenantAware(scoped).withTransaction(false).tenantId(tenantId).run();
+  }
 }
@@ -19,51 +19,518 @@ package com.axelor.studio.bpm.context;
 
 import com.axelor.db.JPA;
 import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.db.WkfModel;
+import com.axelor.studio.db.WkfProcess;
 import com.axelor.studio.db.WkfProcessConfig;
 import com.axelor.studio.db.WkfTaskConfig;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import org.apache.commons.collections.MultiMap;
-import org.apache.commons.collections.map.MultiValueMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+/**
+ * Per tenant cache of the models, buttons and task configs used by the workflow evaluation.
+ *
+ * <p>Each tenant holds an immutable {@link Snapshot} with hash based indexes, so the checks done
+ * for every flushed entity are constant time. A config change builds a copy of the snapshot with
+ * the change, swapped in atomically once its transaction is committed, so a reader never sees a
+ * config half updated. A snapshot loaded while a config changed is not kept, as it may miss the
+ * change.
+ *
+ * <p>It also keeps the {@link ProcessDefinitionInfo} of the deployed process definitions, filled
+ * on deploy and on first use of a definition, so the execution listeners do not look up the
+ * definition and its {@link WkfProcess} on every node.
+ */
 public class WkfCache {
 
-  public static Map<String, Map<Long, String>> WKF_MODEL_CACHE =
-      new ConcurrentHashMap<String, Map<Long, String>>();
-  public static Map<String, MultiMap> WKF_BUTTON_CACHE = new ConcurrentHashMap<String, MultiMap>();
+  private static final Map<String, AtomicReference<State>> STATES = new ConcurrentHashMap<>();
+
+  private static final Map<String, Map<String, ProcessDefinitionInfo>> DEFINITIONS =
+      new ConcurrentHashMap<>();
+
+  private WkfCache() {}
+
+  public static Snapshot getSnapshot() {
+    return getSnapshot(BpmTools.getCurentTenant());
+  }
+
+  public static Snapshot getSnapshot(String tenantId) {
+
+    State state = getState(tenantId).get();
+    if (state.snapshot != null) {
+      return state.snapshot;
+    }
+
+    // Loaded outside of any lock: the query may flush configs and call back the listeners.
+    return install(tenantId, state.version, loadSnapshot());
+  }
+
+  /**
+   * Cache the snapshot loaded at the given version, unless a config changed since. Returns the
+   * snapshot to use, the cached one if another thread loaded it first.
+   */
+  static Snapshot install(String tenantId, long version, Snapshot loaded) {
+
+    AtomicReference<State> reference = getState(tenantId);
+    while (true) {
+      State state = reference.get();
+      if (state.snapshot != null) {
+        return state.snapshot;
+      }
+      if (state.version != version) {
+        return loaded;
+      }
+      if (reference.compareAndSet(state, new State(version, loaded))) {
+        return loaded;
+      }
+    }
+  }
+
+  static long getVersion(String tenantId) {
+    return getState(tenantId).get().version;
+  }
+
+  private static AtomicReference<State> getState(String tenantId) {
+    return STATES.computeIfAbsent(tenantId, key -> new AtomicReference<>(new State(0, null)));
+  }
+
+  /**
+   * Config of the node with the given name in the given wkf model. Looked up in the database when
+   * missing from the snapshot, which may not have a config saved by a running transaction yet. A
+   * node not found there either is remembered until the next config change.
+   */
+  public static TaskConfig getTaskConfig(Long wkfModelId, String name) {
+
+    String tenantId = BpmTools.getCurentTenant();
+    TaskConfig config = getSnapshot(tenantId).getTaskConfig(wkfModelId, name);
+    if (config != null || wkfModelId == null || name == null) {
+      return config;
+    }
+
+    // Taken before the query, so a node saved meanwhile is not remembered as missing.
+    State state = getState(tenantId).get();
+    String node = getNodeKey(wkfModelId, name);
+    if (state.missingNodes.contains(node)) {
+      return null;
+    }
+
+    WkfTaskConfig wkfTaskConfig =
+        JPA.all(WkfTaskConfig.class)
+            .filter("self.wkfModel.id = ?1 AND self.name = ?2", wkfModelId, name)
+            .fetchOne();
+
+    if (wkfTaskConfig == null) {
+      state.missingNodes.add(node);
+      return null;
+    }
+
+    return new TaskConfig(wkfTaskConfig);
+  }
+
+  private static String getNodeKey(Long wkfModelId, String name) {
+    return wkfModelId + "#" + name;
+  }
+
+  /**
+   * Swap the cached snapshot of the tenant, if any, for a copy with a config change. The version
+   * changes with the snapshot, so a snapshot being loaded is not cached without the change.
+   */
+  static void update(String tenantId, UnaryOperator<Snapshot> change) {
+    getState(tenantId)
+        .updateAndGet(
+            state ->
+                new State(
+                    state.version + 1,
+                    state.snapshot != null ? change.apply(state.snapshot) : null));
+  }
+
+  public static boolean isWkfModel(String tenantId, String modelName) {
+    return getSnapshot(tenantId).isWkfModel(modelName);
+  }
+
+  public static boolean isWkfButton(String tenantId, String signal) {
+    return getSnapshot(tenantId).isWkfButton(signal);
+  }
+
+  public static void initWkfCache() {
+    String tenantId = BpmTools.getCurentTenant();
+    remove(tenantId);
+    getSnapshot(tenantId);
+  }
+
+  public static void onProcessConfigSave(WkfProcessConfig config) {
+
+    String modelName = config.getModel();
+    if (config.getMetaJsonModel() != null) {
+      modelName = config.getMetaJsonModel().getName();
+    }
+
+    Long configId = config.getId();
+    String model = modelName;
+    String tenantId = BpmTools.getCurentTenant();
+    BpmTools.afterCommit(() -> update(tenantId, snapshot -> snapshot.withModel(configId, model)));
+  }
+
+  public static void onProcessConfigRemove(WkfProcessConfig config) {
+    Long configId = config.getId();
+    String tenantId = BpmTools.getCurentTenant();
+    BpmTools.afterCommit(() -> update(tenantId, snapshot -> snapshot.withModel(configId, null)));
+  }
+
+  public static void onTaskConfigSave(WkfTaskConfig config) {
+    TaskConfig taskConfig = new TaskConfig(config);
+    String tenantId = BpmTools.getCurentTenant();
+    // Found again by the transaction saving it, before the commit.
+    getState(tenantId)
+        .get()
+        .missingNodes
+        .remove(getNodeKey(taskConfig.getWkfModelId(), taskConfig.getName()));
+    BpmTools.afterCommit(() -> update(tenantId, snapshot -> snapshot.withTaskConfig(taskConfig)));
+  }
+
+  public static void onTaskConfigRemove(WkfTaskConfig config) {
+    Long configId = config.getId();
+    String tenantId = BpmTools.getCurentTenant();
+    BpmTools.afterCommit(() -> update(tenantId, snapshot -> snapshot.withoutTaskConfig(configId)));
+  }
+
+  /** Process definition with the given id, null if not cached yet. */
+  public static ProcessDefinitionInfo getProcessDefinition(String processDefinitionId) {
+    Map<String, ProcessDefinitionInfo> definitions = DEFINITIONS.get(BpmTools.getCurentTenant());
+    return definitions != null ? definitions.get(processDefinitionId) : null;
+  }
+
+  /**
+   * Cache the given process definition. One without {@link WkfProcess} is not cached, as its
+   * process may not be committed yet: it is looked up again on next use.
+   */
+  public static void putProcessDefinition(ProcessDefinitionInfo definition) {
+    putProcessDefinition(BpmTools.getCurentTenant(), definition);
+  }
+
+  private static void putProcessDefinition(String tenantId, ProcessDefinitionInfo definition) {
+    if (definition.getWkfProcessId() == null) {
+      return;
+    }
+    DEFINITIONS
+        .computeIfAbsent(tenantId, key -> new ConcurrentHashMap<>())
+        .put(definition.getProcessDefinitionId(), definition);
+  }
+
+  /**
+   * Drop the cache of the current tenant and cache the process definitions of a deployed model,
+   * once the deployment is committed: a snapshot loaded before would miss the deployed configs.
+   */
+  public static void onDeploy(WkfModel wkfModel) {
+
+    List<ProcessDefinitionInfo> definitions = new ArrayList<>();
+    if (wkfModel.getWkfProcessList() != null) {
+      for (WkfProcess process : wkfModel.getWkfProcessList()) {
+        if (process.getId() != null && process.getProcessId() != null) {
+          definitions.add(
+              new ProcessDefinitionInfo(process.getProcessId(), process.getName(), process));
+        }
+      }
+    }
+
+    String tenantId = BpmTools.getCurentTenant();
+    BpmTools.afterCommit(
+        () -> {
+          remove(tenantId);
+          definitions.forEach(definition -> putProcessDefinition(tenantId, definition));
+        });
+  }
+
+  /**
+   * Drop the snapshot and the process definitions of the current tenant, they are reloaded on next
+   * access.
+   */
+  public static void invalidate() {
+    remove(BpmTools.getCurentTenant());
+  }
 
-  public static void initWkfModelCache() {
+  public static void remove(String tenantId) {
+    update(tenantId, snapshot -> null);
+    DEFINITIONS.remove(tenantId);
+  }
 
-    List<WkfProcessConfig> wkfProcessConfigs = JPA.all(WkfProcessConfig.class).fetch();
+  protected static Snapshot loadSnapshot() {
 
-    Map<Long, String> modelMap = new HashMap<Long, String>();
-    modelMap.put(0L, "");
-    for (WkfProcessConfig config : wkfProcessConfigs) {
+    Map<Long, String> models = new HashMap<>();
+    for (WkfProcessConfig config : JPA.all(WkfProcessConfig.class).fetch()) {
       String model = config.getModel();
       if (config.getMetaJsonModel() != null) {
         model = config.getMetaJsonModel().getName();
       }
-      modelMap.put(config.getId(), model);
+      if (model != null) {
+        models.put(config.getId(), model);
+      }
+    }
+
+    List<TaskConfig> taskConfigs = new ArrayList<>();
+    for (WkfTaskConfig config : JPA.all(WkfTaskConfig.class).fetch()) {
+      taskConfigs.add(new TaskConfig(config));
+    }
+
+    return new Snapshot(models, taskConfigs);
+  }
+
+  /**
+   * Cached snapshot of a tenant, null until loaded, with the version of the configs and the nodes
+   * found without config since the last change.
+   */
+  private static final class State {
+
+    private final long version;
+
+    private final Snapshot snapshot;
+
+    private final Set<String> missingNodes = ConcurrentHashMap.newKeySet();
+
+    State(long version, Snapshot snapshot) {
+      this.version = version;
+      this.snapshot = snapshot;
     }
-    WKF_MODEL_CACHE.put(BpmTools.getCurentTenant(), modelMap);
   }
 
-  public static void initWkfButttonCache() {
+  /**
+   * Indexes of the configs of a tenant. Never changed once built: a config change builds a copy
+   * with the change, swapped in by {@link WkfCache#update}.
+   */
+  public static final class Snapshot {
+
+    private final ImmutableMap<Long, String> models;
+
+    private final ImmutableMap<Long, TaskConfig> taskConfigs;
+
+    private final ImmutableSetMultimap<String, Long> modelIndex;
 
-    List<WkfTaskConfig> wkfTaskConfigs = JPA.all(WkfTaskConfig.class).fetch();
+    private final ImmutableSetMultimap<String, Long> buttonIndex;
 
-    MultiMap multiMap = new MultiValueMap();
-    multiMap.put(0L, null);
-    for (WkfTaskConfig config : wkfTaskConfigs) {
-      if (config.getButton() != null) {
-        for (String btnName : config.getButton().split(",")) {
-          multiMap.put(config.getId(), btnName);
+    private final ImmutableTable<Long, String, TaskConfig> taskConfigIndex;
+
+    Snapshot(Map<Long, String> models, Collection<TaskConfig> taskConfigs) {
+
+      this.models = ImmutableMap.copyOf(models);
+
+      ImmutableSetMultimap.Builder<String, Long> modelIndexBuilder = ImmutableSetMultimap.builder();
+      models.forEach((configId, model) -> modelIndexBuilder.put(model, configId));
+      this.modelIndex = modelIndexBuilder.build();
+
+      Map<Long, TaskConfig> configs = new LinkedHashMap<>();
+      ImmutableSetMultimap.Builder<String, Long> buttonIndexBuilder =
+          ImmutableSetMultimap.builder();
+      Table<Long, String, TaskConfig> nodes = HashBasedTable.create();
+      for (TaskConfig config : taskConfigs) {
+        configs.put(config.getId(), config);
+        config.getButtons().forEach(button -> buttonIndexBuilder.put(button, config.getId()));
+        if (config.getWkfModelId() != null && config.getName() != null) {
+          nodes.put(config.getWkfModelId(), config.getName(), config);
         }
       }
+      this.taskConfigs = ImmutableMap.copyOf(configs);
+      this.buttonIndex = buttonIndexBuilder.build();
+      this.taskConfigIndex = ImmutableTable.copyOf(nodes);
+    }
+
+    public boolean isWkfModel(String modelName) {
+      return modelName != null && modelIndex.containsKey(modelName);
+    }
+
+    public boolean isWkfButton(String signal) {
+      return signal != null && buttonIndex.containsKey(signal);
+    }
+
+    /** Ids of the {@link WkfProcessConfig} defined for the given model. */
+    public Set<Long> getProcessConfigIds(String modelName) {
+      return modelName != null ? modelIndex.get(modelName) : ImmutableSet.of();
+    }
+
+    /** Ids of the {@link WkfTaskConfig} having the given button. */
+    public Set<Long> getTaskConfigIds(String signal) {
+      return signal != null ? buttonIndex.get(signal) : ImmutableSet.of();
+    }
+
+    /** Config of the node with the given name (task definition key) in the given wkf model. */
+    public TaskConfig getTaskConfig(Long wkfModelId, String name) {
+      if (wkfModelId == null || name == null) {
+        return null;
+      }
+      return taskConfigIndex.get(wkfModelId, name);
+    }
+
+    /** Copy with the model of the given process config, without the config if the model is null. */
+    Snapshot withModel(Long configId, String model) {
+      Map<Long, String> changed = new HashMap<>(models);
+      if (model != null) {
+        changed.put(configId, model);
+      } else {
+        changed.remove(configId);
+      }
+      return new Snapshot(changed, taskConfigs.values());
+    }
+
+    /** Copy with the given task config, replacing its previous version. */
+    Snapshot withTaskConfig(TaskConfig config) {
+      Map<Long, TaskConfig> changed = new LinkedHashMap<>(taskConfigs);
+      changed.put(config.getId(), config);
+      return new Snapshot(models, changed.values());
+    }
+
+    /** Copy without the given task config. */
+    Snapshot withoutTaskConfig(Long configId) {
+      Map<Long, TaskConfig> changed = new LinkedHashMap<>(taskConfigs);
+      changed.remove(configId);
+      return new Snapshot(models, changed.values());
+    }
+
+    @Override
+    public String toString() {
+      return "WkfCache.Snapshot{models=" + modelIndex + ", buttons=" + buttonIndex + "}";
+    }
+  }
+
+
+  /**
+   * Detached copy of the {@link WkfTaskConfig} fields used during the workflow evaluation, with
+   * the buttons already split.
+   */
+  public static final class TaskConfig {
+
+    private final Long id;
+
+    private final Long wkfModelId;
+
+    private final String name;
+
+    private final ImmutableList<String> buttons;
+
+    private final String expression;
+
+    private final String helpText;
+
+    private final boolean displayStatus;
+
+    private final ImmutableList<String> displayOnModels;
+
+    private final boolean createTask;
+
+    private final boolean notificationEmail;
+
+    private final String emailEvent;
+
+    TaskConfig(WkfTaskConfig config) {
+      this.id = config.getId();
+      this.wkfModelId = config.getWkfModel() != null ? config.getWkfModel().getId() : null;
+      this.name = config.getName();
+      this.buttons =
+          config.getButton() != null
+              ? ImmutableList.copyOf(config.getButton().split(","))
+              : ImmutableList.of();
+      this.expression = config.getExpression();
+      this.helpText = config.getHelpText();
+      this.displayStatus = config.getDisplayStatus();
+      this.displayOnModels =
+          config.getDisplayOnModels() != null
+              ? ImmutableList.copyOf(config.getDisplayOnModels().split(","))
+              : null;
+      this.createTask = config.getCreateTask();
+      this.notificationEmail = config.getNotificationEmail();
+      this.emailEvent = config.getEmailEvent();
+    }
+
+    public Long getId() {
+      return id;
+    }
+
+    public Long getWkfModelId() {
+      return wkfModelId;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** Buttons of the node, empty if the node has no button. */
+    public List<String> getButtons() {
+      return buttons;
+    }
+
+    public String getExpression() {
+      return expression;
+    }
+
+    public String getHelpText() {
+      return helpText;
+    }
+
+    /** Whether the node is displayed in the status of the records of the given model. */
+    public boolean isDisplayedOn(String modelName) {
+      return displayStatus && (displayOnModels == null || displayOnModels.contains(modelName));
+    }
+
+    public boolean getCreateTask() {
+      return createTask;
+    }
+
+    public boolean getNotificationEmail() {
+      return notificationEmail;
+    }
+
+    public String getEmailEvent() {
+      return emailEvent;
+    }
+  }
+
+  /** Key, {@link WkfProcess} and {@link WkfModel} ids of a deployed process definition. */
+  public static final class ProcessDefinitionInfo {
+
+    private final String processDefinitionId;
+
+    private final String key;
+
+    private final Long wkfProcessId;
+
+    private final Long wkfModelId;
+
+    public ProcessDefinitionInfo(String processDefinitionId, String key, WkfProcess wkfProcess) {
+      this.processDefinitionId = processDefinitionId;
+      this.key = key;
+      this.wkfProcessId = wkfProcess != null ? wkfProcess.getId() : null;
+      this.wkfModelId =
+          wkfProcess != null && wkfProcess.getWkfModel() != null
+              ? wkfProcess.getWkfModel().getId()
+              : null;
+    }
+
+    public String getProcessDefinitionId() {
+      return processDefinitionId;
     }
 
-    WKF_BUTTON_CACHE.put(BpmTools.getCurentTenant(), multiMap);
+    public String getKey() {
+      return key;
+    }
+
+    /** Id of the {@link WkfProcess} of the definition, null if the definition has none. */
+    public Long getWkfProcessId() {
+      return wkfProcessId;
+    }
+
+    public Long getWkfModelId() {
+      return wkfModelId;
+    }
   }
 }
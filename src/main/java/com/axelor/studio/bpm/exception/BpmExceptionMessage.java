@@ -25,7 +25,8 @@ public final class BpmExceptionMessage {
 
   public static final String MISSING_OUTPUT_LABEL = /*$$(*/ "Missing output label" /*)*/;
 
-  public static final String INVALID_IMPORT_FILE = /*$$(*/ "Data file must be excel file" /*)*/;
+  public static final String INVALID_IMPORT_FILE = /*$$(*/
+      "Data file must be an excel or csv file" /*)*/;
 
   public static final String INVALID_HEADER = /*$$(*/ "Header is invalid in import file" /*)*/;
 
@@ -46,6 +47,14 @@ public final class BpmExceptionMessage {
 
   public static final String MIGRATION_ERR = /*$$(*/ "Migration error" /*)*/;
 
+  public static final String MIGRATION_STARTED = /*$$(*/
+      "Migration of the running instances started, see the instance migrations" /*)*/;
+
+  public static final String MIGRATION_RUNNING = /*$$(*/ "Migration already running" /*)*/;
+
+  public static final String MIGRATION_QUEUE_FULL = /*$$(*/
+      "Too many migrations queued, please resume it later" /*)*/;
+
   public static final String CANT_RESTART_INACTIVE_PROCESS = /*$$(*/
       "Can't restart inactive process" /*)*/;
 }
@@ -18,13 +18,33 @@
 package com.axelor.studio.bpm.listener;
 
 import com.axelor.event.Observes;
+import com.axelor.events.ShutdownEvent;
 import com.axelor.events.StartupEvent;
 import com.axelor.inject.Beans;
+import com.axelor.studio.bpm.service.dashboard.WkfDashboardSnapshotRefresher;
 import com.axelor.studio.bpm.service.init.ProcessEngineService;
+import com.axelor.studio.bpm.service.init.WkfVariableMigrationExecutor;
+import com.axelor.studio.bpm.service.message.BpmErrorMessageExecutor;
+import com.axelor.studio.bpm.service.message.WkfNotificationExecutor;
+import com.axelor.studio.bpm.service.migration.WkfMigrationBatchExecutor;
+import com.axelor.studio.service.ws.WsClientPool;
+import com.axelor.studio.service.ws.WsConnectorExecutor;
 
 public class ServerStartListener {
 
   public void onStartUp(@Observes StartupEvent event) {
-    Beans.get(ProcessEngineService.class);
+    // Starts the engine of the default tenant, the other ones are started on first use. The
+    // variables of each engine are migrated when it is created.
+    Beans.get(ProcessEngineService.class).getEngine();
+  }
+
+  public void onShutdown(@Observes ShutdownEvent event) {
+    Beans.get(WkfVariableMigrationExecutor.class).shutdown();
+    Beans.get(BpmErrorMessageExecutor.class).shutdown();
+    Beans.get(WkfNotificationExecutor.class).shutdown();
+    Beans.get(WkfDashboardSnapshotRefresher.class).shutdown();
+    Beans.get(WkfMigrationBatchExecutor.class).shutdown();
+    Beans.get(WsConnectorExecutor.class).shutdown();
+    Beans.get(WsClientPool.class).shutdown();
   }
 }
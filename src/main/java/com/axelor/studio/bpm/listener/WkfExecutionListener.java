@@ -19,17 +19,24 @@ package com.axelor.studio.bpm.listener;
 
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.bpm.context.WkfCache;
+import com.axelor.studio.bpm.context.WkfCache.ProcessDefinitionInfo;
+import com.axelor.studio.bpm.context.WkfCache.TaskConfig;
+import com.axelor.studio.bpm.service.dashboard.WkfDashboardSnapshotRefresher;
 import com.axelor.studio.bpm.service.execution.WkfInstanceService;
+import com.axelor.studio.bpm.service.execution.WkfInstanceStatusService;
 import com.axelor.studio.db.WkfInstance;
 import com.axelor.studio.db.WkfProcess;
-import com.axelor.studio.db.WkfTaskConfig;
 import com.axelor.studio.db.repo.WkfInstanceRepository;
 import com.axelor.studio.db.repo.WkfProcessRepository;
-import com.axelor.studio.db.repo.WkfTaskConfigRepository;
 import com.google.inject.persist.Transactional;
 import java.util.Collection;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.camunda.bpm.engine.delegate.ExecutionListener;
+import org.camunda.bpm.engine.impl.cfg.TransactionState;
+import org.camunda.bpm.engine.impl.context.Context;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
 import org.camunda.bpm.engine.runtime.MessageCorrelationBuilder;
 import org.camunda.bpm.engine.runtime.MessageCorrelationResult;
 import org.camunda.bpm.engine.runtime.ProcessInstance;
@@ -113,8 +120,13 @@ public class WkfExecutionListener implements ExecutionListener {
         sendMessage(flowElement, execution);
       }
 
-      WkfTaskConfig wkfTaskConfig = getWkfTaskConfig(execution);
-      Beans.get(WkfInstanceService.class).onNodeActivation(wkfTaskConfig, execution);
+      Beans.get(WkfInstanceStatusService.class).onNodeStart(execution);
+
+      TaskConfig taskConfig = getTaskConfig(execution);
+      if (taskConfig != null) {
+        Beans.get(WkfInstanceService.class).onNodeActivation(taskConfig, execution);
+      }
+      onDashboardChange(taskConfig);
     }
   }
 
@@ -132,11 +144,36 @@ public class WkfExecutionListener implements ExecutionListener {
 
     } else if (blockingNode(type)) {
 
-      WkfTaskConfig wkfTaskConfig = getWkfTaskConfig(execution);
-      Beans.get(WkfInstanceService.class).onNodeDeactivation(wkfTaskConfig, execution);
+      Beans.get(WkfInstanceStatusService.class).onNodeEnd(execution);
+
+      TaskConfig taskConfig = getTaskConfig(execution);
+      if (taskConfig != null) {
+        Beans.get(WkfInstanceService.class).onNodeDeactivation(taskConfig, execution);
+      }
+      onDashboardChange(taskConfig);
     }
   }
 
+  /** Refresh the dashboard snapshots of the model once the node change is committed. */
+  private void onDashboardChange(TaskConfig taskConfig) {
+
+    CommandContext commandContext = Context.getCommandContext();
+    if (taskConfig == null || taskConfig.getWkfModelId() == null || commandContext == null) {
+      return;
+    }
+
+    String tenantId = BpmTools.getCurentTenant();
+    Long wkfModelId = taskConfig.getWkfModelId();
+
+    commandContext
+        .getTransactionContext()
+        .addTransactionListener(
+            TransactionState.COMMITTED,
+            context ->
+                Beans.get(WkfDashboardSnapshotRefresher.class)
+                    .onModelChange(tenantId, wkfModelId));
+  }
+
   private void sendMessage(FlowElement flowElement, DelegateExecution execution) {
 
     Collection<MessageEventDefinition> messageDefinitions =
@@ -181,11 +218,33 @@ public class WkfExecutionListener implements ExecutionListener {
 
   private String getProcessKey(DelegateExecution execution, String processDefinitionId) {
 
-    return execution
-        .getProcessEngineServices()
-        .getRepositoryService()
-        .getProcessDefinition(processDefinitionId)
-        .getKey();
+    return getProcessDefinition(execution, processDefinitionId).getKey();
+  }
+
+  private ProcessDefinitionInfo getProcessDefinition(
+      DelegateExecution execution, String processDefinitionId) {
+
+    ProcessDefinitionInfo definition = WkfCache.getProcessDefinition(processDefinitionId);
+    if (definition != null) {
+      return definition;
+    }
+
+    String key =
+        execution
+            .getProcessEngineServices()
+            .getRepositoryService()
+            .getProcessDefinition(processDefinitionId)
+            .getKey();
+    WkfProcess wkfProcess =
+        Beans.get(WkfProcessRepository.class)
+            .all()
+            .filter("self.processId = ?1", processDefinitionId)
+            .fetchOne();
+
+    definition = new ProcessDefinitionInfo(processDefinitionId, key, wkfProcess);
+    WkfCache.putProcessDefinition(definition);
+
+    return definition;
   }
 
   @Transactional
@@ -195,33 +254,29 @@ public class WkfExecutionListener implements ExecutionListener {
     WkfInstance wkfInstance;
     wkfInstance = new WkfInstance();
     wkfInstance.setInstanceId(instanceId);
+    Long wkfProcessId =
+        getProcessDefinition(execution, execution.getProcessDefinitionId()).getWkfProcessId();
     WkfProcess wkfProcess =
-        Beans.get(WkfProcessRepository.class)
-            .all()
-            .filter("self.processId = ?1", execution.getProcessDefinitionId())
-            .fetchOne();
+        wkfProcessId != null ? Beans.get(WkfProcessRepository.class).find(wkfProcessId) : null;
     wkfInstance.setName(wkfProcess.getProcessId() + " : " + instanceId);
     wkfInstance.setWkfProcess(wkfProcess);
     instanceRepo.save(wkfInstance);
   }
 
-  private WkfTaskConfig getWkfTaskConfig(DelegateExecution execution) {
-    WkfTaskConfig wkfTaskConfig =
-        Beans.get(WkfTaskConfigRepository.class)
-            .all()
-            .filter(
-                "self.name = ? and self.wkfModel.id = (select wkfModel.id from WkfProcess where processId = ?)",
-                execution.getCurrentActivityId(),
-                execution.getProcessDefinitionId())
-            .fetchOne();
+  private TaskConfig getTaskConfig(DelegateExecution execution) {
+
+    Long wkfModelId =
+        getProcessDefinition(execution, execution.getProcessDefinitionId()).getWkfModelId();
+    TaskConfig taskConfig =
+        WkfCache.getSnapshot().getTaskConfig(wkfModelId, execution.getCurrentActivityId());
 
     log.debug(
         "Task config searched with taskId: {}, processInstanceId: {}, found:{}",
         execution.getCurrentActivityId(),
         execution.getProcessInstanceId(),
-        wkfTaskConfig);
+        taskConfig != null ? taskConfig.getId() : null);
 
-    return wkfTaskConfig;
+    return taskConfig;
   }
 
   private boolean blockingNode(String type) {
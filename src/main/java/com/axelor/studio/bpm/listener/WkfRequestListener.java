@@ -38,11 +38,11 @@ import com.axelor.studio.db.repo.WkfInstanceRepository;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.collections.MultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,9 +55,6 @@ public class WkfRequestListener {
       throws Exception {
 
     String tenantId = BpmTools.getCurentTenant();
-    if (!WkfCache.WKF_MODEL_CACHE.containsKey(tenantId)) {
-      WkfCache.initWkfModelCache();
-    }
 
     processUpdated(event, tenantId);
     processDeleted(event, tenantId);
@@ -66,6 +63,7 @@ public class WkfRequestListener {
   private void processUpdated(BeforeTransactionComplete event, String tenantId) throws Exception {
 
     Set<? extends Model> updated = new HashSet<Model>(event.getUpdated());
+    List<Model> wkfModels = new ArrayList<>();
 
     for (Model model : updated) {
       String modelName = EntityHelper.getEntityClass(model).getName();
@@ -73,11 +71,15 @@ public class WkfRequestListener {
         modelName = ((MetaJsonRecord) model).getJsonModel();
       }
 
-      if (WkfCache.WKF_MODEL_CACHE.get(tenantId).containsValue(modelName)) {
+      if (WkfCache.isWkfModel(tenantId, modelName)) {
         log.trace("Eval workflow from updated model: {}, id: {}", modelName, model.getId());
-        Beans.get(WkfInstanceService.class).evalInstance(model, null);
+        wkfModels.add(model);
       }
     }
+
+    if (!wkfModels.isEmpty()) {
+      Beans.get(WkfInstanceService.class).evalInstances(wkfModels);
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -101,13 +103,7 @@ public class WkfRequestListener {
       return;
     }
 
-    String tenantId = BpmTools.getCurentTenant();
-
-    if (!WkfCache.WKF_MODEL_CACHE.containsKey(tenantId)) {
-      WkfCache.initWkfModelCache();
-    }
-
-    Map<Long, String> modelMap = WkfCache.WKF_MODEL_CACHE.get(tenantId);
+    WkfCache.Snapshot wkfCache = WkfCache.getSnapshot();
 
     Class<? extends Model> model = (Class<? extends Model>) context.getContextClass();
 
@@ -117,16 +113,12 @@ public class WkfRequestListener {
       modelName = (String) context.get("jsonModel");
     }
 
-    if (modelMap != null && modelMap.containsValue(modelName)) {
+    if (wkfCache.isWkfModel(modelName)) {
       Long id = (Long) context.get("id");
-      if (!WkfCache.WKF_BUTTON_CACHE.containsKey(tenantId)) {
-        WkfCache.initWkfButttonCache();
-      }
-      MultiMap multiMap = WkfCache.WKF_BUTTON_CACHE.get(tenantId);
 
-      if (multiMap != null && multiMap.containsValue(signal) && id != null) {
+      if (wkfCache.isWkfButton(signal) && id != null) {
         Object res = postAction.getResult();
-        log.trace("Wkf button cache: {}", WkfCache.WKF_BUTTON_CACHE);
+        log.trace("Wkf cache: {}", wkfCache);
         log.trace("Eval wkf from button model: {}, id: {}", model.getName(), id);
         String helpText =
             Beans.get(WkfInstanceService.class).evalInstance(JPA.find(model, id), signal);
@@ -173,7 +165,7 @@ public class WkfRequestListener {
         modelName = ((MetaJsonRecord) model).getJsonModel();
       }
 
-      if (WkfCache.WKF_MODEL_CACHE.get(tenantId).containsValue(modelName)) {
+      if (WkfCache.isWkfModel(tenantId, modelName)) {
         log.trace("Remove wkf instance of deleted model: {}, id: {}", modelName, model.getId());
         WkfInstance wkfInstance =
             wkfInstanceRepository.findByInstanceId(model.getProcessInstanceId());
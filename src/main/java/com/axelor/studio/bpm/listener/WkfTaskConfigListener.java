@@ -17,37 +17,22 @@
  */
 package com.axelor.studio.bpm.listener;
 
-import com.axelor.studio.baml.tools.BpmTools;
 import com.axelor.studio.bpm.context.WkfCache;
 import com.axelor.studio.db.WkfTaskConfig;
 import javax.persistence.PostPersist;
 import javax.persistence.PostRemove;
 import javax.persistence.PostUpdate;
-import org.apache.commons.collections.map.MultiValueMap;
 
 public class WkfTaskConfigListener {
 
   @PostPersist
   @PostUpdate
   public void onSave(WkfTaskConfig config) {
-    if (config.getButton() != null) {
-      String tenantId = BpmTools.getCurentTenant();
-      if (!WkfCache.WKF_BUTTON_CACHE.containsKey(tenantId)) {
-        WkfCache.WKF_BUTTON_CACHE.put(tenantId, new MultiValueMap());
-      }
-      onRemove(config);
-      for (String btnName : config.getButton().split(",")) {
-        WkfCache.WKF_BUTTON_CACHE.get(tenantId).put(config.getId(), btnName);
-      }
-    }
+    WkfCache.onTaskConfigSave(config);
   }
 
   @PostRemove
   public void onRemove(WkfTaskConfig config) {
-
-    String tenantId = BpmTools.getCurentTenant();
-    if (WkfCache.WKF_BUTTON_CACHE.containsKey(tenantId)) {
-      WkfCache.WKF_BUTTON_CACHE.get(tenantId).remove(config.getId());
-    }
+    WkfCache.onTaskConfigRemove(config);
   }
 }
@@ -0,0 +1,94 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.listener;
+
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
+import com.axelor.studio.db.WsAuthenticator;
+import com.axelor.studio.db.WsConnector;
+import com.axelor.studio.db.repo.WsAuthenticatorRepository;
+import com.axelor.studio.db.repo.WsConnectorRepository;
+import com.axelor.studio.service.ws.WsConnectorService;
+import java.util.HashMap;
+import java.util.Map;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.delegate.Expression;
+import org.camunda.bpm.engine.impl.bpmn.behavior.AbstractBpmnActivityBehavior;
+import org.camunda.bpm.engine.impl.pvm.delegate.ActivityExecution;
+
+/**
+ * Service task calling a connector without holding a job thread: the connector is called once the
+ * transaction is committed and the task waits, until it is signaled with the results of the
+ * requests in the result variable.
+ *
+ * <p>Used as {@code camunda:class} of a service task, with the {@code connector}, {@code
+ * authenticator} (optional) and {@code resultVariable} fields, holding names or expressions.
+ */
+public class WsConnectorTaskExecution extends AbstractBpmnActivityBehavior {
+
+  protected static final String DEFAULT_RESULT_VARIABLE = "connectorResult";
+
+  protected Expression connector;
+
+  protected Expression authenticator;
+
+  protected Expression resultVariable;
+
+  @Override
+  public void execute(ActivityExecution execution) throws Exception {
+
+    String connectorName = getValue(connector, execution);
+    WsConnector wsConnector =
+        Beans.get(WsConnectorRepository.class)
+            .all()
+            .filter("self.name = ?1", connectorName)
+            .fetchOne();
+    if (wsConnector == null) {
+      throw new IllegalStateException(
+          String.format(I18n.get("No connector found with name: %s"), connectorName));
+    }
+
+    String authenticatorName = getValue(authenticator, execution);
+    WsAuthenticator wsAuthenticator =
+        authenticatorName != null
+            ? Beans.get(WsAuthenticatorRepository.class)
+                .all()
+                .filter("self.name = ?1", authenticatorName)
+                .fetchOne()
+            : null;
+
+    String resultVar = getValue(resultVariable, execution);
+
+    Map<String, Object> ctx = new HashMap<>(execution.getVariables());
+    ctx.put("_beans", Beans.class);
+
+    // Left when signaled, by the default signal of the behavior.
+    Beans.get(WsConnectorService.class)
+        .callConnectorAndSignal(
+            wsConnector,
+            wsAuthenticator,
+            ctx,
+            execution,
+            resultVar != null ? resultVar : DEFAULT_RESULT_VARIABLE);
+  }
+
+  protected String getValue(Expression expression, DelegateExecution execution) {
+    Object value = expression != null ? expression.getValue(execution) : null;
+    return value != null && !value.toString().isEmpty() ? value.toString() : null;
+  }
+}
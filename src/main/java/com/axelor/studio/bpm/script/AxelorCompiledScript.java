@@ -0,0 +1,55 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.script;
+
+import groovy.lang.Script;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+
+/**
+ * Script of a BPM node, kept by the Camunda scripting layer per script element.
+ *
+ * <p>The Groovy class of the script is compiled once and kept by the {@link WkfScriptCache}, so an
+ * evaluation only binds the variables and runs it.
+ */
+public class AxelorCompiledScript extends CompiledScript {
+
+  private final AxelorScriptEngine engine;
+
+  private final Class<? extends Script> scriptClass;
+
+  public AxelorCompiledScript(AxelorScriptEngine engine, Class<? extends Script> scriptClass) {
+    this.engine = engine;
+    this.scriptClass = scriptClass;
+  }
+
+  @Override
+  public Object eval(ScriptContext context) {
+    return engine.run(scriptClass, context);
+  }
+
+  @Override
+  public ScriptEngine getEngine() {
+    return engine;
+  }
+
+  public Class<? extends Script> getScriptClass() {
+    return scriptClass;
+  }
+}
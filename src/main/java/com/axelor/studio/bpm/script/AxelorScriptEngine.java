@@ -20,17 +20,16 @@ package com.axelor.studio.bpm.script;
 import com.axelor.auth.AuthUtils;
 import com.axelor.inject.Beans;
 import com.axelor.meta.db.repo.MetaJsonRecordRepository;
-import com.axelor.script.GroovyScriptHelper;
+import com.axelor.script.ScriptBindings;
 import com.axelor.studio.bpm.context.WkfContextHelper;
 import com.axelor.studio.bpm.exception.AxelorScriptEngineException;
-import com.axelor.studio.bpm.service.message.BpmErrorMessageService;
+import com.axelor.studio.bpm.service.message.BpmErrorMessageExecutor;
 import com.axelor.studio.bpm.transformation.WkfTransformationHelper;
 import com.axelor.utils.context.FullContext;
+import groovy.lang.Binding;
+import groovy.lang.Script;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import javax.script.Bindings;
 import javax.script.CompiledScript;
 import javax.script.ScriptContext;
@@ -38,6 +37,7 @@ import javax.script.ScriptEngineFactory;
 import javax.script.ScriptException;
 import org.camunda.bpm.engine.impl.pvm.runtime.PvmExecutionImpl;
 import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 public class AxelorScriptEngine extends GroovyScriptEngineImpl {
 
@@ -50,6 +50,18 @@ public class AxelorScriptEngine extends GroovyScriptEngineImpl {
 
   @Override
   public Object eval(String script, ScriptContext ctx) {
+
+    Class<? extends Script> scriptClass;
+    try {
+      scriptClass = WkfScriptCache.getScriptClass(script);
+    } catch (IllegalStateException e) {
+      throw onError(ctx.getBindings(ctx.getScopes().get(0)), e);
+    }
+
+    return run(scriptClass, ctx);
+  }
+
+  protected Object run(Class<? extends Script> scriptClass, ScriptContext ctx) {
     Bindings bindings = ctx.getBindings(ctx.getScopes().get(0));
     bindings.put("$json", Beans.get(MetaJsonRecordRepository.class));
     bindings.put("$ctx", WkfContextHelper.class);
@@ -63,27 +75,30 @@ public class AxelorScriptEngine extends GroovyScriptEngineImpl {
     bindings.put("$transform", WkfTransformationHelper.class);
     Object object = null;
     try {
-      object = new GroovyScriptHelper(bindings).eval(script);
+      // Special variables resolved as by the platform script helper.
+      Binding binding = new Binding(new ScriptBindings(bindings));
+      object = InvokerHelper.createScript(scriptClass, binding).run();
     } catch (Exception e) {
-      PvmExecutionImpl execution = (PvmExecutionImpl) bindings.get("execution");
-      ExecutorService executor = Executors.newCachedThreadPool();
-      executor.submit(
-          new Callable<Boolean>() {
-            @Override
-            public Boolean call() throws Exception {
-              Beans.get(BpmErrorMessageService.class)
-                  .sendBpmErrorMessage(execution, e.getMessage(), null, null);
-              return true;
-            }
-          });
-      throw new AxelorScriptEngineException(e);
+      throw onError(bindings, e);
     }
     return object;
   }
 
+  protected AxelorScriptEngineException onError(Bindings bindings, Exception e) {
+    PvmExecutionImpl execution = (PvmExecutionImpl) bindings.get("execution");
+    Beans.get(BpmErrorMessageExecutor.class).submit(execution, e.getMessage(), null, null);
+    return new AxelorScriptEngineException(e);
+  }
+
   @Override
   public CompiledScript compile(String scriptSource) throws ScriptException {
-    return null;
+    try {
+      return new AxelorCompiledScript(this, WkfScriptCache.getScriptClass(scriptSource));
+    } catch (IllegalStateException e) {
+      ScriptException error = new ScriptException(e.getMessage());
+      error.initCause(e.getCause());
+      throw error;
+    }
   }
 
   public ScriptEngineFactory getFactory() {
@@ -0,0 +1,128 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.script;
+
+import com.axelor.studio.baml.tools.BpmTools;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.Script;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of the compiled scripts of the workflow engine.
+ *
+ * <p>Entries are kept per tenant and keyed by the script source. The cached value is the Groovy
+ * class of the script, compiled with the default imports of the platform script helper, so a
+ * cached script is only bound and run.
+ */
+public class WkfScriptCache {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfScriptCache.class);
+
+  protected static final int MAX_SIZE = 2000;
+
+  protected static final int EXPIRE_AFTER_ACCESS_MINUTES = 60;
+
+  private static final Map<String, Cache<String, Class<? extends Script>>> SCRIPTS =
+      new ConcurrentHashMap<>();
+
+  private static final AtomicLong COUNTER = new AtomicLong();
+
+  private static final GroovyClassLoader CLASS_LOADER =
+      new GroovyClassLoader(WkfScriptCache.class.getClassLoader(), createConfiguration());
+
+  private WkfScriptCache() {}
+
+  protected static CompilerConfiguration createConfiguration() {
+
+    ImportCustomizer importCustomizer = new ImportCustomizer();
+    importCustomizer.addImport("__repo__", "com.axelor.db.JpaRepository");
+    importCustomizer.addImports(
+        "java.time.ZonedDateTime",
+        "java.time.LocalDateTime",
+        "java.time.LocalDate",
+        "java.time.LocalTime");
+
+    CompilerConfiguration config = new CompilerConfiguration();
+    config.getOptimizationOptions().put("indy", true);
+    config.getOptimizationOptions().put("int", false);
+    config.addCompilationCustomizers(importCustomizer);
+
+    return config;
+  }
+
+  /** Compiled class of the given script, compiled on first use for the current tenant. */
+  public static Class<? extends Script> getScriptClass(String source) {
+
+    Cache<String, Class<? extends Script>> cache =
+        SCRIPTS.computeIfAbsent(
+            BpmTools.getCurentTenant(),
+            key ->
+                CacheBuilder.newBuilder()
+                    .maximumSize(MAX_SIZE)
+                    .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+                    .recordStats()
+                    .build());
+
+    try {
+      return cache.get(source, () -> compile(source));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  protected static Class<? extends Script> compile(String source) {
+
+    log.trace("Script cache miss: {}", source);
+
+    GroovyCodeSource codeSource =
+        new GroovyCodeSource(
+            source, "WkfScript" + COUNTER.incrementAndGet() + ".groovy", "/groovy/script");
+
+    return (Class<? extends Script>) CLASS_LOADER.parseClass(codeSource, false);
+  }
+
+  /** Hit and miss counts of all tenants. */
+  public static CacheStats getStats() {
+
+    CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    for (Cache<String, Class<? extends Script>> cache : SCRIPTS.values()) {
+      stats = stats.plus(cache.stats());
+    }
+
+    return stats;
+  }
+
+  public static void invalidate(String tenantId) {
+    SCRIPTS.remove(tenantId);
+  }
+}
@@ -116,8 +116,7 @@ public class WkfCommonServiceImpl implements WkfCommonService {
     }
 
     if (expr.startsWith("${") && expr.endsWith("}")) {
-      expr = expr.replaceFirst("\\$\\{", "");
-      expr = expr.substring(0, expr.length() - 1);
+      expr = expr.substring(2, expr.length() - 1);
     }
 
     GroovyScriptHelper helper;
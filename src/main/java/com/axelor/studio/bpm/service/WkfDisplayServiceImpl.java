@@ -20,19 +20,20 @@ package com.axelor.studio.bpm.service;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.db.JPA;
-import com.axelor.db.Model;
-import com.axelor.inject.Beans;
 import com.axelor.meta.CallMethod;
 import com.axelor.meta.db.MetaJsonRecord;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.bpm.context.WkfCache;
 import com.axelor.studio.bpm.service.execution.WkfInstanceService;
+import com.axelor.studio.bpm.service.execution.WkfInstanceStatusService;
 import com.axelor.studio.bpm.service.init.ProcessEngineService;
 import com.axelor.studio.db.WkfInstance;
 import com.axelor.studio.db.WkfModel;
 import com.axelor.studio.db.WkfProcess;
-import com.axelor.studio.db.WkfTaskConfig;
-import com.axelor.studio.db.repo.WkfInstanceRepository;
 import com.axelor.studio.db.repo.WkfTaskConfigRepository;
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -41,7 +42,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.persistence.Query;
 import org.camunda.bpm.engine.ActivityTypes;
 import org.camunda.bpm.engine.HistoryService;
 import org.camunda.bpm.engine.ProcessEngine;
@@ -60,12 +63,18 @@ public class WkfDisplayServiceImpl implements WkfDisplayService {
 
   protected static final Logger log = LoggerFactory.getLogger(WkfDisplayServiceImpl.class);
 
+  /** Node counts by tenant and wkf model, kept for a short time as the heatmap is costly. */
+  protected static final Cache<String, String> NODE_COUNTS =
+      CacheBuilder.newBuilder().maximumSize(100).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
   @Inject protected ProcessEngineService engineService;
 
   @Inject protected WkfInstanceService wkfInstanceService;
 
   @Inject protected WkfTaskConfigRepository wkfTaskConfigRepository;
 
+  @Inject protected WkfInstanceStatusService wkfInstanceStatusService;
+
   @Override
   @CallMethod
   public String getInstanceUrl(WkfInstance wkfInstance) {
@@ -197,24 +206,10 @@ public class WkfDisplayServiceImpl implements WkfDisplayService {
 
     try {
 
-      Map<String, Integer> activityCountMap = new HashMap<>();
-
-      List<WkfInstance> instances =
-          Beans.get(WkfInstanceRepository.class)
-              .all()
-              .filter("self.wkfProcess.wkfModel.id = ?1", wkfModel.getId())
-              .fetch();
-
-      log.trace("Total process instances: {}", instances.size());
-      for (WkfInstance instance : instances) {
-        getActivityPassCount(instance.getInstanceId(), activityCountMap);
-      }
-
-      log.trace("Count map: {}", activityCountMap);
       String activityCount =
-          activityCountMap.keySet().stream()
-              .map(it -> it + ":" + activityCountMap.get(it))
-              .collect(Collectors.joining(","));
+          NODE_COUNTS.get(
+              BpmTools.getCurentTenant() + ":" + wkfModel.getId(),
+              () -> getActivityCount(wkfModel));
 
       String url =
           String.format(
@@ -231,6 +226,48 @@ public class WkfDisplayServiceImpl implements WkfDisplayService {
     return null;
   }
 
+  /**
+   * Activity pass counts of all the instances of the model, counted with one grouped query on the
+   * history. A multi-instance activity is counted once per multi-instance body.
+   */
+  @SuppressWarnings("unchecked")
+  protected String getActivityCount(WkfModel wkfModel) {
+
+    Query query =
+        JPA.em()
+            .createNativeQuery(
+                "SELECT activity.act_id_, activity.act_type_, COUNT(*) "
+                    + "FROM act_hi_actinst activity "
+                    + "WHERE activity.proc_inst_id_ IN ("
+                    + "SELECT instance.instance_id FROM studio_wkf_instance instance "
+                    + "JOIN studio_wkf_process process ON process.id = instance.wkf_process "
+                    + "WHERE process.wkf_model = :wkfModelId) "
+                    + "GROUP BY activity.act_id_, activity.act_type_");
+    query.setParameter("wkfModelId", wkfModel.getId());
+
+    Map<String, Integer> activityCountMap = new HashMap<>();
+    Set<String> multiInstanceIds = new HashSet<>();
+
+    for (Object[] row : (List<Object[]>) query.getResultList()) {
+      String activityId = (String) row[0];
+      int count = ((Number) row[2]).intValue();
+
+      if (ActivityTypes.MULTI_INSTANCE_BODY.equals(row[1])) {
+        activityId = activityId.split("#")[0];
+        multiInstanceIds.add(activityId);
+        activityCountMap.put(activityId, count);
+      } else if (!multiInstanceIds.contains(activityId)) {
+        activityCountMap.merge(activityId, count, Integer::sum);
+      }
+    }
+
+    log.trace("Count map: {}", activityCountMap);
+
+    return activityCountMap.keySet().stream()
+        .map(it -> it + ":" + activityCountMap.get(it))
+        .collect(Collectors.joining(","));
+  }
+
   @Override
   public List<Map<String, Object>> getWkfStatus(Class<?> klass, Long id) {
 
@@ -240,40 +277,46 @@ public class WkfDisplayServiceImpl implements WkfDisplayService {
       return statusList;
     }
 
-    Model model = (Model) JPA.em().find(klass, id);
-
-    if (model == null) {
+    // Instance of the record and json model name of a json record, with one query.
+    boolean jsonRecord = MetaJsonRecord.class.isAssignableFrom(klass);
+    List<?> result =
+        JPA.em()
+            .createQuery(
+                "SELECT self"
+                    + (jsonRecord ? ", record.jsonModel" : "")
+                    + " FROM WkfInstance self, "
+                    + klass.getName()
+                    + " record"
+                    + " WHERE record.id = :id AND self.instanceId = record.processInstanceId")
+            .setParameter("id", id)
+            .setMaxResults(1)
+            .getResultList();
+
+    if (result.isEmpty()) {
       return statusList;
     }
 
-    String processInstanceId = model.getProcessInstanceId();
-
-    log.debug("Display wkf nodes of processInstanceId: {}", processInstanceId);
-
-    if (processInstanceId != null) {
-
-      WkfInstance wkfInstance =
-          Beans.get(WkfInstanceRepository.class).findByInstanceId(processInstanceId);
-
-      if (wkfInstance == null) {
-        return statusList;
-      }
+    WkfInstance wkfInstance;
+    String klassName = klass.getSimpleName();
+    if (jsonRecord) {
+      Object[] row = (Object[]) result.get(0);
+      wkfInstance = (WkfInstance) row[0];
+      klassName = (String) row[1];
+    } else {
+      wkfInstance = (WkfInstance) result.get(0);
+    }
 
-      String klassName = klass.getSimpleName();
-      if (model instanceof MetaJsonRecord) {
-        klassName = ((MetaJsonRecord) model).getJsonModel();
-      }
+    log.debug("Display wkf nodes of processInstanceId: {}", wkfInstance.getInstanceId());
 
-      boolean valid = isValidDisplayModel(klassName, wkfInstance);
+    boolean valid = isValidDisplayModel(klassName, wkfInstance);
 
-      log.debug("Is valid model to display wkf nodes : {}", valid);
-      if (!valid) {
-        return statusList;
-      }
-
-      addActiveNodes(statusList, wkfInstance, klassName);
+    log.debug("Is valid model to display wkf nodes : {}", valid);
+    if (!valid) {
+      return statusList;
     }
 
+    addActiveNodes(statusList, wkfInstance, klassName);
+
     return statusList;
   }
 
@@ -307,81 +350,30 @@ public class WkfDisplayServiceImpl implements WkfDisplayService {
   private void addActiveNodes(
       List<Map<String, Object>> statusList, WkfInstance wkfInstance, String klassName) {
 
-    HistoryService historyService = engineService.getEngine().getHistoryService();
+    WkfModel wkfModel = wkfInstance.getWkfProcess().getWkfModel();
+    WkfCache.Snapshot wkfCache = WkfCache.getSnapshot();
+    User activeUser = AuthUtils.getUser();
 
-    List<HistoricActivityInstance> activeNodes =
-        historyService
-            .createHistoricActivityInstanceQuery()
-            .processInstanceId(wkfInstance.getInstanceId())
-            .unfinished()
-            .list();
-
-    if (activeNodes.isEmpty()) {
-
-      List<String> terminatedNodeIds = getTerminatedActivityIds(wkfInstance.getInstanceId());
-      if (!terminatedNodeIds.isEmpty()) {
-        activeNodes =
-            historyService
-                .createHistoricActivityInstanceQuery()
-                .activityId(terminatedNodeIds.get(0))
-                .processInstanceId(wkfInstance.getInstanceId())
-                .list();
-      }
+    String color = wkfModel.getWkfStatusColor();
+    if (color == null) {
+      color = "green";
     }
 
-    User activeUser = AuthUtils.getUser();
-
-    for (HistoricActivityInstance node : activeNodes) {
-      boolean valid = isValidNode(node.getActivityId(), wkfInstance.getWkfProcess(), klassName);
-      if (!valid) {
+    for (Map<String, Object> node : wkfInstanceStatusService.getStatusNodes(wkfInstance)) {
+      String name = (String) node.get("name");
+      WkfCache.TaskConfig config = wkfCache.getTaskConfig(wkfModel.getId(), name);
+      if (config == null || !config.isDisplayedOn(klassName)) {
         continue;
       }
-      String title = node.getActivityName();
-      if (title == null) {
-        title = node.getActivityId();
-      }
-
-      String color = wkfInstance.getWkfProcess().getWkfModel().getWkfStatusColor();
-      if (color == null) {
-        color = "green";
-      }
 
       Map<String, Object> statusMap = new HashMap<>();
-      statusMap.put("name", node.getActivityId());
-      statusMap.put("title", title);
+      statusMap.put("name", name);
+      statusMap.put("title", node.get("title"));
       statusMap.put("color", color);
       if (!activeUser.getNoHelp()) {
-        WkfTaskConfig config =
-            wkfTaskConfigRepository
-                .all()
-                .filter(
-                    "self.name = ? and self.wkfModel.id = ?",
-                    node.getActivityId(),
-                    wkfInstance.getWkfProcess().getWkfModel().getId())
-                .fetchOne();
-        if (config != null) {
-          statusMap.put("help", config.getHelpText());
-        }
+        statusMap.put("help", config.getHelpText());
       }
       statusList.add(statusMap);
     }
   }
-
-  private boolean isValidNode(String activityId, WkfProcess wkfProcess, String klassName) {
-
-    WkfTaskConfig wkfTaskConfig =
-        wkfTaskConfigRepository
-            .all()
-            .filter("self.processId = ?1 and self.name = ?2", wkfProcess.getProcessId(), activityId)
-            .fetchOne();
-
-    if (wkfTaskConfig != null && wkfTaskConfig.getDisplayStatus()) {
-      if (wkfTaskConfig.getDisplayOnModels() != null) {
-        return containsModel(wkfTaskConfig.getDisplayOnModels(), klassName);
-      }
-      return true;
-    }
-
-    return false;
-  }
 }
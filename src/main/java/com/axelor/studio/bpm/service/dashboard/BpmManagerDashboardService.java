@@ -17,6 +17,7 @@
  */
 package com.axelor.studio.bpm.service.dashboard;
 
+import com.axelor.auth.db.User;
 import com.axelor.studio.db.WkfModel;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,11 @@ public interface BpmManagerDashboardService {
 
   public Map<String, Object> showProcess(int offset);
 
+  public Map<String, Object> showProcess(User user, int offset);
+
   public List<Map<String, Object>> getChartData(
       WkfModel wkfModel, String type, String taskByProcessType);
+
+  public List<Map<String, Object>> getChartData(
+      WkfModel wkfModel, String type, String taskByProcessType, User user);
 }
@@ -27,7 +27,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 
 public class BpmManagerDashboardServiceImpl implements BpmManagerDashboardService {
@@ -40,18 +39,21 @@ public class BpmManagerDashboardServiceImpl implements BpmManagerDashboardServic
 
   @Inject private BpmManagerDashboardTaskService bpmMgrDashboardTaskService;
 
-  @SuppressWarnings({"unchecked", "serial"})
   @Override
   public Map<String, Object> showProcess(int offset) {
-    User user = AuthUtils.getUser();
+    return showProcess(AuthUtils.getUser(), offset);
+  }
+
+  @SuppressWarnings({"unchecked", "serial"})
+  @Override
+  public Map<String, Object> showProcess(User user, int offset) {
     Map<String, Object> dataMap = new HashMap<>();
     List<Map<String, Object>> modelList = new ArrayList<>();
 
-    List<WkfModel> wkfModelList = bpmMgrDashboardUserService.getWkfModelsByUser(user);
-    long totalRecord = wkfModelList.size();
+    long totalRecord = bpmMgrDashboardUserService.countWkfModelsByUser(user);
 
     List<WkfModel> showWkfModels =
-        wkfModelList.stream().skip(offset).limit(FETCH_LIMIT).collect(Collectors.toList());
+        bpmMgrDashboardUserService.getWkfModelsByUser(user, FETCH_LIMIT, offset);
 
     for (WkfModel wkfModel : showWkfModels) {
 
@@ -178,9 +180,14 @@ public class BpmManagerDashboardServiceImpl implements BpmManagerDashboardServic
   @Override
   public List<Map<String, Object>> getChartData(
       WkfModel wkfModel, String type, String taskByProcessType) {
+    return getChartData(wkfModel, type, taskByProcessType, AuthUtils.getUser());
+  }
+
+  @Override
+  public List<Map<String, Object>> getChartData(
+      WkfModel wkfModel, String type, String taskByProcessType, User user) {
 
     List<Map<String, Object>> dataMapList = new ArrayList<>();
-    User user = AuthUtils.getUser();
 
     List<WkfProcess> processes = wkfDashboardCommonService.findProcesses(wkfModel, null);
 
@@ -202,9 +209,6 @@ public class BpmManagerDashboardServiceImpl implements BpmManagerDashboardServic
         }
         _modelList.add(modelName);
 
-        Map<String, Object> _map =
-            wkfDashboardCommonService.computeStatus(isMetaModel, modelName, process, null, null);
-
         switch (type) {
           case WkfDashboardCommonService.ASSIGNED_ME:
             bpmMgrDashboardUserService.getAssignedToMeTask(
@@ -217,6 +221,9 @@ public class BpmManagerDashboardServiceImpl implements BpmManagerDashboardServic
             break;
 
           case WkfDashboardCommonService.TASK_BY_PROCESS:
+            Map<String, Object> _map =
+                wkfDashboardCommonService.computeStatus(
+                    isMetaModel, modelName, process, null, null);
             bpmMgrDashboardTaskService.getTaskByProcess(
                 _map, process, taskByProcessType, dataMapList);
             break;
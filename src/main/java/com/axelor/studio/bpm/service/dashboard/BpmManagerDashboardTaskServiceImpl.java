@@ -18,9 +18,6 @@
 package com.axelor.studio.bpm.service.dashboard;
 
 import com.axelor.db.JPA;
-import com.axelor.db.Model;
-import com.axelor.meta.db.MetaJsonRecord;
-import com.axelor.studio.bpm.service.execution.WkfInstanceService;
 import com.axelor.studio.db.WkfModel;
 import com.axelor.studio.db.WkfProcess;
 import com.axelor.studio.db.WkfProcessConfig;
@@ -28,7 +25,6 @@ import com.axelor.studio.db.WkfTaskConfig;
 import com.axelor.studio.db.repo.WkfTaskConfigRepository;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
-import java.math.BigInteger;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -40,8 +36,6 @@ import org.apache.commons.lang3.StringUtils;
 
 public class BpmManagerDashboardTaskServiceImpl implements BpmManagerDashboardTaskService {
 
-  @Inject private WkfInstanceService wkfInstanceService;
-
   @Inject private WkfTaskConfigRepository wkfTaskConfigRepo;
 
   @Inject private WkfDashboardCommonService wkfDashboardCommonService;
@@ -138,12 +132,12 @@ public class BpmManagerDashboardTaskServiceImpl implements BpmManagerDashboardTa
             .fetch();
 
     List<Long> recordIds = new ArrayList<>();
+    Map<Long, List<String>> processInstanceIdsByConfig =
+        wkfDashboardCommonService.findProcessInstancesByNodes(taskConfigs, false);
 
     taskConfigs.forEach(
         config -> {
-          List<String> processInstanceIds =
-              wkfInstanceService.findProcessInstanceByNode(
-                  config.getName(), config.getProcessId(), config.getType(), false);
+          List<String> processInstanceIds = processInstanceIdsByConfig.get(config.getId());
 
           Map<String, Object> taskMap = new HashMap<>();
           wkfDashboardCommonService.getTasks(
@@ -167,66 +161,43 @@ public class BpmManagerDashboardTaskServiceImpl implements BpmManagerDashboardTa
     List<WkfTaskConfig> taskConfigs =
         wkfTaskConfigRepo.all().filter("self.type = 'userTask'").fetch();
 
+    Map<Long, List<String>> validatedTaskInstanceIdsByConfig =
+        wkfDashboardCommonService.findProcessInstancesByNodes(taskConfigs, true);
+    Map<Long, List<String>> lateTaskInstanceIdsByConfig =
+        wkfDashboardCommonService.findProcessInstancesByNodes(taskConfigs, false);
+
+    Map<LocalDate, Integer> validatedTaskCntByDate = new HashMap<>();
+    for (WkfTaskConfig config : taskConfigs) {
+      this.countValidatedTasks(
+          config,
+          validatedTaskInstanceIdsByConfig.get(config.getId()),
+          fromDate,
+          toDate,
+          validatedTaskCntByDate);
+    }
+
     for (LocalDate date = fromDate; date.compareTo(toDate) <= 0; date = date.plusDays(1)) {
       int lateTaskCnt = 0;
-      int validatedTaskCnt = 0;
+      int validatedTaskCnt = validatedTaskCntByDate.getOrDefault(date, 0);
       Map<String, Object> lateTaskMap = new HashMap<>();
       Map<String, Object> validatedTaskMap = new HashMap<>();
 
       for (WkfTaskConfig config : taskConfigs) {
-        List<String> validatedTaskInstanceIds =
-            wkfInstanceService.findProcessInstanceByNode(
-                config.getName(), config.getProcessId(), config.getType(), true);
-
-        List<String> lateTaskInstanceIds =
-            wkfInstanceService.findProcessInstanceByNode(
-                config.getName(), config.getProcessId(), config.getType(), false);
-
         boolean isMetaModel = StringUtils.isNotEmpty(config.getModelName());
         String modelName = isMetaModel ? config.getModelName() : config.getJsonModelName();
 
-        String qry =
-            "SELECT COUNT(task.id_) AS total FROM act_hi_taskinst task "
-                + "WHERE task.proc_def_id_ = :processInstanceId "
-                + "AND task.name_ = :status "
-                + "AND task.proc_inst_id_ IN (:instanceId) "
-                + "AND DATE(task.end_time_) = :toDate";
-
-        Query query = JPA.em().createNativeQuery(qry);
-        query.setParameter(
-            "processInstanceId",
-            !Strings.isNullOrEmpty(config.getProcessId()) ? config.getProcessId() : "");
-        query.setParameter("status", config.getDescription());
-        query.setParameter("toDate", date);
-        query.setParameter("instanceId", validatedTaskInstanceIds);
-        validatedTaskCnt += ((BigInteger) query.getSingleResult()).intValue();
-
-        if (!isMetaModel) {
-          List<MetaJsonRecord> lateTaskRecords =
-              wkfDashboardCommonService.getMetaJsonRecords(
-                  config,
-                  lateTaskInstanceIds,
-                  modelName,
-                  null,
-                  WkfDashboardCommonService.LATE_TASK,
-                  null,
-                  date);
-
-          lateTaskCnt += lateTaskRecords.size();
-
-        } else {
-          List<Model> lateTaskRecords =
-              wkfDashboardCommonService.getMetaModelRecords(
-                  config,
-                  lateTaskInstanceIds,
-                  modelName,
-                  null,
-                  WkfDashboardCommonService.LATE_TASK,
-                  null,
-                  date);
-
-          lateTaskCnt += lateTaskRecords.size();
-        }
+        lateTaskCnt +=
+            wkfDashboardCommonService
+                .getRecordIds(
+                    config,
+                    lateTaskInstanceIdsByConfig.get(config.getId()),
+                    modelName,
+                    isMetaModel,
+                    null,
+                    WkfDashboardCommonService.LATE_TASK,
+                    null,
+                    date)
+                .size();
       }
 
       lateTaskMap.put("status", WkfDashboardCommonService.NUM_LATE_TASK);
@@ -243,4 +214,36 @@ public class BpmManagerDashboardTaskServiceImpl implements BpmManagerDashboardTa
 
     return dataMapList;
   }
+
+  /** Counts the tasks of the config completed in the period, grouped by completion date. */
+  @SuppressWarnings("unchecked")
+  private void countValidatedTasks(
+      WkfTaskConfig config,
+      List<String> instanceIds,
+      LocalDate fromDate,
+      LocalDate toDate,
+      Map<LocalDate, Integer> validatedTaskCntByDate) {
+
+    String qry =
+        "SELECT DATE(task.end_time_), COUNT(task.id_) AS total FROM act_hi_taskinst task "
+            + "WHERE task.proc_def_id_ = :processInstanceId "
+            + "AND task.name_ = :status "
+            + "AND task.proc_inst_id_ IN (:instanceId) "
+            + "AND DATE(task.end_time_) BETWEEN :fromDate AND :toDate "
+            + "GROUP BY DATE(task.end_time_)";
+
+    Query query = JPA.em().createNativeQuery(qry);
+    query.setParameter(
+        "processInstanceId",
+        !Strings.isNullOrEmpty(config.getProcessId()) ? config.getProcessId() : "");
+    query.setParameter("status", config.getDescription());
+    query.setParameter("fromDate", fromDate);
+    query.setParameter("toDate", toDate);
+    query.setParameter("instanceId", instanceIds);
+
+    for (Object[] row : (List<Object[]>) query.getResultList()) {
+      validatedTaskCntByDate.merge(
+          ((java.sql.Date) row[0]).toLocalDate(), ((Number) row[1]).intValue(), Integer::sum);
+    }
+  }
 }
@@ -27,6 +27,10 @@ public interface BpmManagerDashboardUserService {
 
   public List<WkfModel> getWkfModelsByUser(User user);
 
+  public List<WkfModel> getWkfModelsByUser(User user, int limit, int offset);
+
+  public long countWkfModelsByUser(User user);
+
   public void getAssignedToMeTask(
       WkfProcess process,
       String modelName,
@@ -53,7 +57,18 @@ public interface BpmManagerDashboardUserService {
 
   public List<Map<String, Object>> getAvgTimePerUserData(WkfModel wkfModel, String unitType);
 
+  /**
+   * Same as {@link #getAvgTimePerUserData(WkfModel, String)}, the given user being the one of the
+   * nodes assigned to the current user.
+   */
+  public List<Map<String, Object>> getAvgTimePerUserData(
+      WkfModel wkfModel, String unitType, User currentUser);
+
   public List<Map<String, Object>> getTaskToDoPerUser(WkfModel wkfModel);
 
+  public List<Map<String, Object>> getTaskToDoPerUser(WkfModel wkfModel, User currentUser);
+
   public List<Map<String, Object>> getTaskDoneTodayPerUser(WkfModel wkfModel);
+
+  public List<Map<String, Object>> getTaskDoneTodayPerUser(WkfModel wkfModel, User currentUser);
 }
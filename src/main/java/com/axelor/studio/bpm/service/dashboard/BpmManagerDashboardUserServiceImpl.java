@@ -18,12 +18,11 @@
 package com.axelor.studio.bpm.service.dashboard;
 
 import com.axelor.auth.AuthUtils;
+import com.axelor.auth.db.Role;
 import com.axelor.auth.db.User;
 import com.axelor.auth.db.repo.UserRepository;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
-import com.axelor.meta.db.MetaJsonRecord;
-import com.axelor.studio.bpm.service.execution.WkfInstanceService;
 import com.axelor.studio.bpm.service.execution.WkfUserActionService;
 import com.axelor.studio.db.WkfModel;
 import com.axelor.studio.db.WkfProcess;
@@ -37,10 +36,12 @@ import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.stream.Collectors;
 import javax.persistence.Query;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -49,8 +50,6 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
 
   @Inject private WkfUserActionService wkfUserActionService;
 
-  @Inject private WkfInstanceService wkfInstanceService;
-
   @Inject private WkfDashboardCommonService wkfDashboardCommonService;
 
   @Inject private WkfModelRepository wkfModelRepo;
@@ -61,27 +60,55 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
 
   @Override
   public List<WkfModel> getWkfModelsByUser(User user) {
-    List<WkfModel> wkfModelList = wkfModelRepo.all().order("code").fetch();
-    List<WkfModel> filterWkfModels = new ArrayList<>();
+    return createWkfModelQuery(user).fetch();
+  }
 
-    for (WkfModel wkfModel : wkfModelList) {
-      List<WkfProcess> processes = wkfDashboardCommonService.findProcesses(wkfModel, null);
-      if (CollectionUtils.isEmpty(processes)) {
-        continue;
-      }
+  @Override
+  public List<WkfModel> getWkfModelsByUser(User user, int limit, int offset) {
+    return createWkfModelQuery(user).fetch(limit, offset);
+  }
 
-      boolean isSuperAdmin = user.getCode().equals("admin");
-      boolean isAdmin = wkfDashboardCommonService.isAdmin(wkfModel, user);
-      boolean isManager = wkfDashboardCommonService.isManager(wkfModel, user);
-      boolean isUser = wkfDashboardCommonService.isUser(wkfModel, user);
+  @Override
+  public long countWkfModelsByUser(User user) {
+    return createWkfModelQuery(user).count();
+  }
 
-      if (!isSuperAdmin && !isAdmin && !isManager && !isUser) {
-        continue;
-      }
+  /**
+   * Models having processes on which the user is super admin, or admin, manager or user by one of
+   * the user sets or role sets.
+   */
+  protected com.axelor.db.Query<WkfModel> createWkfModelQuery(User user) {
 
-      filterWkfModels.add(wkfModel);
+    String filter =
+        "EXISTS (SELECT process.id FROM WkfProcess process WHERE process.wkfModel = self)";
+
+    if (user.getCode().equals("admin")) {
+      return wkfModelRepo.all().filter(filter).order("code");
     }
-    return filterWkfModels;
+
+    List<Long> roleIds =
+        user.getRoles() != null
+            ? user.getRoles().stream().map(Role::getId).collect(Collectors.toList())
+            : new ArrayList<>();
+    roleIds.add(0L);
+
+    filter +=
+        " AND (:user MEMBER OF self.adminUserSet "
+            + "OR :user MEMBER OF self.managerUserSet "
+            + "OR :user MEMBER OF self.userSet "
+            + "OR EXISTS (SELECT model.id FROM WkfModel model "
+            + "LEFT JOIN model.adminRoleSet adminRole "
+            + "LEFT JOIN model.managerRoleSet managerRole "
+            + "LEFT JOIN model.roleSet role "
+            + "WHERE model = self AND (adminRole.id IN (:roleIds) "
+            + "OR managerRole.id IN (:roleIds) OR role.id IN (:roleIds))))";
+
+    return wkfModelRepo
+        .all()
+        .filter(filter)
+        .bind("user", user)
+        .bind("roleIds", roleIds)
+        .order("code");
   }
 
   @SuppressWarnings("unchecked")
@@ -205,8 +232,9 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
       String type) {
 
     List<String> processInstanceIds =
-        wkfInstanceService.findProcessInstanceByNode(
-            config.getName(), config.getProcessId(), config.getType(), false);
+        wkfDashboardCommonService
+            .findProcessInstancesByNodes(Collections.singletonList(config), false)
+            .get(config.getId());
 
     if (type.equals(WkfDashboardCommonService.ASSIGNED_ME)
         || type.equals(WkfDashboardCommonService.ASSIGNED_OTHER)) {
@@ -226,60 +254,61 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
 
   @Override
   public List<Map<String, Object>> getAvgTimePerUserData(WkfModel wkfModel, String unitType) {
+    return getAvgTimePerUserData(wkfModel, unitType, AuthUtils.getUser());
+  }
+
+  @Override
+  public List<Map<String, Object>> getAvgTimePerUserData(
+      WkfModel wkfModel, String unitType, User currentUser) {
     List<Map<String, Object>> dataMapList = new ArrayList<>();
 
     List<WkfProcess> processes = wkfDashboardCommonService.findProcesses(wkfModel, null);
+    String unit = this.getUnit(unitType);
 
     for (WkfProcess process : processes) {
 
       List<WkfTaskConfig> taskConfigs = getUserTaskConfigs(process);
+      if (taskConfigs.isEmpty()) {
+        continue;
+      }
 
-      for (WkfTaskConfig config : taskConfigs) {
-        List<String> processInstanceIds =
-            wkfInstanceService.findProcessInstanceByNode(
-                config.getName(), config.getProcessId(), config.getType(), true);
+      Map<Long, List<String>> processInstanceIdsByConfig =
+          wkfDashboardCommonService.findProcessInstancesByNodes(taskConfigs, true);
 
+      String qry =
+          "SELECT task.proc_inst_id_, SUM(CASE WHEN task.end_time_ IS NULL THEN "
+              + "EXTRACT(EPOCH FROM NOW() - task.start_time_) / "
+              + unit
+              + " ELSE "
+              + "EXTRACT(EPOCH FROM task.end_time_ - task.start_time_) / "
+              + unit
+              + " END) AS time "
+              + "FROM act_hi_taskinst task "
+              + "WHERE task.proc_def_id_ = :processId "
+              + "GROUP BY task.proc_inst_id_";
+
+      Map<String, BigDecimal> timeByInstance = getValuesByInstance(qry, process.getProcessId());
+
+      for (WkfTaskConfig config : taskConfigs) {
         boolean isMetaModel = StringUtils.isNotEmpty(config.getModelName());
         String modelName = isMetaModel ? config.getModelName() : config.getJsonModelName();
-        String userPath = config.getUserPath();
         Map<Long, List<BigDecimal>> userTimeMap = new HashMap<>();
 
-        String unit = this.getUnit(unitType);
-
-        String qry =
-            "SELECT CASE WHEN task.end_time_ IS NULL THEN "
-                + "EXTRACT(EPOCH FROM NOW() - task.start_time_) / "
-                + unit
-                + " ELSE "
-                + "EXTRACT(EPOCH FROM task.end_time_ - task.start_time_) / "
-                + unit
-                + " END AS time "
-                + "FROM studio_wkf_task_config config "
-                + "LEFT JOIN act_hi_taskinst task ON task.proc_def_id_ = config.process_id "
-                + "WHERE "
-                + "task.proc_def_id_ = :processInstanceId AND config.description = :desc "
-                + "AND task.proc_inst_id_ = :instanceId";
-
-        Query query = JPA.em().createNativeQuery(qry);
-        query.setParameter("processInstanceId", config.getProcessId());
-        query.setParameter("desc", config.getDescription());
-
-        if (!isMetaModel) {
-          List<MetaJsonRecord> jsonModelRecords =
-              wkfDashboardCommonService.getMetaJsonRecords(
-                  config, processInstanceIds, modelName, null, null, null, null);
-
-          for (MetaJsonRecord record : jsonModelRecords) {
-            this.computeAvgTimePerUser(query, record, userPath, userTimeMap);
-          }
-        } else {
-          List<Model> modelRecords =
-              wkfDashboardCommonService.getMetaModelRecords(
-                  config, processInstanceIds, modelName, null, null, null, null);
-
-          for (Model record : modelRecords) {
-            this.computeAvgTimePerUser(query, record, userPath, userTimeMap);
+        for (Model record :
+            getRecords(
+                config,
+                processInstanceIdsByConfig.get(config.getId()),
+                modelName,
+                isMetaModel,
+                null,
+                null)) {
+          User user = getUser(config, record, currentUser);
+          if (user == null) {
+            continue;
           }
+          userTimeMap
+              .computeIfAbsent(user.getId(), key -> new ArrayList<>())
+              .add(timeByInstance.getOrDefault(record.getProcessInstanceId(), BigDecimal.ZERO));
         }
 
         for (Entry<Long, List<BigDecimal>> entry : userTimeMap.entrySet()) {
@@ -318,31 +347,54 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
     }
   }
 
-  private void computeAvgTimePerUser(
-      Query query, Model record, String userPath, Map<Long, List<BigDecimal>> userTimeMap) {
+  /** Values of a query grouped by process instance, for all the instances of the process. */
+  @SuppressWarnings("unchecked")
+  private Map<String, BigDecimal> getValuesByInstance(String qry, String processId) {
+
+    Query query = JPA.em().createNativeQuery(qry);
+    query.setParameter("processId", processId);
 
-    query.setParameter("instanceId", record.getProcessInstanceId());
-    FullContext wkfContext = new FullContext(record);
-    User user = wkfUserActionService.getUser(userPath, wkfContext);
-    BigDecimal time = BigDecimal.ZERO;
-    if (!query.getResultList().isEmpty()) {
-      for (Object t : query.getResultList()) {
-        time = time.add((BigDecimal) t);
+    Map<String, BigDecimal> valuesByInstance = new HashMap<>();
+    for (Object[] row : (List<Object[]>) query.getResultList()) {
+      if (row[1] != null) {
+        valuesByInstance.put((String) row[0], new BigDecimal(row[1].toString()));
       }
     }
+    return valuesByInstance;
+  }
 
-    List<BigDecimal> timeList = null;
-    if (userTimeMap.containsKey(user.getId())) {
-      timeList = userTimeMap.get(user.getId());
-    } else {
-      timeList = new ArrayList<>();
+  private List<? extends Model> getRecords(
+      WkfTaskConfig config,
+      List<String> processInstanceIds,
+      String modelName,
+      boolean isMetaModel,
+      String type,
+      LocalDate toDate) {
+
+    if (!isMetaModel) {
+      return wkfDashboardCommonService.getMetaJsonRecords(
+          config, processInstanceIds, modelName, null, type, null, toDate);
+    }
+    return wkfDashboardCommonService.getMetaModelRecords(
+        config, processInstanceIds, modelName, null, type, null, toDate);
+  }
+
+  /** User of the node on the record, null if not found. */
+  private User getUser(WkfTaskConfig config, Model record, User currentUser) {
+    if ("currentUser".equals(config.getUserPath())) {
+      return currentUser;
     }
-    timeList.add(time);
-    userTimeMap.put(user.getId(), timeList);
+    FullContext wkfContext = new FullContext(record);
+    return wkfUserActionService.getUser(config.getUserPath(), wkfContext);
   }
 
   @Override
   public List<Map<String, Object>> getTaskDoneTodayPerUser(WkfModel wkfModel) {
+    return getTaskDoneTodayPerUser(wkfModel, AuthUtils.getUser());
+  }
+
+  @Override
+  public List<Map<String, Object>> getTaskDoneTodayPerUser(WkfModel wkfModel, User currentUser) {
     List<Map<String, Object>> dataMapList = new ArrayList<>();
 
     List<WkfProcess> processes = wkfDashboardCommonService.findProcesses(wkfModel, null);
@@ -351,45 +403,43 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
 
     for (WkfProcess process : processes) {
       List<WkfTaskConfig> taskConfigs = getUserTaskConfigs(process);
+      if (taskConfigs.isEmpty()) {
+        continue;
+      }
 
-      for (WkfTaskConfig config : taskConfigs) {
-        List<String> processInstanceIds =
-            wkfInstanceService.findProcessInstanceByNode(
-                config.getName(), config.getProcessId(), config.getType(), false);
+      Map<Long, List<String>> processInstanceIdsByConfig =
+          wkfDashboardCommonService.findProcessInstancesByNodes(taskConfigs, false);
 
+      String qry =
+          "SELECT task.proc_inst_id_, COUNT(task.id_) AS total "
+              + "FROM act_hi_taskinst task "
+              + "WHERE task.proc_def_id_ = :processId "
+              + "AND DATE(task.end_time_) = CURRENT_DATE "
+              + "GROUP BY task.proc_inst_id_";
+
+      Map<String, BigDecimal> countByInstance = getValuesByInstance(qry, process.getProcessId());
+
+      for (WkfTaskConfig config : taskConfigs) {
         boolean isMetaModel = StringUtils.isNotEmpty(config.getModelName());
         String modelName = isMetaModel ? config.getModelName() : config.getJsonModelName();
-        String userPath = config.getUserPath();
-
-        String qry =
-            "SELECT COUNT(task.id_) AS total "
-                + "FROM studio_wkf_task_config config "
-                + "LEFT JOIN act_hi_taskinst task ON task.proc_def_id_ = config.process_id "
-                + "WHERE "
-                + "task.proc_def_id_ = :processInstanceId AND config.description = :desc "
-                + "AND task.proc_inst_id_ = :instanceId "
-                + "AND DATE(task.end_time_) = CURRENT_DATE";
-
-        Query query = JPA.em().createNativeQuery(qry);
-        query.setParameter("processInstanceId", config.getProcessId());
-        query.setParameter("desc", config.getDescription());
-
-        if (!isMetaModel) {
-          List<MetaJsonRecord> jsonModelRecords =
-              wkfDashboardCommonService.getMetaJsonRecords(
-                  config, processInstanceIds, modelName, null, null, null, null);
-
-          for (MetaJsonRecord record : jsonModelRecords) {
-            this.computeTaskDonePerUser(query, record, userPath, userMap);
-          }
-        } else {
-          List<Model> modelRecords =
-              wkfDashboardCommonService.getMetaModelRecords(
-                  config, processInstanceIds, modelName, null, null, null, null);
 
-          for (Model record : modelRecords) {
-            this.computeTaskDonePerUser(query, record, userPath, userMap);
+        for (Model record :
+            getRecords(
+                config,
+                processInstanceIdsByConfig.get(config.getId()),
+                modelName,
+                isMetaModel,
+                null,
+                null)) {
+          User user = getUser(config, record, currentUser);
+          if (user == null) {
+            continue;
           }
+          BigInteger recCnt =
+              countByInstance
+                  .getOrDefault(record.getProcessInstanceId(), BigDecimal.ZERO)
+                  .toBigInteger();
+          userMap.merge(user.getId(), recCnt, BigInteger::add);
         }
       }
     }
@@ -406,79 +456,42 @@ public class BpmManagerDashboardUserServiceImpl implements BpmManagerDashboardUs
     return dataMapList;
   }
 
-  private void computeTaskDonePerUser(
-      Query query, Model record, String userPath, Map<Long, BigInteger> userMap) {
-
-    query.setParameter("instanceId", record.getProcessInstanceId());
-    FullContext wkfContext = new FullContext(record);
-    User user = wkfUserActionService.getUser(userPath, wkfContext);
-    BigInteger recCnt = (BigInteger) query.getSingleResult();
-
-    if (userMap.containsKey(user.getId())) {
-      recCnt = recCnt.add(userMap.get(user.getId()));
-    }
-    userMap.put(user.getId(), recCnt);
+  @Override
+  public List<Map<String, Object>> getTaskToDoPerUser(WkfModel wkfModel) {
+    return getTaskToDoPerUser(wkfModel, AuthUtils.getUser());
   }
 
   @Override
-  public List<Map<String, Object>> getTaskToDoPerUser(WkfModel wkfModel) {
+  public List<Map<String, Object>> getTaskToDoPerUser(WkfModel wkfModel, User currentUser) {
     List<Map<String, Object>> dataMapList = new ArrayList<>();
 
     List<WkfProcess> processes = wkfDashboardCommonService.findProcesses(wkfModel, null);
 
-    int userCnt = 1;
     Map<Long, Integer> userMap = new HashMap<>();
     for (WkfProcess process : processes) {
       List<WkfTaskConfig> taskConfigs = getUserTaskConfigs(process);
+      if (taskConfigs.isEmpty()) {
+        continue;
+      }
 
-      for (WkfTaskConfig config : taskConfigs) {
-        List<String> processInstanceIds =
-            wkfInstanceService.findProcessInstanceByNode(
-                config.getName(), config.getProcessId(), config.getType(), false);
+      Map<Long, List<String>> processInstanceIdsByConfig =
+          wkfDashboardCommonService.findProcessInstancesByNodes(taskConfigs, false);
 
+      for (WkfTaskConfig config : taskConfigs) {
         boolean isMetaModel = StringUtils.isNotEmpty(config.getModelName());
         String modelName = isMetaModel ? config.getModelName() : config.getJsonModelName();
-        String userPath = config.getUserPath();
-
-        if (!isMetaModel) {
-          List<MetaJsonRecord> jsonModelRecords =
-              wkfDashboardCommonService.getMetaJsonRecords(
-                  config,
-                  processInstanceIds,
-                  modelName,
-                  null,
-                  WkfDashboardCommonService.TASK_TODAY,
-                  null,
-                  LocalDate.now());
-
-          for (MetaJsonRecord record : jsonModelRecords) {
-            FullContext wkfContext = new FullContext(record);
-            User user = wkfUserActionService.getUser(userPath, wkfContext);
-
-            if (userMap.containsKey(user.getId())) {
-              userCnt = userMap.get(user.getId()) + 1;
-            }
-            userMap.put(user.getId(), userCnt);
-          }
-        } else {
-          List<Model> modelRecords =
-              wkfDashboardCommonService.getMetaModelRecords(
-                  config,
-                  processInstanceIds,
-                  modelName,
-                  null,
-                  WkfDashboardCommonService.TASK_TODAY,
-                  null,
-                  LocalDate.now());
-
-          for (Model record : modelRecords) {
-            FullContext wkfContext = new FullContext(record);
-            User user = wkfUserActionService.getUser(userPath, wkfContext);
-
-            if (userMap.containsKey(user.getId())) {
-              userCnt = userMap.get(user.getId()) + 1;
-            }
-            userMap.put(user.getId(), userCnt);
+
+        for (Model record :
+            getRecords(
+                config,
+                processInstanceIdsByConfig.get(config.getId()),
+                modelName,
+                isMetaModel,
+                WkfDashboardCommonService.TASK_TODAY,
+                LocalDate.now())) {
+          User user = getUser(config, record, currentUser);
+          if (user != null) {
+            userMap.merge(user.getId(), 1, Integer::sum);
           }
         }
       }
@@ -62,6 +62,28 @@ public interface WkfDashboardCommonService {
       String assignedType,
       LocalDate toDate);
 
+  /**
+   * Ids of the records matching the same filters as {@link #getMetaJsonRecords} or {@link
+   * #getMetaModelRecords}, without loading the records.
+   */
+  List<Long> getRecordIds(
+      WkfTaskConfig config,
+      List<String> processInstanceIds,
+      String modelName,
+      boolean isMetaModel,
+      User user,
+      String type,
+      String assignedType,
+      LocalDate toDate);
+
+  /**
+   * Process instances of each task config as {@link
+   * com.axelor.studio.bpm.service.execution.WkfInstanceService#findProcessInstanceByNode}, by
+   * config id, with one history query per process.
+   */
+  Map<Long, List<String>> findProcessInstancesByNodes(
+      List<WkfTaskConfig> configs, boolean permanent);
+
   List<Long> getStatusRecordIds(
       WkfTaskConfig config,
       List<String> processInstanceIds,
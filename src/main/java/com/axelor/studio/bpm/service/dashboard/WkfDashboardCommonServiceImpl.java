@@ -21,6 +21,7 @@ import com.axelor.auth.db.User;
 import com.axelor.common.Inflector;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
+import com.axelor.db.Query;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.db.mapper.Property;
 import com.axelor.i18n.I18n;
@@ -52,6 +53,7 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelConstants;
 
 public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService {
 
@@ -222,12 +224,12 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
     List<Long> recordIdsPerModel = new ArrayList<>();
     List<Map<String, Object>> taskCntMapList = new ArrayList<>();
     Map<String, Object> taskMap = new HashMap<>();
+    Map<Long, List<String>> processInstanceIdsByConfig =
+        findProcessInstancesByNodes(taskConfigs, false);
 
     taskConfigs.forEach(
         config -> {
-          List<String> processInstanceIds =
-              wkfInstanceService.findProcessInstanceByNode(
-                  config.getName(), config.getProcessId(), config.getType(), false);
+          List<String> processInstanceIds = processInstanceIdsByConfig.get(config.getId());
 
           List<Long> recordStatusIds =
               getStatusRecordIds(
@@ -279,24 +281,97 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
       User user,
       String assignedType) {
 
-    List<Long> recordIds = new ArrayList<>();
+    return getRecordIds(
+        config,
+        processInstanceIds,
+        modelName,
+        isMetaModel,
+        user,
+        null,
+        assignedType,
+        LocalDate.now());
+  }
 
-    if (!isMetaModel) {
-      List<MetaJsonRecord> jsonModelrecords =
-          getMetaJsonRecords(
-              config, processInstanceIds, modelName, user, null, assignedType, LocalDate.now());
+  @Override
+  public List<Long> getRecordIds(
+      WkfTaskConfig config,
+      List<String> processInstanceIds,
+      String modelName,
+      boolean isMetaModel,
+      User user,
+      String type,
+      String assignedType,
+      LocalDate toDate) {
 
-      recordIds.addAll(jsonModelrecords.stream().map(Model::getId).collect(Collectors.toList()));
+    Query<? extends Model> query =
+        isMetaModel
+            ? createMetaModelRecordQuery(
+                config, processInstanceIds, modelName, user, type, assignedType, toDate)
+            : createMetaJsonRecordQuery(
+                config, processInstanceIds, modelName, user, type, assignedType, toDate);
 
-    } else {
-      List<Model> metaModelRecords =
-          getMetaModelRecords(
-              config, processInstanceIds, modelName, user, null, assignedType, LocalDate.now());
+    if (query == null) {
+      return new ArrayList<>();
+    }
 
-      recordIds.addAll(metaModelRecords.stream().map(Model::getId).collect(Collectors.toList()));
+    return query.select("id").fetch(0, 0).stream()
+        .map(it -> (Long) it.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Map<Long, List<String>> findProcessInstancesByNodes(
+      List<WkfTaskConfig> configs, boolean permanent) {
+
+    Map<Long, List<String>> processInstanceIdsByConfig = new HashMap<>();
+
+    Map<String, List<WkfTaskConfig>> configsByProcess = new HashMap<>();
+    for (WkfTaskConfig config : configs) {
+      if (config.getProcessId() == null
+          || BpmnModelConstants.BPMN_ELEMENT_END_EVENT.equals(config.getType())) {
+        processInstanceIdsByConfig.put(
+            config.getId(),
+            wkfInstanceService.findProcessInstanceByNode(
+                config.getName(), config.getProcessId(), config.getType(), permanent));
+        continue;
+      }
+      configsByProcess.computeIfAbsent(config.getProcessId(), key -> new ArrayList<>()).add(config);
+    }
+
+    for (Map.Entry<String, List<WkfTaskConfig>> entry : configsByProcess.entrySet()) {
+
+      // Unfinished activities are the active nodes, finished ones the executed nodes.
+      javax.persistence.Query query =
+          JPA.em()
+              .createNativeQuery(
+                  "SELECT DISTINCT activity.act_id_, activity.proc_inst_id_ "
+                      + "FROM act_hi_actinst activity "
+                      + "WHERE activity.proc_def_id_ = :processId "
+                      + "AND activity.act_id_ IN (:nodes)"
+                      + (permanent ? "" : " AND activity.end_time_ IS NULL"));
+      query.setParameter("processId", entry.getKey());
+      query.setParameter(
+          "nodes",
+          entry.getValue().stream().map(WkfTaskConfig::getName).collect(Collectors.toSet()));
+
+      Map<String, List<String>> processInstanceIdsByNode = new HashMap<>();
+      for (Object[] row : (List<Object[]>) query.getResultList()) {
+        processInstanceIdsByNode
+            .computeIfAbsent((String) row[0], key -> new ArrayList<>())
+            .add((String) row[1]);
+      }
+
+      for (WkfTaskConfig config : entry.getValue()) {
+        List<String> processInstanceIds =
+            new ArrayList<>(
+                processInstanceIdsByNode.getOrDefault(config.getName(), new ArrayList<>()));
+        processInstanceIds.add("0");
+        processInstanceIdsByConfig.put(config.getId(), processInstanceIds);
+      }
     }
 
-    return recordIds;
+    return processInstanceIdsByConfig;
   }
 
   @Override
@@ -309,13 +384,30 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
       String assignedType,
       LocalDate toDate) {
 
+    Query<MetaJsonRecord> query =
+        createMetaJsonRecordQuery(
+            config, processInstanceIds, modelName, user, type, assignedType, toDate);
+
+    return query != null ? query.fetch() : new ArrayList<>();
+  }
+
+  /** Query of the json records for the given filters, null if no record can match. */
+  protected Query<MetaJsonRecord> createMetaJsonRecordQuery(
+      WkfTaskConfig config,
+      List<String> processInstanceIds,
+      String modelName,
+      User user,
+      String type,
+      String assignedType,
+      LocalDate toDate) {
+
     String filter =
         "self.processInstanceId IN (:processInstanceIds) AND self.jsonModel = :jsonModel";
 
     String userPath = config.getUserPath();
     if (user != null && assignedType != null) {
       if (Strings.isNullOrEmpty(userPath)) {
-        return new ArrayList<>();
+        return null;
       }
       if (assignedType.equals(ASSIGNED_ME)) {
         filter += " AND self.attrs." + userPath + ".id = '" + user.getId() + "'";
@@ -334,7 +426,7 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
     if (type != null) {
       String deadLinePath = config.getDeadlineFieldPath();
       if (Strings.isNullOrEmpty(deadLinePath)) {
-        return new ArrayList<>();
+        return null;
       }
       filter += " AND self.attrs." + deadLinePath;
       switch (type) {
@@ -363,8 +455,7 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
         .all()
         .filter(filter)
         .bind("processInstanceIds", processInstanceIds)
-        .bind("jsonModel", modelName)
-        .fetch();
+        .bind("jsonModel", modelName);
   }
 
   @SuppressWarnings("unchecked")
@@ -410,7 +501,6 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public List<Model> getMetaModelRecords(
       WkfTaskConfig config,
       List<String> processInstanceIds,
@@ -420,6 +510,24 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
       String assignedType,
       LocalDate toDate) {
 
+    Query<Model> query =
+        createMetaModelRecordQuery(
+            config, processInstanceIds, modelName, user, type, assignedType, toDate);
+
+    return query != null ? query.fetch() : new ArrayList<>();
+  }
+
+  /** Query of the model records for the given filters, null if no record can match. */
+  @SuppressWarnings("unchecked")
+  protected Query<Model> createMetaModelRecordQuery(
+      WkfTaskConfig config,
+      List<String> processInstanceIds,
+      String modelName,
+      User user,
+      String type,
+      String assignedType,
+      LocalDate toDate) {
+
     Object[] obj = this.getMetaModelRecordFilter(config, modelName, user, assignedType);
     Class<Model> klass = (Class<Model>) obj[0];
     String filter = (String) obj[1];
@@ -427,7 +535,7 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
     if (type != null) {
       String deadLinePath = config.getDeadlineFieldPath();
       if (Strings.isNullOrEmpty(deadLinePath)) {
-        return new ArrayList<>();
+        return null;
       }
       Property property = Mapper.of(klass).getProperty(deadLinePath.split("\\.")[0]);
       if (property == null) {
@@ -457,7 +565,7 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
       }
     }
 
-    return JPA.all(klass).filter(filter).bind("processInstanceIds", processInstanceIds).fetch();
+    return JPA.all(klass).filter(filter).bind("processInstanceIds", processInstanceIds);
   }
 
   @Override
@@ -477,80 +585,39 @@ public class WkfDashboardCommonServiceImpl implements WkfDashboardCommonService
     List<Long> lateTaskIds = new ArrayList<>();
     Map<String, Object> taskCntMap = new HashMap<>();
 
-    if (!isMetaModel) {
-      List<MetaJsonRecord> taskTodayList =
-          getMetaJsonRecords(
-              config,
-              processInstanceIds,
-              modelName,
-              user,
-              TASK_TODAY,
-              assignedType,
-              LocalDate.now());
-      taskTodayIds.addAll(taskTodayList.stream().map(Model::getId).collect(Collectors.toList()));
-
-      List<MetaJsonRecord> taskNextList =
-          getMetaJsonRecords(
-              config,
-              processInstanceIds,
-              modelName,
-              user,
-              TASK_NEXT,
-              assignedType,
-              LocalDate.now());
-      taskNextIds.addAll(taskNextList.stream().map(Model::getId).collect(Collectors.toList()));
-
-      List<MetaJsonRecord> lateTaskList =
-          getMetaJsonRecords(
-              config,
-              processInstanceIds,
-              modelName,
-              user,
-              LATE_TASK,
-              assignedType,
-              LocalDate.now());
-      lateTaskIds.addAll(lateTaskList.stream().map(Model::getId).collect(Collectors.toList()));
-
-      taskCntMap.put("otherTaskCnt", taskTodayList.size() + taskNextList.size());
-      taskCntMap.put("lateTaskCnt", lateTaskList.size());
-
-    } else {
-      List<Model> taskTodayList =
-          getMetaModelRecords(
-              config,
-              processInstanceIds,
-              modelName,
-              user,
-              TASK_TODAY,
-              assignedType,
-              LocalDate.now());
-      taskTodayIds.addAll(taskTodayList.stream().map(Model::getId).collect(Collectors.toList()));
-
-      List<Model> taskNextList =
-          getMetaModelRecords(
-              config,
-              processInstanceIds,
-              modelName,
-              user,
-              TASK_NEXT,
-              assignedType,
-              LocalDate.now());
-      taskNextIds.addAll(taskNextList.stream().map(Model::getId).collect(Collectors.toList()));
-
-      List<Model> lateTaskList =
-          getMetaModelRecords(
-              config,
-              processInstanceIds,
-              modelName,
-              user,
-              LATE_TASK,
-              assignedType,
-              LocalDate.now());
-      lateTaskIds.addAll(lateTaskList.stream().map(Model::getId).collect(Collectors.toList()));
-
-      taskCntMap.put("otherTaskCnt", taskTodayList.size() + taskNextList.size());
-      taskCntMap.put("lateTaskCnt", lateTaskList.size());
-    }
+    taskTodayIds.addAll(
+        getRecordIds(
+            config,
+            processInstanceIds,
+            modelName,
+            isMetaModel,
+            user,
+            TASK_TODAY,
+            assignedType,
+            LocalDate.now()));
+    taskNextIds.addAll(
+        getRecordIds(
+            config,
+            processInstanceIds,
+            modelName,
+            isMetaModel,
+            user,
+            TASK_NEXT,
+            assignedType,
+            LocalDate.now()));
+    lateTaskIds.addAll(
+        getRecordIds(
+            config,
+            processInstanceIds,
+            modelName,
+            isMetaModel,
+            user,
+            LATE_TASK,
+            assignedType,
+            LocalDate.now()));
+
+    taskCntMap.put("otherTaskCnt", taskTodayIds.size() + taskNextIds.size());
+    taskCntMap.put("lateTaskCnt", lateTaskIds.size());
 
     if ((!taskTodayIds.isEmpty() || !taskNextIds.isEmpty() || !lateTaskIds.isEmpty())
         && taskCntMapList != null) {
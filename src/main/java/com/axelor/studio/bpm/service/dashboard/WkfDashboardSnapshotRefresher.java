@@ -0,0 +1,185 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.dashboard;
+
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.db.WkfDashboardSnapshot;
+import com.axelor.studio.db.repo.WkfDashboardSnapshotRepository;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background refresh of the {@link WkfDashboardSnapshot} records.
+ *
+ * <p>The workflow listener records the models whose process instances moved. Every {@code
+ * snapshot-refresh-interval} seconds, the snapshots of these models are computed again, and the
+ * snapshots older than {@code snapshot-max-age} seconds are removed, to be computed on next read.
+ * The refresh of all the snapshots requested from the dashboard runs in the same thread.
+ */
+@Singleton
+public class WkfDashboardSnapshotRefresher {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfDashboardSnapshotRefresher.class);
+
+  protected final ScheduledExecutorService executor;
+
+  protected final int maxAge;
+
+  protected final Set<String> tenants = ConcurrentHashMap.newKeySet();
+
+  protected final Map<String, Map<Long, Long>> changes = new ConcurrentHashMap<>();
+
+  protected final Set<String> refreshAllTenants = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  public WkfDashboardSnapshotRefresher(AppSettingsStudioService appSettingsStudioService) {
+    int interval = Math.max(1, appSettingsStudioService.bpmDashboardSnapshotRefreshInterval());
+    maxAge = appSettingsStudioService.bpmDashboardSnapshotMaxAge();
+
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("bpm-dashboard-snapshot-%d")
+                .setDaemon(true)
+                .build());
+    executor.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /** Refresh the snapshots of the tenant on schedule, even without changes. */
+  public void register(String tenantId) {
+    tenants.add(tenantId);
+  }
+
+  /** Called once the transaction moving an instance of the model is committed. */
+  public void onModelChange(String tenantId, Long wkfModelId) {
+    tenants.add(tenantId);
+    changes
+        .computeIfAbsent(tenantId, key -> new ConcurrentHashMap<>())
+        .put(wkfModelId, System.currentTimeMillis());
+  }
+
+  public boolean isStale(String tenantId) {
+    Map<Long, Long> tenantChanges = changes.get(tenantId);
+    return refreshAllTenants.contains(tenantId)
+        || (tenantChanges != null && !tenantChanges.isEmpty());
+  }
+
+  /** Compute again all the snapshots of the tenant, in the refresh thread. */
+  public void refreshAll(String tenantId) {
+
+    tenants.add(tenantId);
+    if (!refreshAllTenants.add(tenantId)) {
+      return;
+    }
+
+    try {
+      executor.execute(
+          () -> {
+            try {
+              BpmTools.runInTenant(tenantId, () -> refresh(tenantId, true));
+            } catch (Exception e) {
+              log.error("Error refreshing BPM dashboard snapshots of tenant {}", tenantId, e);
+            } finally {
+              refreshAllTenants.remove(tenantId);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      refreshAllTenants.remove(tenantId);
+      throw e;
+    }
+  }
+
+  protected void refresh() {
+    for (String tenantId : tenants) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      try {
+        BpmTools.runInTenant(tenantId, () -> refresh(tenantId, false));
+      } catch (Exception e) {
+        log.error("Error refreshing BPM dashboard snapshots of tenant {}", tenantId, e);
+      }
+    }
+  }
+
+  protected void refresh(String tenantId, boolean all) {
+
+    long startTime = System.currentTimeMillis();
+    Map<Long, Long> tenantChanges =
+        new HashMap<>(changes.getOrDefault(tenantId, Collections.emptyMap()));
+
+    WkfDashboardSnapshotService snapshotService = Beans.get(WkfDashboardSnapshotService.class);
+    WkfDashboardSnapshotRepository snapshotRepo = Beans.get(WkfDashboardSnapshotRepository.class);
+
+    if (maxAge > 0) {
+      snapshotService.removeExpired(LocalDateTime.now().minusSeconds(maxAge));
+    }
+
+    List<Long> snapshotIds =
+        all
+            ? snapshotService.findAllSnapshots()
+            : snapshotService.findSnapshotsToRefresh(tenantChanges.keySet());
+    for (Long snapshotId : snapshotIds) {
+      try {
+        WkfDashboardSnapshot snapshot = snapshotRepo.find(snapshotId);
+        if (snapshot != null) {
+          snapshotService.refresh(snapshot);
+        }
+      } catch (Exception e) {
+        log.error("Error refreshing BPM dashboard snapshot {}", snapshotId, e);
+      } finally {
+        JPA.clear();
+      }
+    }
+
+    // The models changed again during the refresh stay pending.
+    Map<Long, Long> pendingChanges = changes.get(tenantId);
+    if (pendingChanges != null) {
+      tenantChanges.forEach(pendingChanges::remove);
+    }
+
+    if (!snapshotIds.isEmpty()) {
+      log.debug(
+          "BPM dashboard snapshots refreshed for tenant {}: {}, time taken: {} ms",
+          tenantId,
+          snapshotIds.size(),
+          System.currentTimeMillis() - startTime);
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.dashboard;
+
+import com.axelor.auth.db.User;
+import com.axelor.studio.db.WkfDashboardSnapshot;
+import com.axelor.studio.db.WkfModel;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed data of the BPM manager dashboard.
+ *
+ * <p>The charts are read from {@link WkfDashboardSnapshot} records, computed on first read and
+ * refreshed in the background by the {@link WkfDashboardSnapshotRefresher} when the process
+ * instances of their model move.
+ */
+public interface WkfDashboardSnapshotService {
+
+  static final String PROCESSES = "processes";
+  static final String AVG_TIME_PER_USER = "avgTimePerUser";
+  static final String TASK_DONE_TODAY_PER_USER = "taskDoneTodayPerUser";
+  static final String TASK_TO_DO_PER_USER = "taskToDoPerUser";
+
+  public Map<String, Object> getProcesses(User user, int offset);
+
+  public List<Map<String, Object>> getChartData(
+      String chartType, WkfModel wkfModel, User user, String parameter);
+
+  /** Ids of the snapshots of the changed models, and of the model-less ones if any changed. */
+  public List<Long> findSnapshotsToRefresh(Set<Long> wkfModelIds);
+
+  public List<Long> findAllSnapshots();
+
+  public void refresh(WkfDashboardSnapshot snapshot);
+
+  /** Remove the snapshots computed before the given date, they are computed again on next read. */
+  public void removeExpired(LocalDateTime computedBefore);
+
+  /** Compute again all the snapshots of the current tenant, in the background. */
+  public void refreshAll();
+
+  /** Oldest computation date of the snapshots displayed to the user for the model. */
+  public LocalDateTime getComputedOn(User user, WkfModel wkfModel);
+
+  /**
+   * Whether the process instances moved since the snapshots were computed, or a refresh of all the
+   * snapshots is pending.
+   */
+  public boolean isStale();
+}
@@ -0,0 +1,332 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.dashboard;
+
+import com.axelor.auth.db.User;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.db.WkfDashboardSnapshot;
+import com.axelor.studio.db.WkfModel;
+import com.axelor.studio.db.repo.WkfDashboardSnapshotRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WkfDashboardSnapshotServiceImpl implements WkfDashboardSnapshotService {
+
+  protected static final Logger log =
+      LoggerFactory.getLogger(WkfDashboardSnapshotServiceImpl.class);
+
+  protected static final ObjectMapper MAPPER =
+      new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+  protected WkfDashboardSnapshotRepository snapshotRepo;
+
+  protected BpmManagerDashboardService bpmMgrDashboardService;
+
+  protected BpmManagerDashboardUserService bpmMgrDashboardUserService;
+
+  protected WkfDashboardSnapshotRefresher refresher;
+
+  @Inject
+  public WkfDashboardSnapshotServiceImpl(
+      WkfDashboardSnapshotRepository snapshotRepo,
+      BpmManagerDashboardService bpmMgrDashboardService,
+      BpmManagerDashboardUserService bpmMgrDashboardUserService,
+      WkfDashboardSnapshotRefresher refresher) {
+    this.snapshotRepo = snapshotRepo;
+    this.bpmMgrDashboardService = bpmMgrDashboardService;
+    this.bpmMgrDashboardUserService = bpmMgrDashboardUserService;
+    this.refresher = refresher;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> getProcesses(User user, int offset) {
+    return (Map<String, Object>) getData(PROCESSES, null, user, String.valueOf(offset));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Map<String, Object>> getChartData(
+      String chartType, WkfModel wkfModel, User user, String parameter) {
+
+    User snapshotUser = isUserChart(chartType) ? user : null;
+
+    return (List<Map<String, Object>>) getData(chartType, wkfModel, snapshotUser, parameter);
+  }
+
+  /**
+   * Charts depending on the user, with one snapshot per user. The charts per user depend on it for
+   * the nodes assigned to the current user.
+   */
+  protected boolean isUserChart(String chartType) {
+    return PROCESSES.equals(chartType)
+        || WkfDashboardCommonService.ASSIGNED_ME.equals(chartType)
+        || WkfDashboardCommonService.ASSIGNED_OTHER.equals(chartType)
+        || AVG_TIME_PER_USER.equals(chartType)
+        || TASK_DONE_TODAY_PER_USER.equals(chartType)
+        || TASK_TO_DO_PER_USER.equals(chartType);
+  }
+
+  protected Object getData(String chartType, WkfModel wkfModel, User user, String parameter) {
+
+    refresher.register(BpmTools.getCurentTenant());
+
+    String snapshotKey = getSnapshotKey(chartType, wkfModel, user, parameter);
+    WkfDashboardSnapshot snapshot = findSnapshot(snapshotKey);
+    if (snapshot != null && snapshot.getData() != null) {
+      try {
+        return MAPPER.readValue(snapshot.getData(), Object.class);
+      } catch (JsonProcessingException e) {
+        log.warn("Invalid BPM dashboard snapshot {}, computed again", snapshot.getId());
+      }
+    }
+
+    if (snapshot == null) {
+      snapshot = createSnapshot(snapshotKey, chartType, wkfModel, user, parameter);
+    }
+
+    WkfDashboardSnapshot computed = snapshot;
+    Object data = compute(computed);
+    JPA.runInTransaction(() -> save(computed, data));
+
+    return data != null ? data : new ArrayList<>();
+  }
+
+  /** One snapshot per key, enforced by the unique constraint of the key. */
+  protected String getSnapshotKey(
+      String chartType, WkfModel wkfModel, User user, String parameter) {
+    return String.join(
+        ":",
+        chartType,
+        wkfModel != null ? String.valueOf(wkfModel.getId()) : "",
+        user != null ? String.valueOf(user.getId()) : "",
+        parameter != null ? parameter : "");
+  }
+
+  protected WkfDashboardSnapshot findSnapshot(String snapshotKey) {
+    return snapshotRepo.all().filter("self.snapshotKey = ?1", snapshotKey).fetchOne();
+  }
+
+  /**
+   * Get or create the snapshot of the key. The snapshot is inserted in its own transaction, if a
+   * concurrent read inserted it first, the saved one is returned.
+   */
+  protected WkfDashboardSnapshot createSnapshot(
+      String snapshotKey, String chartType, WkfModel wkfModel, User user, String parameter) {
+
+    WkfDashboardSnapshot snapshot = new WkfDashboardSnapshot();
+    snapshot.setSnapshotKey(snapshotKey);
+    snapshot.setChartType(chartType);
+    snapshot.setWkfModel(wkfModel);
+    snapshot.setUser(user);
+    snapshot.setParameter(parameter);
+
+    try {
+      JPA.runInTransaction(() -> snapshotRepo.save(snapshot));
+      return snapshot;
+    } catch (PersistenceException e) {
+      JPA.clear();
+      WkfDashboardSnapshot saved = findSnapshot(snapshotKey);
+      if (saved == null) {
+        throw e;
+      }
+      return saved;
+    }
+  }
+
+  protected Object compute(WkfDashboardSnapshot snapshot) {
+
+    String chartType = snapshot.getChartType();
+    String parameter = snapshot.getParameter();
+    User user = snapshot.getUser();
+
+    if (PROCESSES.equals(chartType)) {
+      return user != null
+          ? bpmMgrDashboardService.showProcess(user, Integer.parseInt(parameter))
+          : null;
+    }
+
+    WkfModel wkfModel = snapshot.getWkfModel();
+    if (wkfModel == null || (isUserChart(chartType) && user == null)) {
+      return null;
+    }
+
+    switch (chartType) {
+      case AVG_TIME_PER_USER:
+        return bpmMgrDashboardUserService.getAvgTimePerUserData(wkfModel, parameter, user);
+
+      case TASK_DONE_TODAY_PER_USER:
+        return bpmMgrDashboardUserService.getTaskDoneTodayPerUser(wkfModel, user);
+
+      case TASK_TO_DO_PER_USER:
+        return bpmMgrDashboardUserService.getTaskToDoPerUser(wkfModel, user);
+
+      default:
+        return bpmMgrDashboardService.getChartData(wkfModel, chartType, parameter, user);
+    }
+  }
+
+  protected void save(WkfDashboardSnapshot snapshot, Object data) {
+
+    if (data == null) {
+      // The user or the model was removed.
+      if (snapshot.getId() != null) {
+        snapshotRepo.remove(snapshotRepo.find(snapshot.getId()));
+      }
+      return;
+    }
+
+    try {
+      snapshot.setData(MAPPER.writeValueAsString(data));
+    } catch (JsonProcessingException e) {
+      log.error("Error writing BPM dashboard snapshot {}", snapshot.getSnapshotKey(), e);
+      snapshot.setData(null);
+    }
+    snapshot.setComputedOn(LocalDateTime.now());
+    snapshotRepo.save(snapshot);
+  }
+
+  @Override
+  public List<Long> findSnapshotsToRefresh(Set<Long> wkfModelIds) {
+
+    if (wkfModelIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    List<Long> snapshotIds =
+        findSnapshots(
+            snapshotRepo
+                .all()
+                .filter("self.wkfModel.id IN (:wkfModelIds)")
+                .bind("wkfModelIds", wkfModelIds));
+    snapshotIds.addAll(findProcessSnapshotsToRefresh(wkfModelIds));
+
+    return snapshotIds;
+  }
+
+  /**
+   * Process lists showing one of the models, only the pages of the users having the model in the
+   * page.
+   */
+  protected List<Long> findProcessSnapshotsToRefresh(Set<Long> wkfModelIds) {
+
+    List<Long> snapshotIds = new ArrayList<>();
+    Map<Long, List<Integer>> positionsByUser = new HashMap<>();
+
+    List<WkfDashboardSnapshot> snapshots =
+        snapshotRepo
+            .all()
+            .filter("self.chartType = ?1 AND self.user IS NOT NULL", PROCESSES)
+            .fetch();
+    for (WkfDashboardSnapshot snapshot : snapshots) {
+      User user = snapshot.getUser();
+      List<Integer> positions =
+          positionsByUser.computeIfAbsent(
+              user.getId(), key -> getModelPositions(user, wkfModelIds));
+      int offset = Integer.parseInt(snapshot.getParameter());
+      int limit = offset + BpmManagerDashboardServiceImpl.FETCH_LIMIT;
+      if (positions.stream().anyMatch(position -> position >= offset && position < limit)) {
+        snapshotIds.add(snapshot.getId());
+      }
+    }
+
+    return snapshotIds;
+  }
+
+  /** Positions of the models in the process list of the user. */
+  protected List<Integer> getModelPositions(User user, Set<Long> wkfModelIds) {
+
+    List<WkfModel> wkfModels = bpmMgrDashboardUserService.getWkfModelsByUser(user);
+    List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < wkfModels.size(); i++) {
+      if (wkfModelIds.contains(wkfModels.get(i).getId())) {
+        positions.add(i);
+      }
+    }
+    return positions;
+  }
+
+  @Override
+  public List<Long> findAllSnapshots() {
+    return findSnapshots(snapshotRepo.all());
+  }
+
+  protected List<Long> findSnapshots(Query<WkfDashboardSnapshot> query) {
+    return query
+        .select("id")
+        .fetch(0, 0)
+        .stream()
+        .map(it -> (Long) it.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  @Transactional
+  public void refresh(WkfDashboardSnapshot snapshot) {
+    save(snapshot, compute(snapshot));
+  }
+
+  @Override
+  @Transactional
+  public void removeExpired(LocalDateTime computedBefore) {
+    snapshotRepo.all().filter("self.computedOn < ?", computedBefore).delete();
+  }
+
+  @Override
+  public void refreshAll() {
+    refresher.refreshAll(BpmTools.getCurentTenant());
+  }
+
+  @Override
+  public LocalDateTime getComputedOn(User user, WkfModel wkfModel) {
+
+    WkfDashboardSnapshot snapshot =
+        snapshotRepo
+            .all()
+            .filter(
+                "(self.wkfModel = :wkfModel OR self.wkfModel IS NULL)"
+                    + " AND (self.user = :user OR self.user IS NULL)"
+                    + " AND self.computedOn IS NOT NULL")
+            .bind("wkfModel", wkfModel)
+            .bind("user", user)
+            .order("computedOn")
+            .fetchOne();
+
+    return snapshot != null ? snapshot.getComputedOn() : null;
+  }
+
+  @Override
+  public boolean isStale() {
+    return refresher.isStale(BpmTools.getCurentTenant());
+  }
+}
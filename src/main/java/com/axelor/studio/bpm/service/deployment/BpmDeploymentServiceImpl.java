@@ -18,24 +18,23 @@
 package com.axelor.studio.bpm.service.deployment;
 
 import com.axelor.common.ObjectUtils;
-import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaAttrs;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.meta.db.repo.MetaFileRepository;
 import com.axelor.meta.db.repo.MetaJsonModelRepository;
-import com.axelor.studio.bpm.exception.BpmExceptionMessage;
+import com.axelor.studio.bpm.context.WkfCache;
 import com.axelor.studio.bpm.service.WkfCommonService;
-import com.axelor.studio.bpm.service.execution.WkfInstanceService;
 import com.axelor.studio.bpm.service.init.ProcessEngineService;
 import com.axelor.studio.bpm.service.init.WkfProcessApplication;
+import com.axelor.studio.bpm.service.migration.WkfMigrationBatchService;
+import com.axelor.studio.db.WkfMigrationBatch;
 import com.axelor.studio.db.WkfModel;
 import com.axelor.studio.db.WkfProcess;
 import com.axelor.studio.db.WkfProcessConfig;
 import com.axelor.studio.db.WkfTaskConfig;
 import com.axelor.studio.db.WkfTaskMenu;
-import com.axelor.studio.db.repo.WkfInstanceRepository;
 import com.axelor.studio.db.repo.WkfModelRepository;
 import com.axelor.studio.db.repo.WkfProcessRepository;
 import com.axelor.studio.db.repo.WkfTaskConfigRepository;
@@ -43,21 +42,22 @@ import com.axelor.studio.db.repo.WkfTaskMenuRepository;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.apache.commons.collections.CollectionUtils;
 import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.history.HistoricActivityStatistics;
 import org.camunda.bpm.engine.impl.bpmn.parser.BpmnParser;
 import org.camunda.bpm.engine.migration.MigrationPlan;
 import org.camunda.bpm.engine.migration.MigrationPlanBuilder;
 import org.camunda.bpm.engine.repository.Deployment;
 import org.camunda.bpm.engine.repository.DeploymentBuilder;
 import org.camunda.bpm.engine.repository.ProcessDefinition;
-import org.camunda.bpm.engine.runtime.ProcessInstance;
-import org.camunda.bpm.engine.runtime.ProcessInstanceQuery;
 import org.camunda.bpm.model.bpmn.Bpmn;
 import org.camunda.bpm.model.bpmn.BpmnModelInstance;
 import org.camunda.bpm.model.bpmn.impl.BpmnModelConstants;
@@ -88,7 +88,7 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
 
   @Inject protected WkfTaskMenuRepository taskMenuRepo;
 
-  @Inject protected WkfInstanceService wkfInstanceService;
+  @Inject protected WkfMigrationBatchService wkfMigrationBatchService;
 
   @Inject protected WkfModelRepository wkfModelRepo;
 
@@ -97,6 +97,12 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
 
   protected Map<String, Map<String, String>> migrationMap;
 
+  protected List<WkfMigrationBatch> migrationBatches = new ArrayList<>();
+
+  protected Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+  protected long phaseStart;
+
   public void deploy(
       WkfModel sourceModel, WkfModel targetModel, Map<String, Map<String, String>> migrationMap) {
 
@@ -107,6 +113,9 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
     this.sourceModel = ObjectUtils.isEmpty(sourceModel) ? targetModel : sourceModel;
     this.targetModel = targetModel;
     this.migrationMap = migrationMap;
+    this.migrationBatches.clear();
+    this.phaseTimes.clear();
+    this.phaseStart = System.currentTimeMillis();
 
     ProcessEngine engine = Beans.get(ProcessEngineService.class).getEngine();
 
@@ -126,23 +135,45 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
       addDmn(deploymentBuilder, dmnFiles);
     }
 
+    endPhase("read");
+
     Map<String, String> processMap = deployProcess(engine, deploymentBuilder, bpmInstance);
 
     List<MetaAttrs> metaAttrsList =
         Beans.get(WkfNodeService.class).extractNodes(targetModel, bpmInstance, processMap);
+    endPhase("nodes");
 
     saveWkfModel(targetModel);
+    endPhase("save");
 
     metaAttrsService.saveMetaAttrs(metaAttrsList, targetModel.getId());
+    endPhase("attrs");
 
-    if (migrationMap == null) {
-      return;
-    }
+    WkfCache.onDeploy(targetModel);
+    endPhase("cache");
 
-    String isRemove = migrationMap.get("props").get("removeOldVersionMenu");
-    if (isRemove.equals("true") && targetModel.getPreviousVersion() != null) {
-      removePreviousVersionMenus(targetModel.getPreviousVersion());
+    migrationBatches.forEach(wkfMigrationBatchService::start);
+
+    if (migrationMap != null) {
+      String isRemove = migrationMap.get("props").get("removeOldVersionMenu");
+      if (isRemove.equals("true") && targetModel.getPreviousVersion() != null) {
+        removePreviousVersionMenus(targetModel.getPreviousVersion());
+      }
     }
+    endPhase("migration");
+
+    log.info(
+        "BPM model {} deployed in {} ms, per phase: {}",
+        targetModel.getCode(),
+        phaseTimes.values().stream().mapToLong(Long::longValue).sum(),
+        phaseTimes);
+  }
+
+  /** Record the time of a deploy phase, since the end of the previous one. */
+  protected void endPhase(String phase) {
+    long now = System.currentTimeMillis();
+    phaseTimes.merge(phase, now - phaseStart, Long::sum);
+    phaseStart = now;
   }
 
   @Transactional
@@ -154,6 +185,7 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
       ProcessEngine engine, DeploymentBuilder deploymentBuilder, BpmnModelInstance bpmInstance) {
 
     Deployment deployment = deploymentBuilder.deploy();
+    endPhase("deployment");
 
     Map<String, String> processMap = new HashMap<String, String>();
 
@@ -164,8 +196,6 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
             .deploymentId(deployment.getId())
             .list();
 
-    Map<String, WkfProcess> migrationProcessMap = new HashMap<String, WkfProcess>();
-
     log.debug("Definitions deployed: {}", definitions.size());
     for (ProcessDefinition definition : definitions) {
 
@@ -191,12 +221,13 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
       addDisplayProperties(bpmInstance, process);
 
       processMap.put(definition.getKey(), definition.getId());
-      migrationProcessMap.put(definition.getId(), process);
     }
 
+    endPhase("processes");
+
     if (sourceModel.getDeploymentId() != null && migrationMap != null) {
-      migrateRunningInstances(
-          sourceModel.getDeploymentId(), engine, definitions, migrationProcessMap);
+      migrateRunningInstances(sourceModel.getDeploymentId(), engine, definitions);
+      endPhase("migration plan");
     }
 
     targetModel.setDeploymentId(deployment.getId());
@@ -209,11 +240,12 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
     return processMap;
   }
 
+  /**
+   * Prepare a migration batch per process of the previous deployment with running instances, the
+   * instances are migrated in the background once the model is saved.
+   */
   protected void migrateRunningInstances(
-      String oldDeploymentId,
-      ProcessEngine engine,
-      List<ProcessDefinition> definitions,
-      Map<String, WkfProcess> migrationProcessMap) {
+      String oldDeploymentId, ProcessEngine engine, List<ProcessDefinition> definitions) {
 
     List<ProcessDefinition> oldDefinitions =
         engine
@@ -222,8 +254,6 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
             .deploymentId(oldDeploymentId)
             .list();
 
-    boolean isMigrationError = false;
-
     log.debug("Old definition size " + oldDefinitions.size());
 
     for (ProcessDefinition oldDefinition : oldDefinitions) {
@@ -233,10 +263,21 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
           continue;
         }
 
+        long nbInstances =
+            engine
+                .getRuntimeService()
+                .createProcessInstanceQuery()
+                .processDefinitionId(oldDefinition.getId())
+                .count();
         log.debug(
-            "Migrating from old defintion: {}, to new definition: {}",
-            oldDefinition.getKey(),
-            newDefinition.getKey());
+            "Process instances to migrate from old definition: {}, to new definition: {}: {}",
+            oldDefinition.getId(),
+            newDefinition.getId(),
+            nbInstances);
+
+        if (nbInstances < 1) {
+          continue;
+        }
 
         MigrationPlan plan = createMigrationPlan(engine, oldDefinition, newDefinition);
 
@@ -244,59 +285,11 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
           continue;
         }
 
-        isMigrationError =
-            computeMigrationInstances(
-                engine, oldDefinition, newDefinition, plan, migrationProcessMap, isMigrationError);
-      }
-    }
-    if (isMigrationError) {
-      throw new IllegalStateException(I18n.get(BpmExceptionMessage.MIGRATION_ERR));
-    }
-  }
-
-  private boolean computeMigrationInstances(
-      ProcessEngine engine,
-      ProcessDefinition oldDefinition,
-      ProcessDefinition newDefinition,
-      MigrationPlan plan,
-      Map<String, WkfProcess> migrationProcessMap,
-      boolean isMigrationError) {
-
-    ProcessInstanceQuery query =
-        engine
-            .getRuntimeService()
-            .createProcessInstanceQuery()
-            .processDefinitionId(oldDefinition.getId());
-
-    long nbInstances = query.count();
-    log.debug("Process instances to migrate: {}", nbInstances);
-
-    if (nbInstances < 1) {
-      return isMigrationError;
-    }
-
-    WkfProcess targetProcess = migrationProcessMap.get(newDefinition.getId());
-
-    List<ProcessInstance> processInstances = query.list();
-
-    for (ProcessInstance instance : processInstances) {
-      try {
-        engine
-            .getRuntimeService()
-            .newMigration(plan)
-            .processInstanceIds(instance.getId())
-            .execute();
-
-        wkfInstanceService.updateProcessInstance(
-            targetProcess, instance.getId(), WkfInstanceRepository.STATUS_MIGRATED_SUCCESSFULLY);
-
-      } catch (Exception e) {
-        isMigrationError = true;
-        wkfInstanceService.updateProcessInstance(
-            null, instance.getId(), WkfInstanceRepository.STATUS_MIGRATION_ERROR);
+        migrationBatches.add(
+            wkfMigrationBatchService.createBatch(
+                targetModel, oldDefinition, newDefinition, plan, nbInstances));
       }
     }
-    return isMigrationError;
   }
 
   private MigrationPlan createMigrationPlan(
@@ -317,17 +310,10 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
     ModelInstance modelInstance =
         engine.getRepositoryService().getBpmnModelInstance(oldDefinition.getId());
 
+    Map<String, Long> unfinishedCounts = getUnfinishedActivityCounts(engine, oldDefinition);
+
     for (String key : processMap.keySet()) {
-      long count =
-          engine
-              .getHistoryService()
-              .createHistoricActivityInstanceQuery()
-              .processDefinitionId(oldDefinition.getId())
-              .activityId(key)
-              .unfinished()
-              .count();
-
-      if (count == 0) {
+      if (unfinishedCounts.getOrDefault(key, 0L) == 0) {
         continue;
       }
 
@@ -358,6 +344,22 @@ public class BpmDeploymentServiceImpl implements BpmDeploymentService {
     return plan;
   }
 
+  /** Unfinished activity instances of the definition per activity, in one grouped query. */
+  protected Map<String, Long> getUnfinishedActivityCounts(
+      ProcessEngine engine, ProcessDefinition definition) {
+
+    Map<String, Long> counts = new HashMap<>();
+    for (HistoricActivityStatistics statistics :
+        engine
+            .getHistoryService()
+            .createHistoricActivityStatisticsQuery(definition.getId())
+            .list()) {
+      counts.put(statistics.getId(), statistics.getInstances());
+    }
+
+    return counts;
+  }
+
   protected void addDmn(DeploymentBuilder deploymentBuilder, Set<MetaFile> dmnFiles) {
 
     MetaFileRepository metaFileRepo = Beans.get(MetaFileRepository.class);
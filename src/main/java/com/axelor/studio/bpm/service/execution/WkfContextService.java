@@ -0,0 +1,40 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.execution;
+
+import com.axelor.db.Model;
+import com.axelor.studio.db.WkfInstance;
+import java.util.Map;
+import java.util.Set;
+
+public interface WkfContextService {
+
+  /**
+   * Records of the process instance wrapped in a {@link com.axelor.utils.context.FullContext},
+   * by variable name. Records are fetched with one query per entity class of the process configs.
+   */
+  public Map<String, Object> getContext(WkfInstance instance) throws ClassNotFoundException;
+
+  /**
+   * Load in the given context the records of the entity classes having a config without record
+   * in it, the records already loaded being kept up to date by the persistence context. Returns
+   * the classes of which some records were added.
+   */
+  public Set<Class<? extends Model>> loadMissing(WkfInstance instance, Map<String, Object> context)
+      throws ClassNotFoundException;
+}
@@ -0,0 +1,189 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.execution;
+
+import com.axelor.db.EntityHelper;
+import com.axelor.db.JpaRepository;
+import com.axelor.db.Model;
+import com.axelor.meta.db.MetaJsonRecord;
+import com.axelor.studio.bpm.service.WkfCommonService;
+import com.axelor.studio.db.WkfInstance;
+import com.axelor.studio.db.WkfProcessConfig;
+import com.axelor.utils.context.FullContext;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WkfContextServiceImpl implements WkfContextService {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfContextServiceImpl.class);
+
+  private static final Map<String, Class<? extends Model>> MODEL_CLASSES =
+      new ConcurrentHashMap<>();
+
+  protected WkfCommonService wkfService;
+
+  @Inject
+  public WkfContextServiceImpl(WkfCommonService wkfService) {
+    this.wkfService = wkfService;
+  }
+
+  @Override
+  public Map<String, Object> getContext(WkfInstance instance) throws ClassNotFoundException {
+
+    Map<String, Object> modelMap = new HashMap<>();
+
+    for (Map.Entry<Class<? extends Model>, List<WkfProcessConfig>> entry :
+        groupByClass(instance).entrySet()) {
+      modelMap.putAll(fetchModels(entry.getKey(), entry.getValue(), instance.getInstanceId()));
+    }
+
+    log.debug("Variable map used: {}", modelMap);
+
+    return modelMap;
+  }
+
+  @Override
+  public Set<Class<? extends Model>> loadMissing(WkfInstance instance, Map<String, Object> context)
+      throws ClassNotFoundException {
+
+    Set<Class<? extends Model>> loaded = new HashSet<>();
+
+    for (Map.Entry<Class<? extends Model>, List<WkfProcessConfig>> entry :
+        groupByClass(instance).entrySet()) {
+      boolean missing =
+          entry.getValue().stream()
+              .map(this::getVarName)
+              .anyMatch(varName -> !context.containsKey(varName));
+      if (!missing) {
+        continue;
+      }
+
+      Map<String, Object> modelMap =
+          fetchModels(entry.getKey(), entry.getValue(), instance.getInstanceId());
+      modelMap.keySet().removeAll(context.keySet());
+      if (!modelMap.isEmpty()) {
+        context.putAll(modelMap);
+        loaded.add(entry.getKey());
+      }
+    }
+
+    log.debug("Classes loaded again: {}", loaded);
+
+    return loaded;
+  }
+
+  protected String getVarName(WkfProcessConfig processConfig) {
+    if (processConfig.getMetaJsonModel() != null) {
+      return wkfService.getVarName(processConfig.getMetaJsonModel().getName());
+    }
+    return wkfService.getVarName(processConfig.getMetaModel().getFullName());
+  }
+
+  protected Map<Class<? extends Model>, List<WkfProcessConfig>> groupByClass(WkfInstance instance)
+      throws ClassNotFoundException {
+
+    Map<Class<? extends Model>, List<WkfProcessConfig>> configMap = new LinkedHashMap<>();
+
+    for (WkfProcessConfig processConfig : instance.getWkfProcess().getWkfProcessConfigList()) {
+      configMap
+          .computeIfAbsent(getModelClass(processConfig), key -> new ArrayList<>())
+          .add(processConfig);
+    }
+
+    return configMap;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected Class<? extends Model> getModelClass(WkfProcessConfig processConfig)
+      throws ClassNotFoundException {
+
+    if (processConfig.getMetaJsonModel() != null) {
+      return MetaJsonRecord.class;
+    }
+
+    String klassName = processConfig.getMetaModel().getFullName();
+    Class<? extends Model> klass = MODEL_CLASSES.get(klassName);
+
+    if (klass == null) {
+      klass = (Class<? extends Model>) Class.forName(klassName);
+      MODEL_CLASSES.put(klassName, klass);
+    }
+
+    return klass;
+  }
+
+  /** Last record of each config of the given class linked to the process instance. */
+  protected Map<String, Object> fetchModels(
+      Class<? extends Model> klass, List<WkfProcessConfig> processConfigs, String instanceId) {
+
+    List<? extends Model> models;
+
+    if (klass.equals(MetaJsonRecord.class)) {
+      List<String> jsonModels =
+          processConfigs.stream()
+              .map(it -> it.getMetaJsonModel().getName())
+              .distinct()
+              .collect(Collectors.toList());
+      models =
+          JpaRepository.of(klass)
+              .all()
+              .filter(
+                  "self.id IN (SELECT MAX(record.id) FROM MetaJsonRecord record "
+                      + "WHERE record.processInstanceId = ?1 AND record.jsonModel IN (?2) "
+                      + "GROUP BY record.jsonModel)",
+                  instanceId,
+                  jsonModels)
+              .fetch();
+    } else {
+      Model model =
+          JpaRepository.of(klass)
+              .all()
+              .filter("self.processInstanceId = ?1", instanceId)
+              .order("-id")
+              .fetchOne();
+      models = model != null ? Collections.singletonList(model) : Collections.emptyList();
+    }
+
+    Map<String, Object> modelMap = new HashMap<>();
+
+    for (Model model : models) {
+      model = EntityHelper.getEntity(model);
+      modelMap.put(wkfService.getVarName(model), new FullContext(model));
+    }
+
+    if (modelMap.size() < processConfigs.size()) {
+      log.debug(
+          "Model not found for some configs of {} with processInstanceId: {}",
+          klass.getName(),
+          instanceId);
+    }
+
+    return modelMap;
+  }
+}
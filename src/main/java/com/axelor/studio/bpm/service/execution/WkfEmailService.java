@@ -17,6 +17,8 @@
  */
 package com.axelor.studio.bpm.service.execution;
 
+import com.axelor.message.db.Message;
+import com.axelor.message.db.Template;
 import com.axelor.studio.db.WkfTaskConfig;
 import com.axelor.utils.context.FullContext;
 import javax.mail.MessagingException;
@@ -27,5 +29,25 @@ public interface WkfEmailService {
   public void sendEmail(WkfTaskConfig wkfTaskConfig, DelegateExecution execution)
       throws ClassNotFoundException, MessagingException;
 
+  /** Send the notification of the task for the record of the context, on the given node. */
+  public void sendEmail(WkfTaskConfig wkfTaskConfig, FullContext wkfContext, String activeNode)
+      throws MessagingException;
+
+  /**
+   * Create the notification of the task for the record of the context, on the given node, without
+   * sending it. Returns null when there is nobody to notify.
+   */
+  public Message createMessage(
+      WkfTaskConfig wkfTaskConfig, FullContext wkfContext, String activeNode)
+      throws MessagingException;
+
+  /**
+   * Create the notification of the task with the given template, already found from the template
+   * name of the task. Without template, the default email is created for the user of the task.
+   */
+  public Message createMessage(
+      WkfTaskConfig wkfTaskConfig, Template template, FullContext wkfContext, String activeNode)
+      throws MessagingException;
+
   public String createUrl(FullContext wkfContext, String formName);
 }
@@ -30,11 +30,11 @@ import com.axelor.message.db.repo.MessageRepository;
 import com.axelor.message.db.repo.TemplateRepository;
 import com.axelor.message.service.MessageService;
 import com.axelor.message.service.TemplateMessageService;
-import com.axelor.meta.db.MetaAction;
 import com.axelor.meta.db.MetaJsonRecord;
 import com.axelor.meta.db.repo.MetaActionRepository;
 import com.axelor.studio.db.WkfTaskConfig;
 import com.axelor.studio.service.AppSettingsStudioService;
+import com.axelor.studio.service.MetaActionViewCache;
 import com.axelor.utils.context.FullContext;
 import com.google.inject.Inject;
 import java.util.ArrayList;
@@ -60,8 +60,7 @@ public class WkfEmailServiceImpl implements WkfEmailService {
   public void sendEmail(WkfTaskConfig wkfTaskConfig, DelegateExecution execution)
       throws ClassNotFoundException, MessagingException {
 
-    String title = wkfTaskConfig.getTaskEmailTitle();
-    if (title == null) {
+    if (wkfTaskConfig.getTaskEmailTitle() == null) {
       return;
     }
 
@@ -71,6 +70,40 @@ public class WkfEmailServiceImpl implements WkfEmailService {
       return;
     }
 
+    sendEmail(wkfTaskConfig, wkfContext, execution.getCurrentActivityName());
+  }
+
+  @Override
+  public void sendEmail(WkfTaskConfig wkfTaskConfig, FullContext wkfContext, String activeNode)
+      throws MessagingException {
+
+    Message message = createMessage(wkfTaskConfig, wkfContext, activeNode);
+    if (message != null) {
+      messageService.sendByEmail(message);
+    }
+  }
+
+  @Override
+  public Message createMessage(
+      WkfTaskConfig wkfTaskConfig, FullContext wkfContext, String activeNode)
+      throws MessagingException {
+
+    Template template =
+        Beans.get(TemplateRepository.class).findByName(wkfTaskConfig.getTemplateName());
+
+    return createMessage(wkfTaskConfig, template, wkfContext, activeNode);
+  }
+
+  @Override
+  public Message createMessage(
+      WkfTaskConfig wkfTaskConfig, Template template, FullContext wkfContext, String activeNode)
+      throws MessagingException {
+
+    String title = wkfTaskConfig.getTaskEmailTitle();
+    if (title == null) {
+      return null;
+    }
+
     String model = null;
     String tag = null;
     Long id = null;
@@ -86,9 +119,6 @@ public class WkfEmailServiceImpl implements WkfEmailService {
     id = (Long) wkfContext.get("id");
 
     String url = createUrl(wkfContext, wkfTaskConfig.getDefaultForm());
-    String activeNode = execution.getCurrentActivityName();
-    Template template =
-        Beans.get(TemplateRepository.class).findByName(wkfTaskConfig.getTemplateName());
 
     Message message = null;
     if (template != null) {
@@ -105,7 +135,7 @@ public class WkfEmailServiceImpl implements WkfEmailService {
       }
 
       if (user == null || user.getEmail() == null) {
-        return;
+        return null;
       }
 
       String content = String.format(EMAIL_CONTENT, user.getName(), activeNode, url, url);
@@ -135,7 +165,7 @@ public class WkfEmailServiceImpl implements WkfEmailService {
               null,
               null);
     }
-    messageService.sendByEmail(message);
+    return message;
   }
 
   @Override
@@ -169,14 +199,6 @@ public class WkfEmailServiceImpl implements WkfEmailService {
   }
 
   private String getAction(String formName) {
-
-    MetaAction metaAction =
-        metaActionRepository.all().filter("self.xml like '%\"" + formName + "\"%'").fetchOne();
-
-    if (metaAction != null) {
-      return metaAction.getName();
-    }
-
-    return null;
+    return MetaActionViewCache.getAction(formName);
   }
 }
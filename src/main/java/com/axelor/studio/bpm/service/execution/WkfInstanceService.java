@@ -19,10 +19,13 @@ package com.axelor.studio.bpm.service.execution;
 
 import com.axelor.db.Model;
 import com.axelor.meta.CallMethod;
+import com.axelor.studio.bpm.context.WkfCache.TaskConfig;
 import com.axelor.studio.db.WkfInstance;
+import com.axelor.studio.db.WkfMigrationBatch;
 import com.axelor.studio.db.WkfProcess;
 import com.axelor.studio.db.WkfTaskConfig;
 import com.google.inject.persist.Transactional;
+import java.util.Collection;
 import java.util.List;
 import org.camunda.bpm.engine.RuntimeService;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
@@ -32,6 +35,13 @@ public interface WkfInstanceService {
   @Transactional
   public String evalInstance(Model model, String signal) throws ClassNotFoundException;
 
+  /**
+   * Evaluate the workflow of the given models, each process instance being evaluated only once.
+   * Used to evaluate all the records updated in a transaction.
+   */
+  @Transactional
+  public void evalInstances(Collection<? extends Model> models) throws ClassNotFoundException;
+
   @Transactional
   public WkfInstance createWkfInstance(String processInstanceId, WkfProcess wkfProcess);
 
@@ -51,8 +61,20 @@ public interface WkfInstanceService {
 
   public void onNodeActivation(WkfTaskConfig wkfTaskConfig, DelegateExecution execution);
 
+  /**
+   * Called for every node having a config, with the cached config. The {@link WkfTaskConfig} is
+   * only loaded for the nodes having something to do on activation.
+   */
+  public void onNodeActivation(TaskConfig taskConfig, DelegateExecution execution);
+
   public void onNodeDeactivation(WkfTaskConfig wkfTaskConfig, DelegateExecution execution);
 
+  /**
+   * Called for every node having a config, with the cached config. The {@link WkfTaskConfig} is
+   * only loaded for the nodes having something to do on deactivation.
+   */
+  public void onNodeDeactivation(TaskConfig taskConfig, DelegateExecution execution);
+
   public void terminateAll();
 
   public String getInstanceXml(String instanceId);
@@ -69,4 +91,14 @@ public interface WkfInstanceService {
 
   public void updateProcessInstance(
       WkfProcess process, String processInstanceId, int migrationStatus);
+
+  /**
+   * Update the instances of a migrated chunk in one transaction, their migration history is linked
+   * to the given migration batch.
+   */
+  public void updateProcessInstances(
+      WkfProcess process,
+      Collection<String> processInstanceIds,
+      int migrationStatus,
+      WkfMigrationBatch migrationBatch);
 }
@@ -25,14 +25,18 @@ import com.axelor.inject.Beans;
 import com.axelor.meta.CallMethod;
 import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaJsonRecord;
+import com.axelor.studio.bpm.context.WkfCache.TaskConfig;
 import com.axelor.studio.bpm.context.WkfContextHelper;
 import com.axelor.studio.bpm.exception.AxelorScriptEngineException;
 import com.axelor.studio.bpm.exception.BpmExceptionMessage;
 import com.axelor.studio.bpm.service.WkfCommonService;
 import com.axelor.studio.bpm.service.init.ProcessEngineService;
+import com.axelor.studio.bpm.service.message.BpmErrorMessageExecutor;
 import com.axelor.studio.bpm.service.message.BpmErrorMessageService;
+import com.axelor.studio.bpm.service.message.WkfNotificationService;
 import com.axelor.studio.db.WkfInstance;
 import com.axelor.studio.db.WkfInstanceMigrationHistory;
+import com.axelor.studio.db.WkfMigrationBatch;
 import com.axelor.studio.db.WkfModel;
 import com.axelor.studio.db.WkfProcess;
 import com.axelor.studio.db.WkfProcessConfig;
@@ -44,6 +48,7 @@ import com.axelor.utils.context.FullContext;
 import com.axelor.utils.context.FullContextHelper;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
@@ -51,12 +56,13 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
@@ -71,6 +77,7 @@ import org.camunda.bpm.engine.history.HistoricProcessInstanceQuery;
 import org.camunda.bpm.engine.history.HistoricVariableInstance;
 import org.camunda.bpm.engine.runtime.ProcessInstance;
 import org.camunda.bpm.engine.runtime.ProcessInstantiationBuilder;
+import org.camunda.bpm.engine.task.Task;
 import org.camunda.bpm.engine.variable.Variables;
 import org.camunda.bpm.engine.variable.Variables.SerializationDataFormats;
 import org.camunda.bpm.model.bpmn.impl.BpmnModelConstants;
@@ -81,6 +88,8 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
 
   protected static final Logger log = LoggerFactory.getLogger(WkfInstanceServiceImpl.class);
 
+  protected static final int BATCH_SIZE = 500;
+
   protected static final String[] WAITING_NODES =
       new String[] {
         BpmnModelConstants.BPMN_ELEMENT_USER_TASK, BpmnModelConstants.BPMN_ELEMENT_RECEIVE_TASK
@@ -98,6 +107,8 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
 
   @Inject protected BpmErrorMessageService bpmErrorMessageService;
 
+  @Inject protected WkfInstanceStatusService wkfInstanceStatusService;
+
   @Override
   @Transactional
   public String evalInstance(Model model, String signal) throws ClassNotFoundException {
@@ -107,14 +118,7 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
     String helpText = null;
 
     try {
-      if (Strings.isNullOrEmpty(model.getProcessInstanceId())) {
-        checkSubProcess(model);
-      }
-
-      if (Strings.isNullOrEmpty(model.getProcessInstanceId())) {
-        addRelatedProcessInstanceId(model);
-        log.debug("Model process instanceId added: {}", model.getProcessInstanceId());
-      }
+      addProcessInstanceId(model);
 
       if (!Strings.isNullOrEmpty(model.getProcessInstanceId())) {
 
@@ -137,30 +141,146 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
         }
       }
     } catch (Exception e) {
-      if (!(e instanceof AxelorScriptEngineException)) {
-        WkfProcessConfig wkfProcessConfig = wkfService.findCurrentProcessConfig(model);
-        String processInstanceId = model.getProcessInstanceId();
-        ExecutorService executor = Executors.newCachedThreadPool();
-        executor.submit(
-            new Callable<Boolean>() {
-              @Override
-              public Boolean call() throws Exception {
-                Beans.get(BpmErrorMessageService.class)
-                    .sendBpmErrorMessage(
-                        null,
-                        e.getMessage(),
-                        EntityHelper.getEntity(wkfProcessConfig.getWkfProcess().getWkfModel()),
-                        processInstanceId);
-                return true;
-              }
-            });
-      }
+      sendErrorMessage(model, e);
       throw e;
     }
 
     return helpText;
   }
 
+  @Override
+  @Transactional
+  public void evalInstances(Collection<? extends Model> models) throws ClassNotFoundException {
+
+    Map<String, Model> instanceModels = new LinkedHashMap<>();
+
+    for (Model model : models) {
+      model = EntityHelper.getEntity(model);
+      try {
+        addProcessInstanceId(model);
+      } catch (Exception e) {
+        sendErrorMessage(model, e);
+        throw e;
+      }
+      if (!Strings.isNullOrEmpty(model.getProcessInstanceId())) {
+        instanceModels.putIfAbsent(model.getProcessInstanceId(), model);
+      }
+    }
+
+    if (instanceModels.isEmpty()) {
+      return;
+    }
+
+    ProcessEngine engine = engineService.getEngine();
+
+    Map<String, WkfInstance> wkfInstances = findWkfInstances(instanceModels.keySet());
+    Map<String, ProcessInstance> processInstances =
+        findProcessInstances(wkfInstances.keySet(), engine.getRuntimeService());
+    Map<String, List<Task>> activeTasks = findActiveTasks(processInstances.keySet(), engine);
+
+    log.debug(
+        "Eval {} process instances for {} updated models", processInstances.size(), models.size());
+
+    WkfTaskService wkfTaskService = Beans.get(WkfTaskService.class);
+
+    for (ProcessInstance processInstance : processInstances.values()) {
+      if (processInstance.isEnded()) {
+        continue;
+      }
+      String processInstanceId = processInstance.getId();
+      try {
+        wkfTaskService.runTasks(
+            engine,
+            wkfInstances.get(processInstanceId),
+            processInstance,
+            null,
+            activeTasks.getOrDefault(processInstanceId, new ArrayList<>()));
+      } catch (Exception e) {
+        sendErrorMessage(instanceModels.get(processInstanceId), e);
+        throw e;
+      }
+    }
+  }
+
+  protected void addProcessInstanceId(Model model) {
+
+    if (Strings.isNullOrEmpty(model.getProcessInstanceId())) {
+      checkSubProcess(model);
+    }
+
+    if (Strings.isNullOrEmpty(model.getProcessInstanceId())) {
+      addRelatedProcessInstanceId(model);
+      log.debug("Model process instanceId added: {}", model.getProcessInstanceId());
+    }
+  }
+
+  protected Map<String, WkfInstance> findWkfInstances(Collection<String> processInstanceIds) {
+
+    Map<String, WkfInstance> wkfInstances = new LinkedHashMap<>();
+
+    for (List<String> ids : Iterables.partition(processInstanceIds, BATCH_SIZE)) {
+      wkfInstanceRepository.all().filter("self.instanceId IN (?1)", ids).fetch().stream()
+          .forEach(it -> wkfInstances.put(it.getInstanceId(), it));
+    }
+
+    return wkfInstances;
+  }
+
+  protected Map<String, ProcessInstance> findProcessInstances(
+      Collection<String> processInstanceIds, RuntimeService runTimeService) {
+
+    Map<String, ProcessInstance> processInstances = new LinkedHashMap<>();
+
+    for (List<String> ids : Iterables.partition(processInstanceIds, BATCH_SIZE)) {
+      runTimeService.createProcessInstanceQuery().processInstanceIds(new HashSet<>(ids)).list()
+          .stream()
+          .forEach(it -> processInstances.put(it.getId(), it));
+    }
+
+    return processInstances;
+  }
+
+  protected Map<String, List<Task>> findActiveTasks(
+      Collection<String> processInstanceIds, ProcessEngine engine) {
+
+    Map<String, List<Task>> tasks = new HashMap<>();
+
+    for (List<String> ids : Iterables.partition(processInstanceIds, BATCH_SIZE)) {
+      engine
+          .getTaskService()
+          .createTaskQuery()
+          .active()
+          .processInstanceIdIn(ids.toArray(new String[0]))
+          .list()
+          .forEach(
+              it ->
+                  tasks
+                      .computeIfAbsent(it.getProcessInstanceId(), key -> new ArrayList<>())
+                      .add(it));
+    }
+
+    return tasks;
+  }
+
+  protected void sendErrorMessage(Model model, Exception e) {
+
+    if (e instanceof AxelorScriptEngineException) {
+      return;
+    }
+
+    WkfProcessConfig wkfProcessConfig = wkfService.findCurrentProcessConfig(model);
+    if (wkfProcessConfig == null) {
+      return;
+    }
+
+    Beans.get(BpmErrorMessageExecutor.class)
+        .submit(
+            null,
+            e.getMessage(),
+            EntityHelper.getEntity(wkfProcessConfig.getWkfProcess().getWkfModel()),
+            model.getProcessInstanceId());
+  }
+
   protected void startInstance(WkfProcessConfig wkfProcessConfig, Model model) {
 
     WkfProcessConfig previousConfig = wkfService.findOldProcessConfig(model);
@@ -296,6 +416,9 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
     } else {
       engine.getHistoryService().deleteHistoricProcessInstanceIfExists(processInstanceId);
     }
+
+    // The listeners are skipped, the status is not removed by the end of the nodes.
+    wkfInstanceStatusService.removeNodes(Collections.singletonList(processInstanceId));
   }
 
   @Override
@@ -414,7 +537,7 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
         && wkfTaskConfig.getEmailEvent() != null
         && wkfTaskConfig.getEmailEvent().equals("start")) {
       try {
-        Beans.get(WkfEmailService.class).sendEmail(wkfTaskConfig, execution);
+        Beans.get(WkfNotificationService.class).queue(wkfTaskConfig, execution);
       } catch (Exception e) {
         ExceptionTool.trace(e);
       }
@@ -425,6 +548,18 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
     }
   }
 
+  @Override
+  public void onNodeActivation(TaskConfig taskConfig, DelegateExecution execution) {
+
+    if (taskConfig == null || execution == null) {
+      return;
+    }
+
+    if (taskConfig.getCreateTask() || isEmailSentOn(taskConfig, "start")) {
+      onNodeActivation(wkfTaskConfigRepository.find(taskConfig.getId()), execution);
+    }
+  }
+
   @Override
   public void onNodeDeactivation(WkfTaskConfig wkfTaskConfig, DelegateExecution execution) {
 
@@ -436,13 +571,29 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
         && wkfTaskConfig.getEmailEvent() != null
         && wkfTaskConfig.getEmailEvent().equals("end")) {
       try {
-        Beans.get(WkfEmailService.class).sendEmail(wkfTaskConfig, execution);
+        Beans.get(WkfNotificationService.class).queue(wkfTaskConfig, execution);
       } catch (Exception e) {
         ExceptionTool.trace(e);
       }
     }
   }
 
+  @Override
+  public void onNodeDeactivation(TaskConfig taskConfig, DelegateExecution execution) {
+
+    if (taskConfig == null || execution == null) {
+      return;
+    }
+
+    if (isEmailSentOn(taskConfig, "end")) {
+      onNodeDeactivation(wkfTaskConfigRepository.find(taskConfig.getId()), execution);
+    }
+  }
+
+  protected boolean isEmailSentOn(TaskConfig taskConfig, String emailEvent) {
+    return taskConfig.getNotificationEmail() && emailEvent.equals(taskConfig.getEmailEvent());
+  }
+
   @Override
   public void terminateAll() {
 
@@ -450,15 +601,19 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
     List<ProcessInstance> processInstances =
         runtimeService.createProcessInstanceQuery().active().unlimitedList();
 
+    List<String> removed = new ArrayList<>();
     for (ProcessInstance processInstance : processInstances) {
       try {
         runtimeService.deleteProcessInstance(
             processInstance.getProcessInstanceId(), "Reset", true, true, false);
+        removed.add(processInstance.getProcessInstanceId());
 
       } catch (Exception e) {
         log.debug("Error removing process instance: {}", processInstance.getProcessInstanceId());
       }
     }
+
+    wkfInstanceStatusService.removeNodes(removed);
   }
 
   @Override
@@ -725,10 +880,48 @@ public class WkfInstanceServiceImpl implements WkfInstanceService {
       return;
     }
 
+    updateProcessInstance(instance, process, migrationStatus, null);
+  }
+
+  @Transactional
+  @Override
+  public void updateProcessInstances(
+      WkfProcess process,
+      Collection<String> processInstanceIds,
+      int migrationStatus,
+      WkfMigrationBatch migrationBatch) {
+
+    if (CollectionUtils.isEmpty(processInstanceIds)) {
+      return;
+    }
+
+    List<WkfInstance> instances =
+        wkfInstanceRepository
+            .all()
+            .filter("self.instanceId IN (:instanceIds)")
+            .bind("instanceIds", processInstanceIds)
+            .fetch();
+
+    for (WkfInstance instance : instances) {
+      updateProcessInstance(instance, process, migrationStatus, migrationBatch);
+    }
+  }
+
+  protected void updateProcessInstance(
+      WkfInstance instance,
+      WkfProcess process,
+      int migrationStatus,
+      WkfMigrationBatch migrationBatch) {
+
     WkfModel previousModel = instance.getWkfProcess().getWkfModel();
-    boolean isSameModel = previousModel.equals(process.getWkfModel());
-    instance.addWkfInstanceMigrationHistory(
-        createMigrationHistory(instance, previousModel, isSameModel));
+    // A failed migration leaves the instance on its model.
+    boolean isSameModel = process == null || previousModel.equals(process.getWkfModel());
+    WkfInstanceMigrationHistory migrationHistory =
+        createMigrationHistory(instance, previousModel, isSameModel);
+    if (migrationBatch != null) {
+      migrationHistory.setWkfMigrationBatch(migrationBatch);
+    }
+    instance.addWkfInstanceMigrationHistory(migrationHistory);
 
     instance.setMigrationStatusSelect(migrationStatus);
     if (process != null) {
@@ -0,0 +1,59 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.execution;
+
+import com.axelor.studio.db.WkfInstance;
+import com.axelor.studio.db.WkfInstanceNode;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+
+/**
+ * Maintains the {@link WkfInstanceNode} records, the nodes to display as status of the records of
+ * a process instance. A node is inserted on start and deleted on end, so the parallel branches of
+ * an instance never update the same row. Each node is returned as a map with the {@code name},
+ * {@code title} and {@code active} keys.
+ */
+public interface WkfInstanceStatusService {
+
+  /** Add the started node to the status of its process instance. */
+  public void onNodeStart(DelegateExecution execution);
+
+  /**
+   * Remove the ended node from the status of its process instance. An end event of the process is
+   * kept as inactive node, displayed once the instance is terminated.
+   */
+  public void onNodeEnd(DelegateExecution execution);
+
+  /**
+   * Active nodes of the instance, or its end nodes if it is terminated. The status of instances
+   * without nodes, started before the status was maintained, is computed from the history and saved
+   * on first read.
+   */
+  public List<Map<String, Object>> getStatusNodes(WkfInstance wkfInstance);
+
+  /** Remove the status of the instances, deleted without running their listeners. */
+  public void removeNodes(Collection<String> processInstanceIds);
+
+  /**
+   * Compute again the status of the instances from the history, once migrated to another
+   * definition whose nodes may have other ids and names.
+   */
+  public void resetNodes(Collection<String> processInstanceIds);
+}
@@ -0,0 +1,256 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.execution;
+
+import com.axelor.db.JPA;
+import com.axelor.studio.bpm.service.init.ProcessEngineService;
+import com.axelor.studio.db.WkfInstance;
+import com.axelor.studio.db.WkfInstanceNode;
+import com.axelor.studio.db.repo.WkfInstanceNodeRepository;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.camunda.bpm.engine.HistoryService;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.history.HistoricActivityInstance;
+import org.camunda.bpm.engine.history.HistoricProcessInstance;
+import org.camunda.bpm.model.bpmn.instance.EndEvent;
+import org.camunda.bpm.model.bpmn.instance.FlowElement;
+import org.camunda.bpm.model.bpmn.instance.Process;
+
+public class WkfInstanceStatusServiceImpl implements WkfInstanceStatusService {
+
+  protected static final String NAME = "name";
+  protected static final String TITLE = "title";
+  protected static final String ACTIVE = "active";
+
+  protected static final int MAX_IN_SIZE = 500;
+
+  protected WkfInstanceNodeRepository wkfInstanceNodeRepository;
+
+  protected ProcessEngineService engineService;
+
+  @Inject
+  public WkfInstanceStatusServiceImpl(
+      WkfInstanceNodeRepository wkfInstanceNodeRepository, ProcessEngineService engineService) {
+    this.wkfInstanceNodeRepository = wkfInstanceNodeRepository;
+    this.engineService = engineService;
+  }
+
+  @Override
+  @Transactional
+  public void onNodeStart(DelegateExecution execution) {
+
+    String processInstanceId = execution.getProcessInstanceId();
+    removeEndNodes(processInstanceId);
+
+    wkfInstanceNodeRepository.save(
+        createNode(
+            processInstanceId,
+            execution.getActivityInstanceId(),
+            execution.getCurrentActivityId(),
+            execution.getCurrentActivityName(),
+            true));
+  }
+
+  @Override
+  @Transactional
+  public void onNodeEnd(DelegateExecution execution) {
+
+    String processInstanceId = execution.getProcessInstanceId();
+    wkfInstanceNodeRepository
+        .all()
+        .filter(
+            "self.processInstanceId = ?1 AND self.activityInstanceId = ?2",
+            processInstanceId,
+            execution.getActivityInstanceId())
+        .delete();
+
+    if (isProcessEnd(execution.getBpmnModelElementInstance())) {
+      removeEndNodes(processInstanceId);
+      wkfInstanceNodeRepository.save(
+          createNode(
+              processInstanceId,
+              execution.getActivityInstanceId(),
+              execution.getCurrentActivityId(),
+              execution.getCurrentActivityName(),
+              false));
+    }
+  }
+
+  @Override
+  public List<Map<String, Object>> getStatusNodes(WkfInstance wkfInstance) {
+
+    String processInstanceId = wkfInstance.getInstanceId();
+    List<WkfInstanceNode> instanceNodes = findNodes(processInstanceId);
+
+    if (instanceNodes.isEmpty()) {
+      instanceNodes = computeNodes(processInstanceId);
+      if (!instanceNodes.isEmpty()) {
+        saveNodes(processInstanceId, instanceNodes);
+      }
+    }
+
+    List<Map<String, Object>> nodes =
+        instanceNodes.stream()
+            .map(node -> toMap(node.getName(), node.getTitle(), node.getActive()))
+            .collect(Collectors.toList());
+
+    List<Map<String, Object>> activeNodes =
+        nodes.stream().filter(this::isActive).collect(Collectors.toList());
+
+    return activeNodes.isEmpty() ? nodes : activeNodes;
+  }
+
+  @Override
+  @Transactional
+  public void removeNodes(Collection<String> processInstanceIds) {
+    for (List<String> part : Lists.partition(new ArrayList<>(processInstanceIds), MAX_IN_SIZE)) {
+      wkfInstanceNodeRepository
+          .all()
+          .filter("self.processInstanceId IN (:processInstanceIds)")
+          .bind("processInstanceIds", part)
+          .delete();
+    }
+  }
+
+  @Override
+  @Transactional
+  public void resetNodes(Collection<String> processInstanceIds) {
+    removeNodes(processInstanceIds);
+    for (String processInstanceId : processInstanceIds) {
+      computeNodes(processInstanceId).forEach(wkfInstanceNodeRepository::save);
+    }
+  }
+
+  protected List<WkfInstanceNode> findNodes(String processInstanceId) {
+    return wkfInstanceNodeRepository
+        .all()
+        .filter("self.processInstanceId = ?1", processInstanceId)
+        .order("id")
+        .fetch();
+  }
+
+  /** Saved once, unless the listeners or a concurrent read saved the nodes in the meantime. */
+  protected void saveNodes(String processInstanceId, List<WkfInstanceNode> nodes) {
+    JPA.runInTransaction(
+        () -> {
+          if (findNodes(processInstanceId).isEmpty()) {
+            nodes.forEach(wkfInstanceNodeRepository::save);
+          }
+        });
+  }
+
+  protected void removeEndNodes(String processInstanceId) {
+    wkfInstanceNodeRepository
+        .all()
+        .filter("self.processInstanceId = ?1 AND self.active = false", processInstanceId)
+        .delete();
+  }
+
+  protected boolean isProcessEnd(FlowElement flowElement) {
+    return flowElement instanceof EndEvent && flowElement.getParentElement() instanceof Process;
+  }
+
+  protected boolean isActive(Map<String, Object> node) {
+    return Boolean.TRUE.equals(node.get(ACTIVE));
+  }
+
+  protected WkfInstanceNode createNode(
+      String processInstanceId,
+      String activityInstanceId,
+      String name,
+      String title,
+      boolean active) {
+
+    WkfInstanceNode node = new WkfInstanceNode();
+    node.setProcessInstanceId(processInstanceId);
+    node.setActivityInstanceId(activityInstanceId);
+    node.setName(name);
+    node.setTitle(title != null ? title : name);
+    node.setActive(active);
+
+    return node;
+  }
+
+  protected Map<String, Object> toMap(String name, String title, boolean active) {
+
+    Map<String, Object> node = new HashMap<>();
+    node.put(NAME, name);
+    node.put(TITLE, title != null ? title : name);
+    node.put(ACTIVE, active);
+
+    return node;
+  }
+
+  /** Status from the history, for the instances started before the status was maintained. */
+  protected List<WkfInstanceNode> computeNodes(String processInstanceId) {
+
+    List<WkfInstanceNode> nodes = new ArrayList<>();
+    HistoryService historyService = engineService.getEngine().getHistoryService();
+
+    List<HistoricActivityInstance> activeNodes =
+        historyService
+            .createHistoricActivityInstanceQuery()
+            .processInstanceId(processInstanceId)
+            .unfinished()
+            .list();
+
+    for (HistoricActivityInstance node : activeNodes) {
+      nodes.add(createNode(processInstanceId, node, true));
+    }
+
+    if (!nodes.isEmpty()) {
+      return nodes;
+    }
+
+    HistoricProcessInstance processInstance =
+        historyService
+            .createHistoricProcessInstanceQuery()
+            .processInstanceId(processInstanceId)
+            .completed()
+            .singleResult();
+
+    if (processInstance != null && processInstance.getEndActivityId() != null) {
+      List<HistoricActivityInstance> endNodes =
+          historyService
+              .createHistoricActivityInstanceQuery()
+              .activityId(processInstance.getEndActivityId())
+              .processInstanceId(processInstanceId)
+              .list();
+      for (HistoricActivityInstance node : endNodes) {
+        nodes.add(createNode(processInstanceId, node, false));
+      }
+    }
+
+    return nodes;
+  }
+
+  /** The id of the historic activity instance is the one of the activity instance. */
+  protected WkfInstanceNode createNode(
+      String processInstanceId, HistoricActivityInstance node, boolean active) {
+    return createNode(
+        processInstanceId, node.getId(), node.getActivityId(), node.getActivityName(), active);
+  }
+}
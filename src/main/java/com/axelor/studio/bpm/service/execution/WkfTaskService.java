@@ -18,12 +18,26 @@
 package com.axelor.studio.bpm.service.execution;
 
 import com.axelor.studio.db.WkfInstance;
+import java.util.List;
 import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.camunda.bpm.engine.task.Task;
 
 public interface WkfTaskService {
 
   public String runTasks(
       ProcessEngine engine, WkfInstance instance, ProcessInstance processInstance, String signal)
       throws ClassNotFoundException;
+
+  /**
+   * Same as {@link #runTasks(ProcessEngine, WkfInstance, ProcessInstance, String)} using the
+   * already fetched active tasks of the process instance.
+   */
+  public String runTasks(
+      ProcessEngine engine,
+      WkfInstance instance,
+      ProcessInstance processInstance,
+      String signal,
+      List<Task> tasks)
+      throws ClassNotFoundException;
 }
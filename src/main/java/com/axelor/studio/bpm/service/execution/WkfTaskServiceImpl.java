@@ -19,21 +19,15 @@ package com.axelor.studio.bpm.service.execution;
 
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
-import com.axelor.db.EntityHelper;
-import com.axelor.db.JpaRepository;
-import com.axelor.db.Model;
 import com.axelor.i18n.I18n;
-import com.axelor.meta.db.MetaJsonRecord;
+import com.axelor.studio.bpm.context.WkfCache;
 import com.axelor.studio.bpm.service.WkfCommonService;
 import com.axelor.studio.db.WkfInstance;
 import com.axelor.studio.db.WkfProcess;
-import com.axelor.studio.db.WkfProcessConfig;
-import com.axelor.studio.db.WkfTaskConfig;
 import com.axelor.studio.db.repo.WkfInstanceRepository;
 import com.axelor.studio.db.repo.WkfProcessRepository;
 import com.axelor.studio.db.repo.WkfTaskConfigRepository;
 import com.axelor.studio.translation.ITranslation;
-import com.axelor.utils.context.FullContext;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import java.time.LocalTime;
@@ -55,9 +49,12 @@ public class WkfTaskServiceImpl implements WkfTaskService {
 
   protected static final Logger log = LoggerFactory.getLogger(WkfTaskServiceImpl.class);
 
-  protected static final int RECURSIVE_TASK_EXECUTION_COUNT_LIMIT = 100;
+  protected static final int TASK_EXECUTION_COUNT_LIMIT = 100;
 
-  protected static final int RECURSIVE_TASK_EXECUTION_SECONDS_LIMIT = 10;
+  protected static final int TASK_EXECUTION_SECONDS_LIMIT = 10;
+
+  /** Passes after which the tasks are considered looping, however long they take. */
+  protected static final int TASK_EXECUTION_MAX_ITERATIONS = 1000;
 
   @Inject protected WkfTaskConfigRepository wkfTaskConfigRepository;
 
@@ -69,62 +66,59 @@ public class WkfTaskServiceImpl implements WkfTaskService {
 
   @Inject protected WkfCommonService wkfService;
 
-  protected int recursiveTaskExecutionCount = 0;
-
-  protected LocalTime recursiveTaskExecutionTime = LocalTime.now();
+  @Inject protected WkfContextService wkfContextService;
 
   @Override
   public String runTasks(
       ProcessEngine engine, WkfInstance instance, ProcessInstance processInstance, String signal)
       throws ClassNotFoundException {
 
-    WkfProcess wkfProcess = instance.getWkfProcess();
+    return runTasks(
+        engine, instance, processInstance, signal, getActiveTasks(engine, processInstance.getId()));
+  }
 
-    List<Task> tasks = getActiveTasks(engine, processInstance.getId());
+  @Override
+  public String runTasks(
+      ProcessEngine engine,
+      WkfInstance instance,
+      ProcessInstance processInstance,
+      String signal,
+      List<Task> tasks)
+      throws ClassNotFoundException {
+
+    WkfProcess wkfProcess = instance.getWkfProcess();
 
-    boolean taskExecuted = false;
     String helpText = null;
 
     Map<String, Object> context = getContext(instance);
-    // TODO: Check if its required both variables from context and from processInstance, if
-    Map<String, Object> processVariables =
-        engine.getRuntimeService().getVariables(processInstance.getId());
-    processVariables.entrySet().removeIf(it -> Strings.isNullOrEmpty(it.getKey()));
+    Map<String, Object> ctxVariables = createContextVariables(context, signal);
 
-    Map<String, Object> expressionVariables = null;
-    Map<String, Object> ctxVariables = wkfService.createVariables(context);
-    if (signal != null) {
-      ctxVariables.put(signal, Variables.objectValue(true, true));
-    }
+    int iteration = 0;
+    LocalTime startTime = LocalTime.now();
 
-    for (Task task : tasks) {
+    while (true) {
 
-      WkfTaskConfig config =
-          wkfTaskConfigRepository
-              .all()
-              .filter(
-                  "self.name = ? and self.wkfModel.id = ?",
-                  task.getTaskDefinitionKey(),
-                  wkfProcess.getWkfModel().getId())
-              .fetchOne();
+      boolean taskExecuted = false;
+      Map<String, Object> expressionVariables = null;
 
-      if (config == null) {
-        continue;
-      }
+      for (Task task : tasks) {
 
-      List<String> validButtons = getValidButtons(signal, config.getButton());
+        WkfCache.TaskConfig config =
+            WkfCache.getTaskConfig(wkfProcess.getWkfModel().getId(), task.getTaskDefinitionKey());
 
-      if (validButtons == null) {
-        continue;
-      }
+        if (config == null) {
+          continue;
+        }
 
-      if (expressionVariables == null) {
-        expressionVariables = new HashMap<String, Object>();
-        expressionVariables.putAll(processVariables);
-        expressionVariables.putAll(context);
-      }
+        List<String> validButtons = getValidButtons(signal, config.getButtons());
+
+        if (validButtons == null) {
+          continue;
+        }
 
-      if (!validButtons.isEmpty() || config.getExpression() != null) {
+        if (validButtons.isEmpty() && config.getExpression() == null) {
+          continue;
+        }
 
         Map<String, Object> btnVariables = new HashMap<String, Object>();
         for (String button : validButtons) {
@@ -135,13 +129,20 @@ public class WkfTaskServiceImpl implements WkfTaskService {
         variables.putAll(ctxVariables);
 
         if (config.getExpression() != null) {
+          if (expressionVariables == null) {
+            // Process variables are changed by the tasks completed, so read once per pass.
+            expressionVariables =
+                new HashMap<String, Object>(
+                    engine.getRuntimeService().getVariables(processInstance.getId()));
+            expressionVariables.putAll(context);
+          }
           expressionVariables.putAll(engine.getTaskService().getVariables(task.getId()));
           expressionVariables.entrySet().removeIf(it -> Strings.isNullOrEmpty(it.getKey()));
           Boolean validExpr =
               (Boolean) wkfService.evalExpression(expressionVariables, config.getExpression());
           if (validExpr == null || !validExpr) {
             log.debug("Not a valid expr: {}", config.getExpression());
-            if (!validButtons.isEmpty()) {
+            if (!validButtons.isEmpty() && iteration == 0) {
               helpText = config.getHelpText();
             }
             continue;
@@ -160,49 +161,75 @@ public class WkfTaskServiceImpl implements WkfTaskService {
         engine.getTaskService().complete(task.getId(), variables);
         taskExecuted = true;
       }
-    }
 
-    Execution execution =
-        engine
-            .getRuntimeService()
-            .createExecutionQuery()
-            .active()
-            .executionId(processInstance.getId())
-            .singleResult();
-    if (execution != null) {
-      engine.getRuntimeService().setVariables(execution.getId(), ctxVariables);
-    }
+      Execution execution =
+          engine
+              .getRuntimeService()
+              .createExecutionQuery()
+              .active()
+              .executionId(processInstance.getId())
+              .singleResult();
+      if (execution != null) {
+        engine.getRuntimeService().setVariables(execution.getId(), ctxVariables);
+      }
 
-    recursiveTaskExecutionCount++;
+      iteration++;
+
+      if (iteration >= TASK_EXECUTION_MAX_ITERATIONS
+          || (iteration >= TASK_EXECUTION_COUNT_LIMIT
+              && ChronoUnit.SECONDS.between(startTime, LocalTime.now())
+                  <= TASK_EXECUTION_SECONDS_LIMIT)) {
+        throw new IllegalStateException(I18n.get(ITranslation.INFINITE_EXECUTION));
+      }
+
+      if (!taskExecuted
+          || !wkfInstanceService.isActiveProcessInstance(
+              processInstance.getId(), engine.getRuntimeService())) {
+        break;
+      }
 
-    if (recursiveTaskExecutionCount >= RECURSIVE_TASK_EXECUTION_COUNT_LIMIT
-        && ChronoUnit.SECONDS.between(recursiveTaskExecutionTime, LocalTime.now())
-            <= RECURSIVE_TASK_EXECUTION_SECONDS_LIMIT) {
-      throw new IllegalStateException(I18n.get(ITranslation.INFINITE_EXECUTION));
-    }
-    if (taskExecuted
-        && wkfInstanceService.isActiveProcessInstance(
-            processInstance.getId(), engine.getRuntimeService())) {
       log.debug("Check tasks again");
-      runTasks(engine, instance, processInstance, signal);
+
+      // Records of the process are already loaded and kept up to date by the persistence context,
+      // only the ones not created yet are looked up again.
+      if (!wkfContextService.loadMissing(instance, context).isEmpty()) {
+        ctxVariables = createContextVariables(context, signal);
+      }
+
+      tasks = getActiveTasks(engine, processInstance.getId());
     }
 
     return helpText;
   }
 
+  protected Map<String, Object> createContextVariables(Map<String, Object> context, String signal) {
+
+    Map<String, Object> ctxVariables = wkfService.createVariables(context);
+    if (signal != null) {
+      ctxVariables.put(signal, Variables.objectValue(true, true));
+    }
+
+    return ctxVariables;
+  }
+
   protected List<String> getValidButtons(String signal, String button) {
 
     if (button != null) {
-      List<String> buttons = Arrays.asList(button.split(","));
-      if (buttons.contains(signal)) {
-        return buttons;
-      }
-      return null;
+      return getValidButtons(signal, Arrays.asList(button.split(",")));
     }
 
     return new ArrayList<String>();
   }
 
+  protected List<String> getValidButtons(String signal, List<String> buttons) {
+
+    if (buttons.isEmpty() || buttons.contains(signal)) {
+      return buttons;
+    }
+
+    return null;
+  }
+
   protected List<Task> getActiveTasks(ProcessEngine engine, String processInstanceId) {
 
     List<Task> tasks =
@@ -217,45 +244,6 @@ public class WkfTaskServiceImpl implements WkfTaskService {
   }
 
   protected Map<String, Object> getContext(WkfInstance instance) throws ClassNotFoundException {
-
-    WkfProcess wkfProcess = instance.getWkfProcess();
-
-    Map<String, Object> modelMap = new HashMap<>();
-
-    for (WkfProcessConfig processConfig : wkfProcess.getWkfProcessConfigList()) {
-
-      Model model = null;
-      String klassName;
-      if (processConfig.getMetaJsonModel() != null) {
-        klassName = MetaJsonRecord.class.getName();
-      } else {
-        klassName = processConfig.getMetaModel().getFullName();
-      }
-      @SuppressWarnings("unchecked")
-      final Class<? extends Model> klass = (Class<? extends Model>) Class.forName(klassName);
-      String query = "self.processInstanceId = ?";
-      if (processConfig.getMetaJsonModel() != null) {
-        query += " AND self.jsonModel = '" + processConfig.getMetaJsonModel().getName() + "'";
-      }
-
-      if (model == null)
-        model =
-            JpaRepository.of(klass)
-                .all()
-                .filter(query, instance.getInstanceId())
-                .order("-id")
-                .fetchOne();
-      if (model != null) {
-        model = EntityHelper.getEntity(model);
-        String name = wkfService.getVarName(model);
-        modelMap.put(name, new FullContext(model));
-      } else {
-        log.debug("Model not found with processInstanceId: {}", instance.getInstanceId());
-      }
-    }
-
-    log.debug("Variable map used: {}", modelMap);
-
-    return modelMap;
+    return wkfContextService.getContext(instance);
   }
 }
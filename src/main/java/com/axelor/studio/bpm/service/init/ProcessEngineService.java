@@ -22,6 +22,8 @@ import com.axelor.db.tenants.TenantConfigProvider;
 import com.axelor.inject.Beans;
 import com.axelor.studio.baml.tools.BpmTools;
 import com.axelor.studio.bpm.context.WkfCache;
+import com.axelor.studio.bpm.script.WkfScriptCache;
+import com.axelor.studio.bpm.service.message.WkfNotificationExecutor;
 import com.axelor.studio.service.AppSettingsStudioService;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -48,8 +50,7 @@ public class ProcessEngineService {
 
     addEngine(BpmTools.getCurentTenant());
 
-    WkfCache.initWkfModelCache();
-    WkfCache.initWkfButttonCache();
+    WkfCache.initWkfCache();
   }
 
   public void addEngine(String tenantId) {
@@ -60,19 +61,18 @@ public class ProcessEngineService {
       return;
     }
 
-    boolean multiTeant = appSettingsStudioService.multiTenancy();
-
     ProcessEngineConfigurationImpl configImpl = Beans.get(WkfProcessEngineConfigurationImpl.class);
 
     ProcessEngine engine =
         configImpl
+            .setProcessEngineName(tenantId)
             .setJdbcDriver(tenantConfig.getJdbcDriver())
             .setJdbcUrl(tenantConfig.getJdbcUrl())
             .setJdbcUsername(tenantConfig.getJdbcUser())
             .setJdbcPassword(tenantConfig.getJdbcPassword())
             .setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_TRUE)
             .setHistory(ProcessEngineConfiguration.HISTORY_AUDIT)
-            .setJobExecutorActivate(!multiTeant)
+            .setJobExecutorActivate(true)
             .setMetricsEnabled(false)
             .setJobExecutor(Beans.get(WkfJobExecutor.class))
             .setDefaultSerializationFormat(Variables.SerializationDataFormats.JAVA.name())
@@ -89,6 +89,11 @@ public class ProcessEngineService {
     }
 
     engineMap.put(tenantId, engine);
+
+    // Send the notifications left pending by a previous run.
+    Beans.get(WkfNotificationExecutor.class).register(tenantId);
+    // Java serialized record contexts left by a previous version.
+    Beans.get(WkfVariableMigrationExecutor.class).submit(tenantId, engine);
   }
 
   public ProcessEngine getEngine() {
@@ -109,8 +114,8 @@ public class ProcessEngineService {
       engine.close();
     }
     engineMap.remove(tenantId);
-    WkfCache.WKF_BUTTON_CACHE.remove(tenantId);
-    WkfCache.WKF_MODEL_CACHE.remove(tenantId);
+    WkfCache.remove(tenantId);
+    WkfScriptCache.invalidate(tenantId);
   }
 
   public String getWkfViewerUrl() {
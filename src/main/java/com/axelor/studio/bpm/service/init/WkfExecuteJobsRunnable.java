@@ -17,29 +17,49 @@
  */
 package com.axelor.studio.bpm.service.init;
 
-import com.axelor.db.JPA;
-import com.google.inject.servlet.RequestScoper;
-import com.google.inject.servlet.ServletScopes;
-import java.util.Collections;
+import com.axelor.studio.baml.tools.BpmTools;
 import java.util.List;
 import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.interceptor.CommandExecutor;
 import org.camunda.bpm.engine.impl.jobexecutor.ExecuteJobsRunnable;
+import org.camunda.bpm.engine.impl.jobexecutor.JobFailureCollector;
 
 public class WkfExecuteJobsRunnable extends ExecuteJobsRunnable {
 
-  public WkfExecuteJobsRunnable(List<String> jobIds, ProcessEngineImpl processEngine) {
+  protected final WkfJobExecutor wkfJobExecutor;
+
+  protected final long createdAt = System.currentTimeMillis();
+
+  public WkfExecuteJobsRunnable(
+      List<String> jobIds, ProcessEngineImpl processEngine, WkfJobExecutor wkfJobExecutor) {
     super(jobIds, processEngine);
+    this.wkfJobExecutor = wkfJobExecutor;
   }
 
   @Override
   public void run() {
-    final RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
-    try (RequestScoper.CloseableScope ignore = scope.open()) {
-      try {
-        super.run();
-      } finally {
-        JPA.clear();
-      }
+    wkfJobExecutor.onBatchStarted(System.currentTimeMillis() - createdAt);
+
+    try {
+      // The engines are named after their tenant, the jobs use the database of the tenant.
+      BpmTools.runInTenant(processEngine.getName(), super::run);
+    } finally {
+      wkfJobExecutor.onBatchFinished(processEngine);
+    }
+  }
+
+  @Override
+  protected void executeJob(
+      String nextJobId, CommandExecutor commandExecutor, JobFailureCollector jobFailureCollector) {
+
+    long startTime = System.currentTimeMillis();
+    boolean success = false;
+    wkfJobExecutor.onJobStarted();
+    try {
+      super.executeJob(nextJobId, commandExecutor, jobFailureCollector);
+      success = jobFailureCollector.getFailure() == null;
+    } finally {
+      wkfJobExecutor.onJobFinished(success, System.currentTimeMillis() - startTime);
     }
   }
 }
@@ -0,0 +1,40 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.init;
+
+import org.camunda.bpm.engine.impl.variable.serializer.JavaObjectSerializer;
+import org.camunda.bpm.engine.variable.impl.value.UntypedValueImpl;
+import org.camunda.bpm.engine.variable.value.TypedValue;
+
+/**
+ * Java serializer leaving the untyped contexts of saved records to the {@link
+ * WkfModelReferenceSerializer}, even if java is the default serialization format. Values created
+ * with the java format explicitly and the variables already stored with java serialization are
+ * still handled by this serializer.
+ */
+public class WkfJavaObjectSerializer extends JavaObjectSerializer {
+
+  @Override
+  protected boolean canWriteValue(TypedValue typedValue) {
+    if (typedValue instanceof UntypedValueImpl
+        && WkfModelReferenceSerializer.isReference(typedValue.getValue())) {
+      return false;
+    }
+    return super.canWriteValue(typedValue);
+  }
+}
@@ -17,15 +17,291 @@
  */
 package com.axelor.studio.bpm.service.init;
 
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.camunda.bpm.engine.impl.ProcessEngineImpl;
 import org.camunda.bpm.engine.impl.jobexecutor.DefaultJobExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Job executor sized from the {@code studio.bpm.job-executor.*} settings.
+ *
+ * <p>A single executor is shared by the engines of all the tenants: the acquisition thread
+ * acquires the jobs of each engine in turn, and a tenant cannot have more than {@link
+ * #getTenantMaxBatches()} job batches running or queued at once. The batches over the limit are
+ * rejected and submitted again on the next acquisition cycle.
+ *
+ * <p>It counts the acquired, executed, failed and rejected jobs, and the time the jobs spent in
+ * the queue and in execution. With the virtual threads setting, on a runtime providing them, each
+ * batch of jobs runs in its own virtual thread, at most {@code max-pool-size + queue-size} batches
+ * at once.
+ */
+@Singleton
 public class WkfJobExecutor extends DefaultJobExecutor {
 
+  protected static final Logger log = LoggerFactory.getLogger(WkfJobExecutor.class);
+
+  protected boolean virtualThreads;
+
+  protected ExecutorService virtualThreadExecutor;
+
+  protected Semaphore virtualThreadPermits;
+
+  protected int tenantMaxBatches;
+
+  protected final Map<String, AtomicInteger> tenantBatches = new ConcurrentHashMap<>();
+
+  protected final AtomicLong acquired = new AtomicLong();
+  protected final AtomicLong batches = new AtomicLong();
+  protected final AtomicLong executed = new AtomicLong();
+  protected final AtomicLong failed = new AtomicLong();
+  protected final AtomicLong rejected = new AtomicLong();
+  protected final AtomicLong running = new AtomicLong();
+  protected final AtomicLong totalQueueTime = new AtomicLong();
+  protected final AtomicLong maxQueueTime = new AtomicLong();
+  protected final AtomicLong totalExecutionTime = new AtomicLong();
+  protected final AtomicLong maxExecutionTime = new AtomicLong();
+
+  @Inject
+  public WkfJobExecutor(AppSettingsStudioService appSettingsStudioService) {
+    setCorePoolSize(appSettingsStudioService.bpmJobExecutorCorePoolSize());
+    setMaxPoolSize(Math.max(corePoolSize, appSettingsStudioService.bpmJobExecutorMaxPoolSize()));
+    setQueueSize(appSettingsStudioService.bpmJobExecutorQueueSize());
+    setMaxJobsPerAcquisition(appSettingsStudioService.bpmJobExecutorMaxJobsPerAcquisition());
+    setLockTimeInMillis(appSettingsStudioService.bpmJobExecutorLockTimeInMillis());
+    setWaitTimeInMillis(appSettingsStudioService.bpmJobExecutorWaitTimeInMillis());
+    setMaxWait(appSettingsStudioService.bpmJobExecutorMaxWaitInMillis());
+    this.virtualThreads = appSettingsStudioService.bpmJobExecutorVirtualThreads();
+    this.tenantMaxBatches = appSettingsStudioService.bpmJobExecutorTenantMaxBatches();
+  }
+
+  @Override
+  protected void startExecutingJobs() {
+
+    if (threadPoolExecutor == null || threadPoolExecutor.isShutdown()) {
+      threadPoolExecutor =
+          new ThreadPoolExecutor(
+              corePoolSize,
+              maxPoolSize,
+              keepAliveTime,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(queueSize),
+              new ThreadFactoryBuilder().setNameFormat("bpm-job-executor-%d").build(),
+              new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    if (virtualThreads && (virtualThreadExecutor == null || virtualThreadExecutor.isShutdown())) {
+      virtualThreadExecutor = createVirtualThreadExecutor();
+      virtualThreadPermits = new Semaphore(maxPoolSize + queueSize);
+    }
+
+    super.startExecutingJobs();
+  }
+
+  /**
+   * Virtual thread per task executor of the runtime, looked up by reflection as the module is built
+   * for java 11. Null if the runtime does not provide virtual threads.
+   */
+  protected ExecutorService createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.warn("Virtual threads are not available, the bpm jobs use the thread pool");
+      virtualThreads = false;
+      return null;
+    }
+  }
+
+  @Override
+  protected void stopExecutingJobs() {
+    super.stopExecutingJobs();
+
+    if (virtualThreadExecutor != null) {
+      virtualThreadExecutor.shutdown();
+      try {
+        if (!virtualThreadExecutor.awaitTermination(60L, TimeUnit.SECONDS)) {
+          log.warn("Timeout during shutdown of bpm job virtual threads");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    log.info(
+        "BPM jobs: acquired {}, executed {}, failed {}, rejected {}, average queue time {} ms,"
+            + " average execution time {} ms",
+        getAcquiredCount(),
+        getExecutedCount(),
+        getFailedCount(),
+        getRejectedCount(),
+        getAverageQueueTime(),
+        getAverageExecutionTime());
+  }
+
+  @Override
+  public void executeJobs(List<String> jobIds, ProcessEngineImpl processEngine) {
+
+    acquired.addAndGet(jobIds.size());
+
+    AtomicInteger engineBatches =
+        tenantBatches.computeIfAbsent(processEngine.getName(), name -> new AtomicInteger());
+    if (engineBatches.incrementAndGet() > getTenantMaxBatches()) {
+      engineBatches.decrementAndGet();
+      onRejected(jobIds, processEngine);
+      return;
+    }
+
+    Runnable runnable = getExecuteJobsRunnable(jobIds, processEngine);
+
+    if (!virtualThreads) {
+      try {
+        threadPoolExecutor.execute(runnable);
+      } catch (RejectedExecutionException e) {
+        engineBatches.decrementAndGet();
+        onRejected(jobIds, processEngine);
+      }
+      return;
+    }
+
+    if (!virtualThreadPermits.tryAcquire()) {
+      engineBatches.decrementAndGet();
+      onRejected(jobIds, processEngine);
+      return;
+    }
+
+    try {
+      virtualThreadExecutor.execute(
+          () -> {
+            try {
+              runnable.run();
+            } finally {
+              virtualThreadPermits.release();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      virtualThreadPermits.release();
+      engineBatches.decrementAndGet();
+      onRejected(jobIds, processEngine);
+    }
+  }
+
+  /**
+   * Maximum number of job batches of one tenant running or queued at once. Without the {@code
+   * tenant-max-batches} setting, the threads and queue are shared equally between the engines.
+   */
+  public int getTenantMaxBatches() {
+    int capacity = maxPoolSize + queueSize;
+    if (tenantMaxBatches > 0) {
+      return Math.min(tenantMaxBatches, capacity);
+    }
+    return Math.max(1, capacity / Math.max(1, processEngines.size()));
+  }
+
+  /** Job batches of the given tenant running or queued. */
+  public int getTenantBatchCount(String tenantId) {
+    AtomicInteger engineBatches = tenantBatches.get(tenantId);
+    return engineBatches != null ? engineBatches.get() : 0;
+  }
+
+  protected void onRejected(List<String> jobIds, ProcessEngineImpl processEngine) {
+    rejected.addAndGet(jobIds.size());
+    log.debug("{} bpm jobs rejected, the job executor is busy", jobIds.size());
+    rejectedJobsHandler.jobsRejected(jobIds, processEngine, this);
+  }
+
   @Override
   public Runnable getExecuteJobsRunnable(List<String> jobIds, ProcessEngineImpl processEngine) {
 
-    return new WkfExecuteJobsRunnable(jobIds, processEngine);
+    return new WkfExecuteJobsRunnable(jobIds, processEngine, this);
+  }
+
+  protected void onBatchStarted(long queueTime) {
+    batches.incrementAndGet();
+    totalQueueTime.addAndGet(queueTime);
+    maxQueueTime.accumulateAndGet(queueTime, Math::max);
+  }
+
+  protected void onBatchFinished(ProcessEngineImpl processEngine) {
+    AtomicInteger engineBatches = tenantBatches.get(processEngine.getName());
+    if (engineBatches != null) {
+      engineBatches.decrementAndGet();
+    }
+  }
+
+  protected void onJobStarted() {
+    running.incrementAndGet();
+  }
+
+  protected void onJobFinished(boolean success, long executionTime) {
+    running.decrementAndGet();
+    if (success) {
+      executed.incrementAndGet();
+    } else {
+      failed.incrementAndGet();
+    }
+    totalExecutionTime.addAndGet(executionTime);
+    maxExecutionTime.accumulateAndGet(executionTime, Math::max);
+  }
+
+  public long getAcquiredCount() {
+    return acquired.get();
+  }
+
+  public long getExecutedCount() {
+    return executed.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /** Jobs being executed. */
+  public long getRunningCount() {
+    return running.get();
+  }
+
+  /** Batches of jobs waiting for a pool thread, always 0 with virtual threads. */
+  public int getQueueSize() {
+    return threadPoolExecutor != null ? threadPoolExecutor.getQueue().size() : 0;
+  }
+
+  /** Average time in milliseconds between the acquisition and the execution of a job batch. */
+  public long getAverageQueueTime() {
+    long count = batches.get();
+    return count > 0 ? totalQueueTime.get() / count : 0;
+  }
+
+  public long getMaxQueueTime() {
+    return maxQueueTime.get();
+  }
+
+  /** Average execution time in milliseconds of a job. */
+  public long getAverageExecutionTime() {
+    long jobs = getExecutedCount() + getFailedCount();
+    return jobs > 0 ? totalExecutionTime.get() / jobs : 0;
+  }
+
+  public long getMaxExecutionTime() {
+    return maxExecutionTime.get();
   }
 }
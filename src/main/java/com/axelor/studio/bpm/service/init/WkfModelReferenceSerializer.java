@@ -0,0 +1,107 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.init;
+
+import com.axelor.db.EntityHelper;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.meta.db.MetaJsonRecord;
+import com.axelor.utils.context.FullContext;
+import java.nio.charset.StandardCharsets;
+import org.camunda.bpm.engine.impl.variable.serializer.AbstractObjectValueSerializer;
+
+/**
+ * Stores a {@link FullContext} wrapping a saved record as a reference to the record instead of
+ * the serialized context.
+ *
+ * <p>The payload is {@code <entity class>#<id>}, followed by {@code #<json model>} for the json
+ * records. The record is fetched again when the variable is read; a deleted record gives a null
+ * value.
+ */
+public class WkfModelReferenceSerializer extends AbstractObjectValueSerializer {
+
+  public static final String NAME = "axelorModelReference";
+
+  public static final String DATA_FORMAT = "application/x-axelor-model-reference";
+
+  protected static final String SEPARATOR = "#";
+
+  public WkfModelReferenceSerializer() {
+    super(DATA_FORMAT);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  protected boolean isSerializationTextBased() {
+    return true;
+  }
+
+  @Override
+  protected boolean canSerializeValue(Object value) {
+    return isReference(value);
+  }
+
+  public static boolean isReference(Object value) {
+    if (!(value instanceof FullContext)) {
+      return false;
+    }
+    Object target = ((FullContext) value).getTarget();
+    return target instanceof Model && ((Model) target).getId() != null;
+  }
+
+  @Override
+  protected String getTypeNameForDeserialized(Object deserializedObject) {
+    return FullContext.class.getName();
+  }
+
+  @Override
+  protected byte[] serializeToByteArray(Object deserializedObject) throws Exception {
+    return getReference((FullContext) deserializedObject).getBytes(StandardCharsets.UTF_8);
+  }
+
+  public static String getReference(FullContext context) {
+
+    Model model = (Model) context.getTarget();
+
+    StringBuilder reference =
+        new StringBuilder(EntityHelper.getEntityClass(model).getName())
+            .append(SEPARATOR)
+            .append(model.getId());
+    if (model instanceof MetaJsonRecord) {
+      reference.append(SEPARATOR).append(((MetaJsonRecord) model).getJsonModel());
+    }
+
+    return reference.toString();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected Object deserializeFromByteArray(byte[] object, String objectTypeName) throws Exception {
+
+    String[] reference = new String(object, StandardCharsets.UTF_8).split(SEPARATOR);
+
+    Class<? extends Model> klass = (Class<? extends Model>) Class.forName(reference[0]);
+    Model model = JPA.find(klass, Long.valueOf(reference[1]));
+
+    return model != null ? new FullContext(model) : null;
+  }
+}
@@ -60,11 +60,20 @@ public class WkfProcessEngineConfigurationImpl extends StandaloneProcessEngineCo
         variableSerializers.addSerializer(new JPAVariableSerializer());
       }
     }
-    variableSerializers.addSerializer(new JavaObjectSerializer());
+    // Contexts of saved records are stored as references, before the default java serialization
+    for (TypedValueSerializer<?> serializer :
+        new ArrayList<>(variableSerializers.getSerializers())) {
+      if (serializer instanceof JavaObjectSerializer) {
+        variableSerializers.removeSerializer(serializer);
+      }
+    }
+    variableSerializers.addSerializer(new WkfModelReferenceSerializer(), 0);
+    variableSerializers.addSerializer(new WkfJavaObjectSerializer());
     @SuppressWarnings("rawtypes")
     List<TypedValueSerializer> customPreVariableTypes = new ArrayList<TypedValueSerializer>();
     customPreVariableTypes.add(new JPAVariableSerializer());
-    customPreVariableTypes.add(new JavaObjectSerializer());
+    customPreVariableTypes.add(new WkfModelReferenceSerializer());
+    customPreVariableTypes.add(new WkfJavaObjectSerializer());
     setCustomPreVariableSerializers(customPreVariableTypes);
   }
 
@@ -0,0 +1,82 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.init;
+
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the {@link WkfVariableMigrationRunnable} of the engines in the background, one engine at a
+ * time, each on the database of its tenant. The engines are submitted when created, so every
+ * tenant is migrated. A migration stopped by the shutdown goes on at next startup.
+ */
+@Singleton
+public class WkfVariableMigrationExecutor {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfVariableMigrationExecutor.class);
+
+  protected static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  protected final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("bpm-variable-migration-%d")
+              .setDaemon(true)
+              .build());
+
+  protected final AppSettingsStudioService appSettingsStudioService;
+
+  @Inject
+  public WkfVariableMigrationExecutor(AppSettingsStudioService appSettingsStudioService) {
+    this.appSettingsStudioService = appSettingsStudioService;
+  }
+
+  public void submit(String tenantId, ProcessEngine engine) {
+    WkfVariableMigrationRunnable migration =
+        new WkfVariableMigrationRunnable(
+            engine, appSettingsStudioService.bpmVariableMigrationHistory());
+    try {
+      executor.execute(() -> BpmTools.runInTenant(tenantId, migration));
+    } catch (RejectedExecutionException e) {
+      log.debug("Process variable migration of {} not started, shutting down", engine.getName());
+    }
+  }
+
+  public void shutdown() {
+
+    executor.shutdownNow();
+
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Timeout during shutdown of the process variable migration");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,338 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.init;
+
+import com.axelor.db.JPA;
+import com.axelor.utils.context.FullContext;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import javax.sql.DataSource;
+import org.camunda.bpm.engine.ManagementService;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.history.HistoricVariableInstance;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.persistence.entity.ByteArrayEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.HistoricVariableInstanceEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.VariableInstanceEntity;
+import org.camunda.bpm.engine.impl.variable.serializer.JavaObjectSerializer;
+import org.camunda.bpm.engine.variable.Variables;
+import org.camunda.bpm.engine.variable.Variables.SerializationDataFormats;
+import org.camunda.bpm.engine.variable.value.ObjectValue;
+import org.camunda.bpm.engine.variable.value.TypedValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites the runtime variables holding a java serialized {@link FullContext} with the {@link
+ * WkfModelReferenceSerializer}, through the engine services.
+ *
+ * <p>The historic variables are only migrated when {@code studio.bpm.variable-migration.history} is
+ * enabled. They are updated in the database and, as a reference is read as the current state of
+ * the record, the history then shows the record as it is now instead of the recorded snapshot.
+ *
+ * <p>The java serialized variables are read page by page, ordered by id. A failing variable is
+ * logged and kept as is, and is migrated again on next run. Once every variable is migrated, the
+ * {@link #MIGRATED_PROPERTY} (or {@link #HISTORY_MIGRATED_PROPERTY}) engine property is set and the
+ * next runs skip them. The caller runs it in the request scope of the tenant of the engine.
+ */
+public class WkfVariableMigrationRunnable implements Runnable {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfVariableMigrationRunnable.class);
+
+  public static final String MIGRATED_PROPERTY = "axelor.model-reference-variables.migrated";
+
+  public static final String HISTORY_MIGRATED_PROPERTY =
+      "axelor.model-reference-variables.history-migrated";
+
+  protected static final int PAGE_SIZE = 500;
+
+  protected final ProcessEngine engine;
+  protected final boolean migrateHistory;
+
+  protected long migrated;
+  protected long migratedHistoric;
+  protected long failed;
+  protected long sizeBefore;
+  protected long sizeAfter;
+
+  public WkfVariableMigrationRunnable(ProcessEngine engine, boolean migrateHistory) {
+    this.engine = engine;
+    this.migrateHistory = migrateHistory;
+  }
+
+  @Override
+  public void run() {
+
+    ManagementService managementService = engine.getManagementService();
+    boolean runtimeDone = isMigrated(managementService, MIGRATED_PROPERTY);
+    boolean historyDone =
+        !migrateHistory || isMigrated(managementService, HISTORY_MIGRATED_PROPERTY);
+    if (runtimeDone && historyDone) {
+      return;
+    }
+
+    long startTime = System.currentTimeMillis();
+
+    try {
+      if (!runtimeDone && migrateRuntimeVariables() && failed == 0) {
+        managementService.setProperty(MIGRATED_PROPERTY, Boolean.TRUE.toString());
+      }
+      long failedRuntime = failed;
+      if (!historyDone && migrateHistoricVariables() && failed == failedRuntime) {
+        managementService.setProperty(HISTORY_MIGRATED_PROPERTY, Boolean.TRUE.toString());
+      }
+    } catch (Exception e) {
+      log.error("Error migrating process variables", e);
+    } finally {
+      JPA.clear();
+    }
+
+    log.info(
+        "Process variables migrated to model references: {}, historic: {}, failed: {},"
+            + " size: {} -> {} bytes, time taken: {} ms",
+        migrated,
+        migratedHistoric,
+        failed,
+        sizeBefore,
+        sizeAfter,
+        System.currentTimeMillis() - startTime);
+  }
+
+  protected boolean isMigrated(ManagementService managementService, String property) {
+    return Boolean.parseBoolean(managementService.getProperties().get(property));
+  }
+
+  /** Migrate the runtime variables, false if interrupted. */
+  protected boolean migrateRuntimeVariables() throws SQLException {
+
+    String sql =
+        "SELECT ID_, NAME_, EXECUTION_ID_, TASK_ID_ FROM "
+            + getTableName(VariableInstanceEntity.class)
+            + " WHERE TYPE_ = ? AND ID_ > ? ORDER BY ID_";
+
+    String lastId = "";
+    List<String[]> variables;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+      variables = fetchPage(sql, lastId, 4);
+      for (String[] variable : variables) {
+        migrate(variable[1], variable[2], variable[3]);
+      }
+      JPA.clear();
+      if (!variables.isEmpty()) {
+        lastId = variables.get(variables.size() - 1)[0];
+      }
+    } while (variables.size() == PAGE_SIZE);
+
+    return true;
+  }
+
+  /** Migrate the variables of the history, false if interrupted. */
+  protected boolean migrateHistoricVariables() throws SQLException {
+
+    String sql =
+        "SELECT ID_, BYTEARRAY_ID_ FROM "
+            + getTableName(HistoricVariableInstanceEntity.class)
+            + " WHERE VAR_TYPE_ = ? AND ID_ > ? ORDER BY ID_";
+
+    String lastId = "";
+    List<String[]> variables;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+      variables = fetchPage(sql, lastId, 2);
+      for (String[] variable : variables) {
+        migrateHistoric(variable[0], variable[1]);
+      }
+      JPA.clear();
+      if (!variables.isEmpty()) {
+        lastId = variables.get(variables.size() - 1)[0];
+      }
+    } while (variables.size() == PAGE_SIZE);
+
+    return true;
+  }
+
+  /** Next page of java serialized variables, the first column being the id. */
+  protected List<String[]> fetchPage(String sql, String lastId, int columns) throws SQLException {
+
+    List<String[]> rows = new ArrayList<>();
+
+    try (Connection connection = getDataSource().getConnection();
+        PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, JavaObjectSerializer.NAME);
+      statement.setString(2, lastId);
+      statement.setMaxRows(PAGE_SIZE);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          String[] row = new String[columns];
+          for (int i = 0; i < columns; i++) {
+            row[i] = resultSet.getString(i + 1);
+          }
+          rows.add(row);
+        }
+      }
+    }
+
+    return rows;
+  }
+
+  protected boolean isJavaContext(TypedValue value) {
+
+    if (!(value instanceof ObjectValue)) {
+      return false;
+    }
+
+    ObjectValue objectValue = (ObjectValue) value;
+    return SerializationDataFormats.JAVA.getName().equals(objectValue.getSerializationDataFormat())
+        && FullContext.class.getName().equals(objectValue.getObjectTypeName());
+  }
+
+  protected void migrate(String name, String executionId, String taskId) {
+
+    try {
+      TypedValue serialized =
+          taskId != null
+              ? engine.getTaskService().getVariableLocalTyped(taskId, name, false)
+              : engine.getRuntimeService().getVariableLocalTyped(executionId, name, false);
+      if (!isJavaContext(serialized)) {
+        return;
+      }
+
+      Object value =
+          taskId != null
+              ? engine.getTaskService().getVariableLocal(taskId, name)
+              : engine.getRuntimeService().getVariableLocal(executionId, name);
+      if (!WkfModelReferenceSerializer.isReference(value)) {
+        return;
+      }
+
+      ObjectValue reference =
+          Variables.objectValue(value)
+              .serializationDataFormat(WkfModelReferenceSerializer.DATA_FORMAT)
+              .create();
+
+      if (taskId != null) {
+        engine.getTaskService().setVariableLocal(taskId, name, reference);
+      } else {
+        engine.getRuntimeService().setVariableLocal(executionId, name, reference);
+      }
+
+      sizeBefore += getSerializedSize((ObjectValue) serialized);
+      sizeAfter += getReference(value).length;
+      migrated++;
+    } catch (Exception e) {
+      failed++;
+      log.warn("Error migrating process variable {} of execution {}", name, executionId, e);
+    }
+  }
+
+  /**
+   * The history can't be changed through the engine services, so the serialized value and the
+   * serializer of the variable are updated in the database.
+   */
+  protected void migrateHistoric(String variableId, String byteArrayId) {
+
+    try {
+      HistoricVariableInstance variable =
+          engine
+              .getHistoryService()
+              .createHistoricVariableInstanceQuery()
+              .variableId(variableId)
+              .singleResult();
+      if (variable == null
+          || byteArrayId == null
+          || !isJavaContext(variable.getTypedValue())
+          || !WkfModelReferenceSerializer.isReference(variable.getValue())) {
+        return;
+      }
+
+      byte[] reference = getReference(variable.getValue());
+
+      try (Connection connection = getDataSource().getConnection()) {
+        connection.setAutoCommit(false);
+        try {
+          update(
+              connection,
+              "UPDATE " + getTableName(ByteArrayEntity.class) + " SET BYTES_ = ? WHERE ID_ = ?",
+              reference,
+              byteArrayId);
+          update(
+              connection,
+              "UPDATE "
+                  + getTableName(HistoricVariableInstanceEntity.class)
+                  + " SET VAR_TYPE_ = ? WHERE ID_ = ?",
+              WkfModelReferenceSerializer.NAME,
+              variableId);
+          connection.commit();
+        } catch (SQLException e) {
+          connection.rollback();
+          throw e;
+        }
+      }
+
+      sizeBefore += getSerializedSize((ObjectValue) variable.getTypedValue());
+      sizeAfter += reference.length;
+      migratedHistoric++;
+    } catch (Exception e) {
+      failed++;
+      log.warn("Error migrating historic process variable {}", variableId, e);
+    }
+  }
+
+  protected void update(Connection connection, String sql, Object value, String id)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      if (value instanceof byte[]) {
+        statement.setBytes(1, (byte[]) value);
+      } else {
+        statement.setString(1, (String) value);
+      }
+      statement.setString(2, id);
+      statement.executeUpdate();
+    }
+  }
+
+  protected long getSerializedSize(ObjectValue value) {
+    String valueSerialized = value.getValueSerialized();
+    return valueSerialized != null ? Base64.getDecoder().decode(valueSerialized).length : 0;
+  }
+
+  protected byte[] getReference(Object value) {
+    return WkfModelReferenceSerializer.getReference((FullContext) value)
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  protected String getTableName(Class<?> entityClass) {
+    return engine.getManagementService().getTableName(entityClass);
+  }
+
+  protected DataSource getDataSource() {
+    return ((ProcessEngineConfigurationImpl) engine.getProcessEngineConfiguration())
+        .getDataSource();
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.message;
+
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.studio.db.WkfModel;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.camunda.bpm.engine.impl.pvm.runtime.PvmExecutionImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared pipeline sending the bpm error notifications out of the failing thread.
+ *
+ * <p>Messages are sent by a small bounded pool. When the queue is full the message is sent by the
+ * calling thread, which slows down the failing processes instead of losing their errors. The same
+ * error of the same process instance is sent only once within {@link
+ * #DEDUPLICATION_WINDOW_MILLIS}, among the last {@link #DEDUPLICATION_MAX_SIZE} errors.
+ */
+@Singleton
+public class BpmErrorMessageExecutor {
+
+  protected static final Logger log = LoggerFactory.getLogger(BpmErrorMessageExecutor.class);
+
+  protected static final int POOL_SIZE = 2;
+
+  protected static final int QUEUE_CAPACITY = 200;
+
+  protected static final long DEDUPLICATION_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  protected static final int DEDUPLICATION_MAX_SIZE = 1000;
+
+  protected static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  protected final ThreadPoolExecutor executor;
+
+  protected final Cache<String, Boolean> recentlySubmitted =
+      CacheBuilder.newBuilder()
+          .expireAfterWrite(DEDUPLICATION_WINDOW_MILLIS, TimeUnit.MILLISECONDS)
+          .maximumSize(DEDUPLICATION_MAX_SIZE)
+          .build();
+
+  protected final AtomicLong submitted = new AtomicLong();
+  protected final AtomicLong sent = new AtomicLong();
+  protected final AtomicLong failed = new AtomicLong();
+  protected final AtomicLong coalesced = new AtomicLong();
+  protected final AtomicLong callerRuns = new AtomicLong();
+  protected final AtomicLong dropped = new AtomicLong();
+
+  public BpmErrorMessageExecutor() {
+    executor =
+        new ThreadPoolExecutor(
+            POOL_SIZE,
+            POOL_SIZE,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadFactoryBuilder()
+                .setNameFormat("bpm-error-message-%d")
+                .setDaemon(true)
+                .build(),
+            (runnable, pool) -> {
+              if (pool.isShutdown()) {
+                dropped.incrementAndGet();
+                log.warn("BPM error message pool is shut down, message dropped");
+                return;
+              }
+              callerRuns.incrementAndGet();
+              log.debug("BPM error message queue is full, message sent by the caller");
+              ((SendTask) runnable).sendNow();
+            });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Queue an error message, see {@link BpmErrorMessageService#sendBpmErrorMessage(
+   * PvmExecutionImpl, String, WkfModel, String)}.
+   */
+  public void submit(
+      PvmExecutionImpl execution, String errorMessage, WkfModel model, String processInstanceId) {
+
+    if (executor.isShutdown()) {
+      dropped.incrementAndGet();
+      return;
+    }
+
+    String key = getKey(execution, errorMessage, model, processInstanceId);
+    if (recentlySubmitted.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+      coalesced.incrementAndGet();
+      log.debug("BPM error message already sent, skipped: {}", key);
+      return;
+    }
+
+    submitted.incrementAndGet();
+    executor.execute(new SendTask(execution, errorMessage, model, processInstanceId));
+  }
+
+  protected void send(
+      PvmExecutionImpl execution, String errorMessage, WkfModel model, String processInstanceId) {
+
+    final RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    try (RequestScoper.CloseableScope ignore = scope.open()) {
+      try {
+        sendNow(execution, errorMessage, model, processInstanceId);
+      } finally {
+        JPA.clear();
+      }
+    }
+  }
+
+  /** Send the message in the current thread and scope. */
+  protected void sendNow(
+      PvmExecutionImpl execution, String errorMessage, WkfModel model, String processInstanceId) {
+    try {
+      Beans.get(BpmErrorMessageService.class)
+          .sendBpmErrorMessage(execution, errorMessage, model, processInstanceId);
+      sent.incrementAndGet();
+    } catch (Exception e) {
+      failed.incrementAndGet();
+      log.error("Error sending BPM error message", e);
+    }
+  }
+
+  protected String getKey(
+      PvmExecutionImpl execution, String errorMessage, WkfModel model, String processInstanceId) {
+
+    String instanceKey = processInstanceId;
+    if (instanceKey == null && execution != null) {
+      instanceKey = execution.getProcessInstanceId();
+    }
+    if (instanceKey == null && model != null) {
+      instanceKey = "model:" + model.getId();
+    }
+
+    return instanceKey + ":" + errorMessage;
+  }
+
+  public void shutdown() {
+
+    executor.shutdown();
+
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        dropped.addAndGet(executor.shutdownNow().size());
+      }
+    } catch (InterruptedException e) {
+      dropped.addAndGet(executor.shutdownNow().size());
+      Thread.currentThread().interrupt();
+    }
+
+    log.info(
+        "BPM error messages: submitted {}, sent {}, failed {}, coalesced {}, sent by caller {},"
+            + " dropped {}",
+        submitted.get(),
+        sent.get(),
+        failed.get(),
+        coalesced.get(),
+        callerRuns.get(),
+        dropped.get());
+  }
+
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  public long getSubmittedCount() {
+    return submitted.get();
+  }
+
+  public long getSentCount() {
+    return sent.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  /** Messages sent by the calling thread, the queue being full. */
+  public long getCallerRunsCount() {
+    return callerRuns.get();
+  }
+
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  protected class SendTask implements Runnable {
+
+    protected final PvmExecutionImpl execution;
+
+    protected final String errorMessage;
+
+    protected final WkfModel model;
+
+    protected final String processInstanceId;
+
+    protected SendTask(
+        PvmExecutionImpl execution, String errorMessage, WkfModel model, String processInstanceId) {
+      this.execution = execution;
+      this.errorMessage = errorMessage;
+      this.model = model;
+      this.processInstanceId = processInstanceId;
+    }
+
+    @Override
+    public void run() {
+      send(execution, errorMessage, model, processInstanceId);
+    }
+
+    protected void sendNow() {
+      BpmErrorMessageExecutor.this.sendNow(execution, errorMessage, model, processInstanceId);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.message;
+
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivery of the queued BPM notifications.
+ *
+ * <p>The notifications of a tenant are sent by a pool of {@code studio.bpm.notification.threads}
+ * threads, by batches of {@code batch-size} notifications, when a transaction queuing some is
+ * committed. A tenant is delivered by one thread at a time: a dispatch during the delivery runs it
+ * once more. Every {@code poll-interval} seconds, the notifications due of the known tenants are
+ * delivered, which sends the retries and the notifications of an interrupted delivery.
+ */
+@Singleton
+public class WkfNotificationExecutor {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfNotificationExecutor.class);
+
+  protected static final int QUEUE_CAPACITY = 100;
+
+  protected static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  protected final ThreadPoolExecutor executor;
+
+  protected final ScheduledExecutorService poller;
+
+  protected final int batchSize;
+
+  protected final Set<String> tenants = ConcurrentHashMap.newKeySet();
+
+  protected final Map<String, AtomicInteger> dispatches = new ConcurrentHashMap<>();
+
+  protected final AtomicLong queued = new AtomicLong();
+  protected final AtomicLong batches = new AtomicLong();
+  protected final AtomicLong sent = new AtomicLong();
+  protected final AtomicLong coalesced = new AtomicLong();
+  protected final AtomicLong retried = new AtomicLong();
+  protected final AtomicLong failed = new AtomicLong();
+  protected final AtomicLong sendTime = new AtomicLong();
+
+  @Inject
+  public WkfNotificationExecutor(AppSettingsStudioService appSettingsStudioService) {
+    int threads = Math.max(1, appSettingsStudioService.bpmNotificationThreads());
+    int interval = Math.max(1, appSettingsStudioService.bpmNotificationPollInterval());
+    batchSize = Math.max(1, appSettingsStudioService.bpmNotificationBatchSize());
+
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadFactoryBuilder().setNameFormat("bpm-notification-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+
+    poller =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("bpm-notification-poller-%d")
+                .setDaemon(true)
+                .build());
+    poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /** Deliver the notifications of the tenant on schedule. */
+  public void register(String tenantId) {
+    tenants.add(tenantId);
+  }
+
+  /** Deliver the notifications due of the tenant in the background. */
+  public void dispatch(String tenantId) {
+
+    tenants.add(tenantId);
+
+    AtomicInteger requests = dispatches.computeIfAbsent(tenantId, key -> new AtomicInteger());
+    if (requests.getAndIncrement() > 0) {
+      return;
+    }
+
+    try {
+      executor.execute(() -> deliver(tenantId, requests));
+    } catch (RejectedExecutionException e) {
+      // Sent on next poll.
+      requests.set(0);
+    }
+  }
+
+  protected void poll() {
+    tenants.forEach(this::dispatch);
+  }
+
+  protected void deliver(String tenantId, AtomicInteger requests) {
+    int seen;
+    do {
+      seen = requests.get();
+      try {
+        BpmTools.runInTenant(tenantId, this::deliverDue);
+      } catch (Exception e) {
+        log.error("Error sending BPM notifications of tenant {}", tenantId, e);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        requests.set(0);
+        return;
+      }
+    } while (!requests.compareAndSet(seen, 0));
+  }
+
+  protected void deliverDue() {
+
+    WkfNotificationService wkfNotificationService = Beans.get(WkfNotificationService.class);
+
+    Long lastId = 0L;
+    List<Long> notificationIds;
+    do {
+      notificationIds = wkfNotificationService.findDue(lastId, batchSize);
+      if (notificationIds.isEmpty()) {
+        return;
+      }
+
+      long startTime = System.currentTimeMillis();
+      wkfNotificationService.deliver(notificationIds);
+      sendTime.addAndGet(System.currentTimeMillis() - startTime);
+      batches.incrementAndGet();
+
+      lastId = notificationIds.get(notificationIds.size() - 1);
+      JPA.clear();
+    } while (notificationIds.size() == batchSize && !executor.isShutdown());
+  }
+
+  protected void onQueued() {
+    queued.incrementAndGet();
+  }
+
+  /** A notification sent for the given number of notifications of the same task and record. */
+  protected void onSent(int notifications) {
+    sent.incrementAndGet();
+    coalesced.addAndGet(notifications - 1L);
+  }
+
+  protected void onRetried() {
+    retried.incrementAndGet();
+  }
+
+  protected void onFailed() {
+    failed.incrementAndGet();
+  }
+
+  public void shutdown() {
+
+    poller.shutdownNow();
+    executor.shutdown();
+
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+
+    log.info(
+        "BPM notifications: queued {}, sent {}, coalesced {}, retried {}, failed {},"
+            + " average batch time {} ms",
+        getQueuedCount(),
+        getSentCount(),
+        getCoalescedCount(),
+        getRetriedCount(),
+        getFailedCount(),
+        getAverageBatchTime());
+  }
+
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  public long getQueuedCount() {
+    return queued.get();
+  }
+
+  public long getSentCount() {
+    return sent.get();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  public long getRetriedCount() {
+    return retried.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  /** Average time in milliseconds to send a batch of notifications. */
+  public long getAverageBatchTime() {
+    long count = batches.get();
+    return count > 0 ? sendTime.get() / count : 0;
+  }
+}
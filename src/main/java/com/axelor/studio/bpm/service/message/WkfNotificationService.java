@@ -0,0 +1,46 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.message;
+
+import com.axelor.studio.db.WkfTaskConfig;
+import java.util.List;
+import javax.mail.MessagingException;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+
+/**
+ * Outbox of the BPM notification emails.
+ *
+ * <p>The notifications are saved once the process step is committed, with the task config, node
+ * and record. Their emails are generated and sent by the {@link WkfNotificationExecutor}, a failed
+ * one is tried again later.
+ */
+public interface WkfNotificationService {
+
+  /** Queue the notification email of the task for the record of the execution. */
+  public void queue(WkfTaskConfig wkfTaskConfig, DelegateExecution execution)
+      throws ClassNotFoundException, MessagingException;
+
+  /** Ids of the pending notifications to send now, after the given id. */
+  public List<Long> findDue(Long afterId, int limit);
+
+  /**
+   * Send the given notifications, grouped by task config to find its template once. The
+   * notifications of the same task, node and record are sent once.
+   */
+  public void deliver(List<Long> notificationIds);
+}
@@ -0,0 +1,296 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.message;
+
+import com.axelor.db.EntityHelper;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.message.db.Message;
+import com.axelor.message.db.Template;
+import com.axelor.message.db.repo.TemplateRepository;
+import com.axelor.message.service.MessageService;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.bpm.service.execution.WkfEmailService;
+import com.axelor.studio.bpm.service.execution.WkfUserActionService;
+import com.axelor.studio.db.WkfNotification;
+import com.axelor.studio.db.WkfTaskConfig;
+import com.axelor.studio.db.repo.WkfNotificationRepository;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.axelor.utils.context.FullContext;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.mail.MessagingException;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.impl.cfg.TransactionState;
+import org.camunda.bpm.engine.impl.context.Context;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WkfNotificationServiceImpl implements WkfNotificationService {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfNotificationServiceImpl.class);
+
+  protected static final long RETRY_DELAY_SECONDS = 60;
+
+  protected static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+  protected WkfNotificationRepository wkfNotificationRepo;
+
+  protected WkfUserActionService wkfUserActionService;
+
+  protected WkfEmailService wkfEmailService;
+
+  protected WkfNotificationExecutor wkfNotificationExecutor;
+
+  protected AppSettingsStudioService appSettingsStudioService;
+
+  protected MessageService messageService;
+
+  protected TemplateRepository templateRepo;
+
+  @Inject
+  public WkfNotificationServiceImpl(
+      WkfNotificationRepository wkfNotificationRepo,
+      WkfUserActionService wkfUserActionService,
+      WkfEmailService wkfEmailService,
+      WkfNotificationExecutor wkfNotificationExecutor,
+      AppSettingsStudioService appSettingsStudioService,
+      MessageService messageService,
+      TemplateRepository templateRepo) {
+    this.wkfNotificationRepo = wkfNotificationRepo;
+    this.wkfUserActionService = wkfUserActionService;
+    this.wkfEmailService = wkfEmailService;
+    this.wkfNotificationExecutor = wkfNotificationExecutor;
+    this.appSettingsStudioService = appSettingsStudioService;
+    this.messageService = messageService;
+    this.templateRepo = templateRepo;
+  }
+
+  @Override
+  public void queue(WkfTaskConfig wkfTaskConfig, DelegateExecution execution)
+      throws ClassNotFoundException, MessagingException {
+
+    if (wkfTaskConfig.getTaskEmailTitle() == null) {
+      return;
+    }
+
+    FullContext wkfContext = wkfUserActionService.getModelCtx(wkfTaskConfig, execution);
+    if (wkfContext == null) {
+      return;
+    }
+
+    Model model = (Model) EntityHelper.getEntity(wkfContext.getTarget());
+    if (model.getId() == null) {
+      // The record can't be loaded again later.
+      wkfEmailService.sendEmail(wkfTaskConfig, wkfContext, execution.getCurrentActivityName());
+      return;
+    }
+
+    WkfNotification notification = new WkfNotification();
+    notification.setWkfTaskConfig(wkfTaskConfig);
+    notification.setProcessInstanceId(execution.getProcessInstanceId());
+    notification.setActivityName(execution.getCurrentActivityName());
+    notification.setModelName(EntityHelper.getEntityClass(model).getName());
+    notification.setRecordId(model.getId());
+    notification.setStatusSelect(WkfNotificationRepository.STATUS_PENDING);
+    notification.setAttempts(0);
+    notification.setNextAttemptOn(LocalDateTime.now());
+
+    String tenantId = BpmTools.getCurentTenant();
+
+    if (JPA.em().getTransaction().isActive()) {
+      // Saved with the record changes, sent once they are committed.
+      saveNotification(notification);
+      JPA.em()
+          .unwrap(SessionImplementor.class)
+          .getActionQueue()
+          .registerProcess(
+              (success, session) -> {
+                if (success) {
+                  wkfNotificationExecutor.dispatch(tenantId);
+                }
+              });
+      return;
+    }
+
+    CommandContext commandContext = Context.getCommandContext();
+    if (commandContext == null) {
+      saveNotification(notification);
+      wkfNotificationExecutor.dispatch(tenantId);
+      return;
+    }
+
+    // Only the reference is saved, once the process step is committed by the engine. The email is
+    // generated by the executor.
+    commandContext
+        .getTransactionContext()
+        .addTransactionListener(
+            TransactionState.COMMITTED,
+            committed -> {
+              try {
+                saveNotification(notification);
+                wkfNotificationExecutor.dispatch(tenantId);
+              } catch (Exception e) {
+                log.error(
+                    "Error queuing BPM notification of process instance {}",
+                    notification.getProcessInstanceId(),
+                    e);
+              }
+            });
+  }
+
+  @Transactional
+  protected void saveNotification(WkfNotification notification) {
+    wkfNotificationRepo.save(notification);
+    wkfNotificationExecutor.onQueued();
+  }
+
+  @Override
+  public List<Long> findDue(Long afterId, int limit) {
+    return wkfNotificationRepo
+        .all()
+        .filter(
+            "self.statusSelect = :status AND self.nextAttemptOn <= :now AND self.id > :afterId")
+        .bind("status", WkfNotificationRepository.STATUS_PENDING)
+        .bind("now", LocalDateTime.now())
+        .bind("afterId", afterId)
+        .order("id")
+        .select("id")
+        .fetch(limit, 0)
+        .stream()
+        .map(row -> (Long) row.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void deliver(List<Long> notificationIds) {
+
+    List<WkfNotification> notifications =
+        wkfNotificationRepo
+            .all()
+            .filter("self.id IN (:ids)")
+            .bind("ids", notificationIds)
+            .order("id")
+            .fetch();
+
+    // By task config, which gives the template and the recipient of the emails.
+    Map<WkfTaskConfig, Map<String, List<WkfNotification>>> groups = new LinkedHashMap<>();
+    for (WkfNotification notification : notifications) {
+      groups
+          .computeIfAbsent(notification.getWkfTaskConfig(), config -> new LinkedHashMap<>())
+          .computeIfAbsent(getKey(notification), key -> new ArrayList<>())
+          .add(notification);
+    }
+
+    for (Map.Entry<WkfTaskConfig, Map<String, List<WkfNotification>>> entry : groups.entrySet()) {
+      WkfTaskConfig wkfTaskConfig = entry.getKey();
+      Template template =
+          wkfTaskConfig != null ? templateRepo.findByName(wkfTaskConfig.getTemplateName()) : null;
+      for (List<WkfNotification> group : entry.getValue().values()) {
+        deliverGroup(wkfTaskConfig, template, group);
+      }
+    }
+  }
+
+  /** The notifications of the same node and record get the same email, so it is sent once. */
+  protected String getKey(WkfNotification notification) {
+    return notification.getActivityName()
+        + "#"
+        + notification.getModelName()
+        + "#"
+        + notification.getRecordId();
+  }
+
+  protected void deliverGroup(
+      WkfTaskConfig wkfTaskConfig, Template template, List<WkfNotification> group) {
+
+    WkfNotification notification = group.get(0);
+
+    try {
+      FullContext wkfContext = getContext(notification);
+      // Nothing to send once the task or the record is removed.
+      if (wkfTaskConfig != null && wkfContext != null) {
+        Message message =
+            wkfEmailService.createMessage(
+                wkfTaskConfig, template, wkfContext, notification.getActivityName());
+        if (message != null) {
+          messageService.sendByEmail(message);
+        }
+      }
+      removeNotifications(group);
+      wkfNotificationExecutor.onSent(group.size());
+    } catch (Exception e) {
+      log.warn(
+          "Error sending BPM notification of process instance {}",
+          notification.getProcessInstanceId(),
+          e);
+      onFailure(group, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  protected FullContext getContext(WkfNotification notification) throws ClassNotFoundException {
+
+    Class<? extends Model> klass =
+        (Class<? extends Model>) Class.forName(notification.getModelName());
+    Model model = JPA.find(klass, notification.getRecordId());
+
+    return model != null ? new FullContext(model) : null;
+  }
+
+  @Transactional
+  protected void removeNotifications(List<WkfNotification> notifications) {
+    notifications.forEach(wkfNotificationRepo::remove);
+  }
+
+  @Transactional
+  protected void onFailure(List<WkfNotification> notifications, Exception error) {
+
+    int maxAttempts = appSettingsStudioService.bpmNotificationMaxAttempts();
+
+    for (WkfNotification notification : notifications) {
+      WkfNotification attached = wkfNotificationRepo.find(notification.getId());
+      if (attached == null) {
+        continue;
+      }
+
+      int attempts = attached.getAttempts() + 1;
+      attached.setAttempts(attempts);
+      attached.setLastError(error.getMessage());
+
+      if (attempts >= maxAttempts) {
+        attached.setStatusSelect(WkfNotificationRepository.STATUS_FAILED);
+        wkfNotificationExecutor.onFailed();
+      } else {
+        long delay =
+            Math.min(RETRY_DELAY_SECONDS << Math.min(attempts - 1, 16), MAX_RETRY_DELAY_SECONDS);
+        attached.setNextAttemptOn(LocalDateTime.now().plusSeconds(delay));
+        wkfNotificationExecutor.onRetried();
+      }
+      wkfNotificationRepo.save(attached);
+    }
+  }
+}
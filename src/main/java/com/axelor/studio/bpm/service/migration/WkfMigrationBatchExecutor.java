@@ -0,0 +1,224 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.migration;
+
+import com.axelor.db.JPA;
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.bpm.exception.BpmExceptionMessage;
+import com.axelor.studio.db.WkfMigrationBatch;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Threads of the instance migrations.
+ *
+ * <p>A migration batch is run by the batch pool: it fetches the ids of the instances to migrate,
+ * splits them in chunks of {@code studio.bpm.migration.chunk-size} instances and waits for the
+ * chunks migrated by the chunk pool of {@code studio.bpm.migration.threads} threads. Each chunk is
+ * migrated in the tenant of the batch, with its own request scope and session.
+ */
+@Singleton
+public class WkfMigrationBatchExecutor {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfMigrationBatchExecutor.class);
+
+  protected static final int BATCH_QUEUE_CAPACITY = 100;
+
+  protected static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  protected final ThreadPoolExecutor batchExecutor;
+
+  protected final ThreadPoolExecutor chunkExecutor;
+
+  /** Chunks queued or running at once, the others wait in the batch thread. */
+  protected final Semaphore chunkPermits;
+
+  protected final int chunkSize;
+
+  protected final Set<String> runningBatches = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  public WkfMigrationBatchExecutor(AppSettingsStudioService appSettingsStudioService) {
+    int threads = Math.max(1, appSettingsStudioService.bpmMigrationThreads());
+    chunkSize = Math.max(1, appSettingsStudioService.bpmMigrationChunkSize());
+    chunkPermits = new Semaphore(threads * 2);
+    batchExecutor = createExecutor(threads, BATCH_QUEUE_CAPACITY, "bpm-migration-%d");
+    chunkExecutor = createExecutor(threads, threads, "bpm-migration-chunk-%d");
+  }
+
+  protected ThreadPoolExecutor createExecutor(int threads, int queueCapacity, String nameFormat) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** Run the saved batch in the background, in the current tenant. */
+  public void start(WkfMigrationBatch batch) {
+
+    String tenantId = BpmTools.getCurentTenant();
+    Long batchId = batch.getId();
+    String key = tenantId + ":" + batchId;
+
+    if (!runningBatches.add(key)) {
+      throw new IllegalStateException(I18n.get(BpmExceptionMessage.MIGRATION_RUNNING));
+    }
+
+    try {
+      batchExecutor.execute(
+          () -> {
+            try {
+              runInTenant(tenantId, () -> run(tenantId, batchId));
+            } finally {
+              runningBatches.remove(key);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      runningBatches.remove(key);
+      throw new IllegalStateException(I18n.get(BpmExceptionMessage.MIGRATION_QUEUE_FULL));
+    }
+  }
+
+  public boolean isRunning(WkfMigrationBatch batch) {
+    return runningBatches.contains(BpmTools.getCurentTenant() + ":" + batch.getId());
+  }
+
+  protected void run(String tenantId, Long batchId) {
+
+    WkfMigrationBatchService wkfMigrationBatchService = Beans.get(WkfMigrationBatchService.class);
+
+    List<String> processInstanceIds = wkfMigrationBatchService.begin(batchId);
+    JPA.clear();
+
+    List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    boolean interrupted = false;
+
+    for (List<String> chunk : Lists.partition(processInstanceIds, chunkSize)) {
+      try {
+        chunkPermits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        interrupted = true;
+        break;
+      }
+      try {
+        chunks.add(submitChunk(tenantId, batchId, new ArrayList<>(chunk)));
+      } catch (RejectedExecutionException e) {
+        chunkPermits.release();
+        interrupted = true;
+        break;
+      }
+    }
+
+    try {
+      CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).get();
+    } catch (InterruptedException e) {
+      // Server shutdown, the chunks not migrated yet are left for a resume.
+      Thread.currentThread().interrupt();
+      interrupted = true;
+    } catch (ExecutionException e) {
+      interrupted = true;
+    }
+
+    JPA.clear();
+    wkfMigrationBatchService.finish(batchId, interrupted);
+  }
+
+  protected CompletableFuture<Void> submitChunk(
+      String tenantId, Long batchId, List<String> processInstanceIds) {
+
+    CompletableFuture<Void> future = new CompletableFuture<>();
+
+    chunkExecutor.execute(
+        () -> {
+          try {
+            runInTenant(
+                tenantId,
+                () ->
+                    Beans.get(WkfMigrationBatchService.class)
+                        .migrateChunk(batchId, processInstanceIds));
+          } finally {
+            chunkPermits.release();
+            future.complete(null);
+          }
+        });
+
+    return future;
+  }
+
+  protected void runInTenant(String tenantId, Runnable runnable) {
+    try {
+      BpmTools.runInTenant(tenantId, runnable);
+    } catch (Exception e) {
+      log.error("Error migrating process instances", e);
+    }
+  }
+
+  public void shutdown() {
+
+    batchExecutor.shutdown();
+    chunkExecutor.shutdown();
+
+    try {
+      if (!chunkExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn(
+            "Process instance migration chunks cancelled: {}", chunkExecutor.shutdownNow().size());
+      }
+      if (!batchExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        batchExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      chunkExecutor.shutdownNow();
+      batchExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public int getRunningBatchCount() {
+    return runningBatches.size();
+  }
+
+  public int getQueuedChunkCount() {
+    return chunkExecutor.getQueue().size();
+  }
+}
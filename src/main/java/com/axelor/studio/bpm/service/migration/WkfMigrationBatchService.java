@@ -0,0 +1,53 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.migration;
+
+import com.axelor.studio.db.WkfMigrationBatch;
+import com.axelor.studio.db.WkfModel;
+import java.util.List;
+import org.camunda.bpm.engine.migration.MigrationPlan;
+import org.camunda.bpm.engine.repository.ProcessDefinition;
+
+/**
+ * Migration of the running instances of a process definition to a new version, in chunks run in
+ * the background by the {@link WkfMigrationBatchExecutor}.
+ */
+public interface WkfMigrationBatchService {
+
+  /** New unsaved migration batch of the instances of the source definition. */
+  public WkfMigrationBatch createBatch(
+      WkfModel wkfModel,
+      ProcessDefinition sourceDefinition,
+      ProcessDefinition targetDefinition,
+      MigrationPlan plan,
+      long instanceCount);
+
+  /**
+   * Save the batch and migrate its instances in the background. An interrupted or failed batch is
+   * resumed with the instances still on the source definition.
+   */
+  public void start(WkfMigrationBatch batch);
+
+  /** Mark the batch as running and return the ids of the instances to migrate. */
+  public List<String> begin(Long batchId);
+
+  /** Migrate a chunk of instances of the batch and update its progress. */
+  public void migrateChunk(Long batchId, List<String> processInstanceIds);
+
+  public void finish(Long batchId, boolean interrupted);
+}
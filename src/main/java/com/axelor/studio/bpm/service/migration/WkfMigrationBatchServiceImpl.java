@@ -0,0 +1,344 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.service.migration;
+
+import com.axelor.db.JPA;
+import com.axelor.studio.bpm.service.execution.WkfInstanceService;
+import com.axelor.studio.bpm.service.execution.WkfInstanceStatusService;
+import com.axelor.studio.bpm.service.init.ProcessEngineService;
+import com.axelor.studio.db.WkfMigrationBatch;
+import com.axelor.studio.db.WkfModel;
+import com.axelor.studio.db.WkfProcess;
+import com.axelor.studio.db.repo.WkfInstanceRepository;
+import com.axelor.studio.db.repo.WkfMigrationBatchRepository;
+import com.axelor.studio.db.repo.WkfProcessRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.migration.MigrationInstruction;
+import org.camunda.bpm.engine.migration.MigrationPlan;
+import org.camunda.bpm.engine.migration.MigrationPlanBuilder;
+import org.camunda.bpm.engine.repository.ProcessDefinition;
+import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WkfMigrationBatchServiceImpl implements WkfMigrationBatchService {
+
+  protected static final Logger log = LoggerFactory.getLogger(WkfMigrationBatchServiceImpl.class);
+
+  protected static final int PAGE_SIZE = 1000;
+
+  protected static final String SOURCE = "source";
+  protected static final String TARGET = "target";
+  protected static final String UPDATE_EVENT_TRIGGER = "updateEventTrigger";
+
+  protected WkfMigrationBatchRepository wkfMigrationBatchRepo;
+
+  protected WkfProcessRepository wkfProcessRepo;
+
+  protected WkfInstanceService wkfInstanceService;
+
+  protected WkfInstanceStatusService wkfInstanceStatusService;
+
+  protected ProcessEngineService processEngineService;
+
+  protected WkfMigrationBatchExecutor wkfMigrationBatchExecutor;
+
+  @Inject
+  public WkfMigrationBatchServiceImpl(
+      WkfMigrationBatchRepository wkfMigrationBatchRepo,
+      WkfProcessRepository wkfProcessRepo,
+      WkfInstanceService wkfInstanceService,
+      WkfInstanceStatusService wkfInstanceStatusService,
+      ProcessEngineService processEngineService,
+      WkfMigrationBatchExecutor wkfMigrationBatchExecutor) {
+    this.wkfMigrationBatchRepo = wkfMigrationBatchRepo;
+    this.wkfProcessRepo = wkfProcessRepo;
+    this.wkfInstanceService = wkfInstanceService;
+    this.wkfInstanceStatusService = wkfInstanceStatusService;
+    this.processEngineService = processEngineService;
+    this.wkfMigrationBatchExecutor = wkfMigrationBatchExecutor;
+  }
+
+  @Override
+  public WkfMigrationBatch createBatch(
+      WkfModel wkfModel,
+      ProcessDefinition sourceDefinition,
+      ProcessDefinition targetDefinition,
+      MigrationPlan plan,
+      long instanceCount) {
+
+    WkfMigrationBatch batch = new WkfMigrationBatch();
+    batch.setWkfModel(wkfModel);
+    batch.setProcessName(targetDefinition.getKey());
+    batch.setSourceDefinitionId(sourceDefinition.getId());
+    batch.setTargetDefinitionId(targetDefinition.getId());
+    batch.setMigrationPlan(writeMigrationPlan(plan));
+    batch.setStatusSelect(WkfMigrationBatchRepository.STATUS_PENDING);
+    batch.setTotalCount((int) instanceCount);
+    batch.setMigratedCount(0);
+    batch.setFailedCount(0);
+    batch.setProgress(0);
+
+    return batch;
+  }
+
+  @Override
+  public void start(WkfMigrationBatch batch) {
+    wkfMigrationBatchExecutor.start(saveBatch(batch));
+  }
+
+  @Transactional
+  protected WkfMigrationBatch saveBatch(WkfMigrationBatch batch) {
+    return wkfMigrationBatchRepo.save(batch);
+  }
+
+  @Override
+  @Transactional
+  public List<String> begin(Long batchId) {
+
+    WkfMigrationBatch batch = wkfMigrationBatchRepo.find(batchId);
+    if (batch == null) {
+      return Collections.emptyList();
+    }
+
+    List<String> processInstanceIds =
+        fetchProcessInstanceIds(processEngineService.getEngine(), batch.getSourceDefinitionId());
+
+    // The instances migrated by a previous run are kept in the count.
+    int migrated = batch.getMigratedCount();
+    batch.setTotalCount(migrated + processInstanceIds.size());
+    batch.setFailedCount(0);
+    batch.setProgress(getProgress(migrated, batch.getTotalCount()));
+    batch.setStatusSelect(WkfMigrationBatchRepository.STATUS_RUNNING);
+    if (batch.getStartedOn() == null) {
+      batch.setStartedOn(LocalDateTime.now());
+    }
+    batch.setEndedOn(null);
+    batch.setLastError(null);
+    wkfMigrationBatchRepo.save(batch);
+
+    return processInstanceIds;
+  }
+
+  /**
+   * Ids of the running instances of the definition. They are all fetched before the migration
+   * starts, as the migrated instances leave the query and would shift the pages.
+   */
+  protected List<String> fetchProcessInstanceIds(ProcessEngine engine, String definitionId) {
+
+    List<String> processInstanceIds = new ArrayList<>();
+
+    int firstResult = 0;
+    List<ProcessInstance> page;
+    do {
+      page =
+          engine
+              .getRuntimeService()
+              .createProcessInstanceQuery()
+              .processDefinitionId(definitionId)
+              .orderByProcessInstanceId()
+              .asc()
+              .listPage(firstResult, PAGE_SIZE);
+      page.forEach(instance -> processInstanceIds.add(instance.getId()));
+      firstResult += PAGE_SIZE;
+    } while (page.size() == PAGE_SIZE);
+
+    return processInstanceIds;
+  }
+
+  @Override
+  public void migrateChunk(Long batchId, List<String> processInstanceIds) {
+
+    WkfMigrationBatch batch = wkfMigrationBatchRepo.find(batchId);
+    if (batch == null || processInstanceIds.isEmpty()) {
+      return;
+    }
+
+    ProcessEngine engine = processEngineService.getEngine();
+    MigrationPlan plan = readMigrationPlan(engine, batch);
+
+    List<String> migrated = new ArrayList<>();
+    List<String> failed = new ArrayList<>();
+    String error = null;
+
+    try {
+      engine
+          .getRuntimeService()
+          .newMigration(plan)
+          .processInstanceIds(processInstanceIds)
+          .execute();
+      migrated.addAll(processInstanceIds);
+    } catch (Exception e) {
+      // The whole chunk is rolled back, the failing instances are found one by one.
+      log.debug("Error migrating a chunk of {} instances", processInstanceIds.size(), e);
+      for (String processInstanceId : processInstanceIds) {
+        try {
+          engine
+              .getRuntimeService()
+              .newMigration(plan)
+              .processInstanceIds(processInstanceId)
+              .execute();
+          migrated.add(processInstanceId);
+        } catch (Exception instanceError) {
+          failed.add(processInstanceId);
+          error = processInstanceId + ": " + instanceError.getMessage();
+        }
+      }
+    }
+
+    WkfProcess targetProcess =
+        wkfProcessRepo
+            .all()
+            .filter("self.processId = ?", batch.getTargetDefinitionId())
+            .fetchOne();
+
+    wkfInstanceService.updateProcessInstances(
+        targetProcess, migrated, WkfInstanceRepository.STATUS_MIGRATED_SUCCESSFULLY, batch);
+    // The nodes of the status are the ones of the target definition.
+    wkfInstanceStatusService.resetNodes(migrated);
+    wkfInstanceService.updateProcessInstances(
+        null, failed, WkfInstanceRepository.STATUS_MIGRATION_ERROR, batch);
+
+    updateProgress(batchId, migrated.size(), failed.size(), error);
+  }
+
+  /** Counters updated in the database, as the chunks of a batch run concurrently. */
+  @Transactional
+  protected void updateProgress(Long batchId, int migrated, int failed, String error) {
+
+    JPA.em()
+        .createQuery(
+            "UPDATE WkfMigrationBatch self"
+                + " SET self.migratedCount = self.migratedCount + :migrated,"
+                + " self.failedCount = self.failedCount + :failed,"
+                + " self.progress ="
+                + " (self.migratedCount + self.failedCount + :processed) * 100 / self.totalCount"
+                + " WHERE self.id = :id")
+        .setParameter("migrated", migrated)
+        .setParameter("failed", failed)
+        .setParameter("processed", migrated + failed)
+        .setParameter("id", batchId)
+        .executeUpdate();
+
+    if (error != null) {
+      JPA.em()
+          .createQuery(
+              "UPDATE WkfMigrationBatch self SET self.lastError = :error WHERE self.id = :id")
+          .setParameter("error", error)
+          .setParameter("id", batchId)
+          .executeUpdate();
+    }
+  }
+
+  @Override
+  @Transactional
+  public void finish(Long batchId, boolean interrupted) {
+
+    WkfMigrationBatch batch = wkfMigrationBatchRepo.find(batchId);
+    if (batch == null) {
+      return;
+    }
+
+    int migrated = batch.getMigratedCount();
+    int failed = batch.getFailedCount();
+    int total = batch.getTotalCount();
+
+    if (failed > 0) {
+      batch.setStatusSelect(WkfMigrationBatchRepository.STATUS_ERROR);
+    } else if (interrupted || migrated < total) {
+      batch.setStatusSelect(WkfMigrationBatchRepository.STATUS_INTERRUPTED);
+    } else {
+      batch.setStatusSelect(WkfMigrationBatchRepository.STATUS_COMPLETED);
+    }
+    batch.setProgress(getProgress(migrated + failed, total));
+    batch.setEndedOn(LocalDateTime.now());
+    wkfMigrationBatchRepo.save(batch);
+
+    log.info(
+        "Process instances migrated from {} to {}: {}, failed: {}, total: {}",
+        batch.getSourceDefinitionId(),
+        batch.getTargetDefinitionId(),
+        migrated,
+        failed,
+        total);
+  }
+
+  protected int getProgress(int processed, int total) {
+    return total > 0 ? processed * 100 / total : 100;
+  }
+
+  /** The activity mappings of the plan, to build it again in the worker threads. */
+  protected String writeMigrationPlan(MigrationPlan plan) {
+
+    List<Map<String, Object>> instructions = new ArrayList<>();
+    for (MigrationInstruction instruction : plan.getInstructions()) {
+      Map<String, Object> mapping = new HashMap<>();
+      mapping.put(SOURCE, instruction.getSourceActivityId());
+      mapping.put(TARGET, instruction.getTargetActivityId());
+      mapping.put(UPDATE_EVENT_TRIGGER, instruction.isUpdateEventTrigger());
+      instructions.add(mapping);
+    }
+
+    try {
+      return new ObjectMapper().writeValueAsString(instructions);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  protected MigrationPlan readMigrationPlan(ProcessEngine engine, WkfMigrationBatch batch) {
+
+    List<Map<String, Object>> instructions;
+    try {
+      instructions =
+          new ObjectMapper()
+              .readValue(
+                  batch.getMigrationPlan(), new TypeReference<List<Map<String, Object>>>() {});
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+
+    MigrationPlanBuilder planBuilder =
+        engine
+            .getRuntimeService()
+            .createMigrationPlan(batch.getSourceDefinitionId(), batch.getTargetDefinitionId());
+
+    for (Map<String, Object> instruction : instructions) {
+      String source = (String) instruction.get(SOURCE);
+      String target = (String) instruction.get(TARGET);
+      if (Boolean.TRUE.equals(instruction.get(UPDATE_EVENT_TRIGGER))) {
+        planBuilder.mapActivities(source, target).updateEventTrigger();
+      } else {
+        planBuilder.mapActivities(source, target);
+      }
+    }
+
+    return planBuilder.build();
+  }
+}
@@ -17,16 +17,18 @@
  */
 package com.axelor.studio.bpm.web;
 
+import com.axelor.auth.AuthUtils;
+import com.axelor.auth.db.User;
 import com.axelor.inject.Beans;
 import com.axelor.meta.schema.actions.ActionView.ActionViewBuilder;
 import com.axelor.rpc.ActionRequest;
 import com.axelor.rpc.ActionResponse;
 import com.axelor.rpc.Context;
-import com.axelor.studio.bpm.service.dashboard.BpmManagerDashboardService;
 import com.axelor.studio.bpm.service.dashboard.BpmManagerDashboardServiceImpl;
 import com.axelor.studio.bpm.service.dashboard.BpmManagerDashboardTaskService;
 import com.axelor.studio.bpm.service.dashboard.BpmManagerDashboardUserService;
 import com.axelor.studio.bpm.service.dashboard.WkfDashboardCommonService;
+import com.axelor.studio.bpm.service.dashboard.WkfDashboardSnapshotService;
 import com.axelor.studio.db.WkfModel;
 import com.axelor.studio.db.repo.WkfModelRepository;
 import com.axelor.utils.ExceptionTool;
@@ -43,7 +45,8 @@ public class BpmManagerDashboardController {
 
   private void showProcess(int offset, ActionResponse response) {
     try {
-      response.setValues(Beans.get(BpmManagerDashboardService.class).showProcess(offset));
+      response.setValues(
+          Beans.get(WkfDashboardSnapshotService.class).getProcesses(AuthUtils.getUser(), offset));
     } catch (Exception e) {
       ExceptionTool.trace(response, e);
     }
@@ -65,6 +68,30 @@ public class BpmManagerDashboardController {
     }
   }
 
+  public void setSnapshotStatus(ActionRequest request, ActionResponse response) {
+    try {
+      WkfDashboardSnapshotService snapshotService = Beans.get(WkfDashboardSnapshotService.class);
+      // The model displayed by default in the charts, the first one of the process list.
+      User user = AuthUtils.getUser();
+      List<WkfModel> wkfModels =
+          Beans.get(BpmManagerDashboardUserService.class).getWkfModelsByUser(user, 1, 0);
+      WkfModel wkfModel = wkfModels.isEmpty() ? null : wkfModels.get(0);
+      response.setValue("$snapshotComputedOn", snapshotService.getComputedOn(user, wkfModel));
+      response.setValue("$snapshotStale", snapshotService.isStale());
+    } catch (Exception e) {
+      ExceptionTool.trace(response, e);
+    }
+  }
+
+  public void refreshSnapshots(ActionRequest request, ActionResponse response) {
+    try {
+      Beans.get(WkfDashboardSnapshotService.class).refreshAll();
+      response.setValue("$snapshotStale", true);
+    } catch (Exception e) {
+      ExceptionTool.trace(response, e);
+    }
+  }
+
   public void getAssignedToMeTask(ActionRequest request, ActionResponse response) {
     this.getChartData(request, response, WkfDashboardCommonService.ASSIGNED_ME);
   }
@@ -88,8 +115,8 @@ public class BpmManagerDashboardController {
       }
 
       List<Map<String, Object>> dataMapList =
-          Beans.get(BpmManagerDashboardService.class)
-              .getChartData(wkfModel, type, taskByProcessType);
+          Beans.get(WkfDashboardSnapshotService.class)
+              .getChartData(type, wkfModel, AuthUtils.getUser(), taskByProcessType);
 
       response.setData(dataMapList);
     } catch (Exception e) {
@@ -111,7 +138,12 @@ public class BpmManagerDashboardController {
       String unit = (String) context.get("unit");
 
       List<Map<String, Object>> dataMapList =
-          Beans.get(BpmManagerDashboardUserService.class).getAvgTimePerUserData(wkfModel, unit);
+          Beans.get(WkfDashboardSnapshotService.class)
+              .getChartData(
+                  WkfDashboardSnapshotService.AVG_TIME_PER_USER,
+                  wkfModel,
+                  AuthUtils.getUser(),
+                  unit);
 
       response.setData(dataMapList);
     } catch (Exception e) {
@@ -125,7 +157,12 @@ public class BpmManagerDashboardController {
       WkfModel wkfModel = this.getWkfModel(context);
 
       List<Map<String, Object>> dataMapList =
-          Beans.get(BpmManagerDashboardUserService.class).getTaskDoneTodayPerUser(wkfModel);
+          Beans.get(WkfDashboardSnapshotService.class)
+              .getChartData(
+                  WkfDashboardSnapshotService.TASK_DONE_TODAY_PER_USER,
+                  wkfModel,
+                  AuthUtils.getUser(),
+                  null);
 
       response.setData(dataMapList);
     } catch (Exception e) {
@@ -139,7 +176,12 @@ public class BpmManagerDashboardController {
       WkfModel wkfModel = this.getWkfModel(context);
 
       List<Map<String, Object>> dataMapList =
-          Beans.get(BpmManagerDashboardUserService.class).getTaskToDoPerUser(wkfModel);
+          Beans.get(WkfDashboardSnapshotService.class)
+              .getChartData(
+                  WkfDashboardSnapshotService.TASK_TO_DO_PER_USER,
+                  wkfModel,
+                  AuthUtils.getUser(),
+                  null);
 
       response.setData(dataMapList);
     } catch (Exception e) {
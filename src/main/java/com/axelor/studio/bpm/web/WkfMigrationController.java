@@ -23,9 +23,12 @@ import com.axelor.inject.Beans;
 import com.axelor.rpc.ActionRequest;
 import com.axelor.rpc.ActionResponse;
 import com.axelor.studio.bpm.exception.BpmExceptionMessage;
+import com.axelor.studio.bpm.service.migration.WkfMigrationBatchService;
 import com.axelor.studio.bpm.service.migration.WkfMigrationService;
 import com.axelor.studio.db.WkfMigration;
+import com.axelor.studio.db.WkfMigrationBatch;
 import com.axelor.studio.db.WkfModel;
+import com.axelor.studio.db.repo.WkfMigrationBatchRepository;
 import com.axelor.studio.db.repo.WkfMigrationRepository;
 import com.axelor.utils.ExceptionTool;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -112,11 +115,24 @@ public class WkfMigrationController {
       Beans.get(WkfMigrationService.class).migrate(migration, contextMap);
 
       response.setReload(true);
-      response.setInfo(I18n.get(BpmExceptionMessage.MIGRATION_DONE));
+      response.setInfo(I18n.get(BpmExceptionMessage.MIGRATION_STARTED));
 
     } catch (Exception e) {
       ExceptionTool.trace(e);
       response.setError(e.getMessage(), I18n.get(BpmExceptionMessage.MIGRATION_ERR));
     }
   }
+
+  public void resumeBatch(ActionRequest request, ActionResponse response) {
+    try {
+      WkfMigrationBatch batch = request.getContext().asType(WkfMigrationBatch.class);
+      batch = Beans.get(WkfMigrationBatchRepository.class).find(batch.getId());
+
+      Beans.get(WkfMigrationBatchService.class).start(batch);
+
+      response.setReload(true);
+    } catch (Exception e) {
+      ExceptionTool.trace(response, e);
+    }
+  }
 }
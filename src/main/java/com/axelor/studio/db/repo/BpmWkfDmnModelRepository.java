@@ -19,10 +19,25 @@ package com.axelor.studio.db.repo;
 
 import com.axelor.inject.Beans;
 import com.axelor.studio.db.WkfDmnModel;
+import com.axelor.studio.dmn.service.DmnOutputBindingCache;
 import com.axelor.studio.dmn.service.DmnService;
 
 public class BpmWkfDmnModelRepository extends WkfDmnModelRepository {
 
+  @Override
+  public WkfDmnModel save(WkfDmnModel entity) {
+    entity = super.save(entity);
+    // The output fields may have been changed.
+    DmnOutputBindingCache.invalidateAfterCommit();
+    return entity;
+  }
+
+  @Override
+  public void remove(WkfDmnModel entity) {
+    super.remove(entity);
+    DmnOutputBindingCache.invalidateAfterCommit();
+  }
+
   @Override
   public WkfDmnModel copy(WkfDmnModel entity, boolean deep) {
     entity = super.copy(entity, deep);
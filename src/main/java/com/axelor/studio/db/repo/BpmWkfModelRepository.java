@@ -17,6 +17,8 @@
  */
 package com.axelor.studio.db.repo;
 
+import com.axelor.db.JPA;
+import com.axelor.studio.db.WkfDashboardSnapshot;
 import com.axelor.studio.db.WkfModel;
 
 public class BpmWkfModelRepository extends WkfModelRepository {
@@ -39,6 +41,8 @@ public class BpmWkfModelRepository extends WkfModelRepository {
       remove(entity.getPreviousVersion());
     }
 
+    JPA.all(WkfDashboardSnapshot.class).filter("self.wkfModel = ?1", entity).delete();
+
     super.remove(entity);
   }
 }
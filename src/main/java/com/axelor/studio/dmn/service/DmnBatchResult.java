@@ -0,0 +1,55 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.dmn.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Counts of a decision evaluated on a set of records. */
+public class DmnBatchResult {
+
+  protected final AtomicLong processed = new AtomicLong();
+  protected final AtomicLong matched = new AtomicLong();
+  protected final AtomicLong unchanged = new AtomicLong();
+  protected final AtomicLong failed = new AtomicLong();
+
+  /** Records evaluated without error. */
+  public long getProcessed() {
+    return processed.get();
+  }
+
+  /** Records for which a rule matched. */
+  public long getMatched() {
+    return matched.get();
+  }
+
+  /** Records evaluated without error and left as they were. */
+  public long getUnchanged() {
+    return unchanged.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "processed: %d, matched: %d, unchanged: %d, failed: %d",
+        getProcessed(), getMatched(), getUnchanged(), getFailed());
+  }
+}
@@ -74,6 +74,8 @@ public class DmnDeploymentServiceImpl implements DmnDeploymentService {
     setDecisionTables(wkfDmnModel, dmnModelInstance);
 
     Beans.get(WkfDmnModelRepository.class).save(wkfDmnModel);
+
+    DmnOutputBindingCache.invalidateAfterCommit();
   }
 
   private void setModels(WkfDmnModel wkfDmnModel, DmnModelInstance dmnModelInstance) {
@@ -28,9 +28,8 @@ import java.io.IOException;
 import java.util.Collection;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.camunda.bpm.model.dmn.Dmn;
 import org.camunda.bpm.model.dmn.DmnModelInstance;
 import org.camunda.bpm.model.dmn.instance.DecisionTable;
@@ -40,9 +39,16 @@ import org.camunda.bpm.model.dmn.instance.Output;
 import org.camunda.bpm.model.dmn.instance.OutputEntry;
 import org.camunda.bpm.model.dmn.instance.Rule;
 
+/**
+ * Exports the rules of the decision tables, one sheet per table.
+ *
+ * <p>The workbook is streamed: only the last {@link #ROW_WINDOW} rows of a sheet are kept in
+ * memory, the other ones are flushed to a temporary file. The columns are sized once the sheet is
+ * written, from the widths tracked while the rows were flushed.
+ */
 public class DmnExportServiceImpl implements DmnExportService {
 
-  private Workbook workbook;
+  protected static final int ROW_WINDOW = 100;
 
   @Override
   public File exportDmnTable(WkfDmnModel wkfDmnModel) {
@@ -50,7 +56,6 @@ public class DmnExportServiceImpl implements DmnExportService {
       return null;
     }
 
-    workbook = new XSSFWorkbook();
     File exportFile = null;
 
     try {
@@ -63,35 +68,45 @@ public class DmnExportServiceImpl implements DmnExportService {
         Dmn.readModelFromStream(new ByteArrayInputStream(wkfDmnModel.getDiagramXml().getBytes()));
 
     Collection<DecisionTable> tables = dmnModelInstance.getModelElementsByType(DecisionTable.class);
-    this.processTables(tables);
 
-    FileOutputStream fout;
+    SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
     try {
-      fout = new FileOutputStream(exportFile);
-      workbook.write(fout);
-      fout.close();
+      this.processTables(workbook, tables);
+
+      try (FileOutputStream fout = new FileOutputStream(exportFile)) {
+        workbook.write(fout);
+      }
+    } catch (IllegalStateException e) {
+      throw e;
     } catch (Exception e) {
       ExceptionTool.trace(e);
+    } finally {
+      workbook.dispose();
     }
     return exportFile;
   }
 
-  private void processTables(Collection<DecisionTable> tables) {
+  private void processTables(SXSSFWorkbook workbook, Collection<DecisionTable> tables) {
     for (DecisionTable table : tables) {
       String sheetName = table.getParentElement().getAttributeValue("id");
-      Sheet sheet = workbook.createSheet(sheetName);
-      this.createHeaderRow(sheet, table);
+      SXSSFSheet sheet = workbook.createSheet(sheetName);
+      sheet.trackAllColumnsForAutoSizing();
+      int columns = this.createHeaderRow(sheet, table);
       this.createDataRow(sheet, table);
+      for (int i = 0; i < columns; i++) {
+        sheet.autoSizeColumn(i);
+      }
+      sheet.untrackAllColumnsForAutoSizing();
     }
   }
 
-  private void createHeaderRow(Sheet sheet, DecisionTable table) {
-    Row titleRow = sheet.createRow(sheet.getLastRowNum());
+  /** Creates the title and header rows, returns the number of columns. */
+  private int createHeaderRow(SXSSFSheet sheet, DecisionTable table) {
+    Row titleRow = sheet.createRow(0);
     Cell titleCell = titleRow.createCell(0);
     titleCell.setCellValue(table.getParentElement().getAttributeValue("name"));
-    sheet.autoSizeColumn(0);
 
-    Row row = sheet.createRow(sheet.getLastRowNum() + 1);
+    Row row = sheet.createRow(1);
     int inputIndex = 0;
     for (Input input : table.getInputs()) {
       if (Strings.isNullOrEmpty(input.getLabel())) {
@@ -99,50 +114,46 @@ public class DmnExportServiceImpl implements DmnExportService {
       }
       Cell cell = row.createCell(inputIndex);
       cell.setCellValue(input.getLabel() + "(" + input.getId() + ")");
-      sheet.autoSizeColumn(inputIndex);
       inputIndex++;
     }
 
-    int outputIndex = row.getLastCellNum();
+    int outputIndex = inputIndex;
     for (Output output : table.getOutputs()) {
       if (Strings.isNullOrEmpty(output.getLabel())) {
         throw new IllegalStateException(BpmExceptionMessage.MISSING_OUTPUT_LABEL);
       }
       Cell cell = row.createCell(outputIndex);
       cell.setCellValue(output.getLabel() + "(" + output.getId() + ")");
-      sheet.autoSizeColumn(outputIndex);
       outputIndex++;
     }
 
     Cell cell = row.createCell(outputIndex);
     cell.setCellValue("Annotation");
-    sheet.autoSizeColumn(outputIndex);
+
+    return outputIndex + 1;
   }
 
-  private void createDataRow(Sheet sheet, DecisionTable table) {
-    int index = sheet.getLastRowNum() + 1;
+  private void createDataRow(SXSSFSheet sheet, DecisionTable table) {
+    int index = 2;
     for (Rule rule : table.getRules()) {
       Row row = sheet.createRow(index);
       int ipCellIndex = 0;
       for (InputEntry ie : rule.getInputEntries()) {
         Cell cell = row.createCell(ipCellIndex);
         cell.setCellValue(ie.getTextContent());
-        sheet.autoSizeColumn(ipCellIndex);
         ipCellIndex++;
       }
 
-      int opCellIndex = row.getLastCellNum();
+      int opCellIndex = ipCellIndex;
       for (OutputEntry oe : rule.getOutputEntries()) {
         Cell cell = row.createCell(opCellIndex);
         cell.setCellValue(oe.getTextContent());
-        sheet.autoSizeColumn(opCellIndex);
         opCellIndex++;
       }
 
       Cell cell = row.createCell(opCellIndex);
       cell.setCellValue(
           rule.getDescription() != null ? rule.getDescription().getTextContent() : null);
-      sheet.autoSizeColumn(opCellIndex);
 
       index++;
     }
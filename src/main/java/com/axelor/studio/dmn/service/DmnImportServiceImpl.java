@@ -17,6 +17,7 @@
  */
 package com.axelor.studio.dmn.service;
 
+import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.studio.bpm.exception.BpmExceptionMessage;
 import com.axelor.studio.db.WkfDmnModel;
@@ -26,10 +27,25 @@ import com.axelor.utils.reader.DataReaderService;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import com.opencsv.CSVReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.Collection;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.camunda.bpm.model.dmn.Dmn;
 import org.camunda.bpm.model.dmn.DmnModelInstance;
 import org.camunda.bpm.model.dmn.instance.DecisionTable;
@@ -40,7 +56,15 @@ import org.camunda.bpm.model.dmn.instance.Output;
 import org.camunda.bpm.model.dmn.instance.OutputEntry;
 import org.camunda.bpm.model.dmn.instance.Rule;
 import org.camunda.bpm.model.dmn.instance.Text;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
+/**
+ * Imports the rules of the decision tables from a file exported by {@link DmnExportService}.
+ *
+ * <p>The xlsx and csv files are read row by row as a stream, only the xls files are loaded at once.
+ * A csv file holds the table whose id is the file name, or the only table of the model.
+ */
 public class DmnImportServiceImpl implements DmnImportService {
 
   private static final String SPACE_PATTERN = "(?m)^[ \t]*\r?\n";
@@ -48,6 +72,7 @@ public class DmnImportServiceImpl implements DmnImportService {
   private static final String INPUT_ENTRY = "UnaryTests_";
   private static final String OUTPUT_ENTRY = "LiteralExpression_";
   private static final String EXPR_LANG = "groovy";
+  private static final String ANNOTATION = "Annotation";
 
   @Inject private DataReaderFactory dataReaderFactory;
 
@@ -57,20 +82,24 @@ public class DmnImportServiceImpl implements DmnImportService {
   public void importDmnTable(MetaFile dataFile, WkfDmnModel dmnModel) {
 
     String extension = Files.getFileExtension(dataFile.getFileName());
-    if (extension == null || (!extension.equals("xlsx") && !extension.equals("xls"))) {
+    if (extension == null
+        || (!extension.equals("xlsx") && !extension.equals("xls") && !extension.equals("csv"))) {
       throw new IllegalStateException(BpmExceptionMessage.INVALID_IMPORT_FILE);
     }
 
-    DataReaderService reader = dataReaderFactory.getDataReader(extension);
-    reader.initialize(dataFile, null);
+    if (extension.equals("xls")) {
+      DataReaderService reader = dataReaderFactory.getDataReader(extension);
+      reader.initialize(dataFile, null);
+      this.process(reader, dmnModel);
+      return;
+    }
 
-    this.process(reader, dmnModel);
+    this.process(MetaFiles.getPath(dataFile).toFile(), extension, dmnModel);
   }
 
   @Transactional
   public void process(DataReaderService reader, WkfDmnModel dmnModel) {
-    DmnModelInstance dmnModelInstance =
-        Dmn.readModelFromStream(new ByteArrayInputStream(dmnModel.getDiagramXml().getBytes()));
+    DmnModelInstance dmnModelInstance = this.readModel(dmnModel);
 
     String[] sheets = reader.getSheetNames();
     int counter = 1;
@@ -86,38 +115,104 @@ public class DmnImportServiceImpl implements DmnImportService {
         continue;
       }
 
-      table.getRules().clear();
-
-      String[] headerRow = reader.read(sheet, 1, 0);
+      TableImport tableImport = new TableImport(table, dmnModelInstance, counter);
+      tableImport.setHeader(reader.read(sheet, 1, 0));
 
       for (int i = 2; i < totalLines; i++) {
-        String[] row = reader.read(sheet, i, headerRow.length);
-        if (row == null
-            || row.length == 0
-            || Arrays.asList(row).stream().noneMatch(Objects::nonNull)) {
-          continue;
-        }
-        Rule rule = dmnModelInstance.newInstance(Rule.class);
-        rule.setId(RULE + i + counter);
+        tableImport.addRow(i, reader.read(sheet, i, tableImport.getColumnCount()));
+      }
+      counter++;
+    }
+
+    this.saveModel(dmnModelInstance, dmnModel);
+  }
 
-        for (int j = 0; j < row.length; j++) {
-          String value = StringUtils.isBlank(row[j]) ? null : row[j].trim();
+  @Transactional
+  public void process(File file, String extension, WkfDmnModel dmnModel) {
+    DmnModelInstance dmnModelInstance = this.readModel(dmnModel);
+
+    try {
+      if (extension.equals("csv")) {
+        this.processCsv(file, dmnModelInstance);
+      } else {
+        this.processXlsx(file, dmnModelInstance);
+      }
+    } catch (IllegalStateException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+
+    this.saveModel(dmnModelInstance, dmnModel);
+  }
 
-          Object entryObj = this.checkEntry(headerRow, j, table, reader);
-          if (entryObj == null) {
+  protected void processXlsx(File file, DmnModelInstance dmnModelInstance) throws Exception {
+
+    try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+      XSSFReader xssfReader = new XSSFReader(pkg);
+      ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+      StylesTable styles = xssfReader.getStylesTable();
+      DataFormatter formatter = new DataFormatter();
+      XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+      int counter = 1;
+
+      while (sheets.hasNext()) {
+        try (InputStream sheetStream = sheets.next()) {
+          DecisionTable table = this.getDecisionTable(sheets.getSheetName(), dmnModelInstance);
+          if (table == null) {
             continue;
           }
-          rule = this.createEntries(entryObj, value, j, i, counter, rule, dmnModelInstance);
+
+          TableImport tableImport = new TableImport(table, dmnModelInstance, counter);
+          XMLReader parser = XMLHelper.newXMLReader();
+          parser.setContentHandler(
+              new XSSFSheetXMLHandler(
+                  styles, strings, new RowHandler(tableImport), formatter, false));
+          parser.parse(new InputSource(sheetStream));
+
+          if (tableImport.hasRows()) {
+            counter++;
+          }
         }
+      }
+    }
+  }
+
+  protected void processCsv(File file, DmnModelInstance dmnModelInstance) throws Exception {
+
+    DecisionTable table =
+        this.getDecisionTable(Files.getNameWithoutExtension(file.getName()), dmnModelInstance);
+    if (table == null) {
+      Collection<DecisionTable> tables =
+          dmnModelInstance.getModelElementsByType(DecisionTable.class);
+      if (tables.size() != 1) {
+        return;
+      }
+      table = tables.iterator().next();
+    }
+
+    TableImport tableImport = new TableImport(table, dmnModelInstance, 1);
 
-        if (rule.getOutputEntries().isEmpty()) {
-          throw new IllegalStateException(BpmExceptionMessage.EMPTY_OUTPUT_COLUMN);
+    try (CSVReader csvReader = new CSVReader(Files.newReader(file, StandardCharsets.UTF_8))) {
+      int i = 0;
+      String[] row = csvReader.readNext();
+      while (row != null) {
+        if (i == 1) {
+          tableImport.setHeader(row);
+        } else if (i > 1) {
+          tableImport.addRow(i, Arrays.copyOf(row, tableImport.getColumnCount()));
         }
-        table.getRules().add(rule);
+        i++;
+        row = csvReader.readNext();
       }
-      counter++;
     }
+  }
 
+  protected DmnModelInstance readModel(WkfDmnModel dmnModel) {
+    return Dmn.readModelFromStream(new ByteArrayInputStream(dmnModel.getDiagramXml().getBytes()));
+  }
+
+  protected void saveModel(DmnModelInstance dmnModelInstance, WkfDmnModel dmnModel) {
     String diagramXml = Dmn.convertToString(dmnModelInstance);
     diagramXml = diagramXml.replaceAll(SPACE_PATTERN, "");
     dmnModel.setDiagramXml(diagramXml);
@@ -131,8 +226,7 @@ public class DmnImportServiceImpl implements DmnImportService {
         .orElse(null);
   }
 
-  private Object checkEntry(
-      String[] headerRow, int cellIndex, DecisionTable table, DataReaderService reader) {
+  private Object checkEntry(String[] headerRow, int cellIndex, DecisionTable table) {
 
     if (StringUtils.isBlank(headerRow[cellIndex])) {
       throw new IllegalStateException(BpmExceptionMessage.INVALID_HEADER);
@@ -163,7 +257,7 @@ public class DmnImportServiceImpl implements DmnImportService {
       return output;
     }
 
-    if (header.equals("Annotation")) {
+    if (header.equals(ANNOTATION)) {
       return header;
     }
 
@@ -197,7 +291,7 @@ public class DmnImportServiceImpl implements DmnImportService {
       oe.setText(text);
       rule.getOutputEntries().add(oe);
 
-    } else if (entryObj.equals("Annotation")) {
+    } else if (entryObj.equals(ANNOTATION)) {
       Description desc = dmnModelInstance.newInstance(Description.class);
       desc.setTextContent(value);
       rule.setDescription(desc);
@@ -205,4 +299,118 @@ public class DmnImportServiceImpl implements DmnImportService {
 
     return rule;
   }
+
+  /**
+   * Rules of one decision table, added row by row. The first row is the title, the second the
+   * header, the columns are resolved once on the first rule.
+   */
+  protected class TableImport {
+
+    protected final DecisionTable table;
+
+    protected final DmnModelInstance dmnModelInstance;
+
+    protected final int counter;
+
+    protected String[] headerRow;
+
+    protected Object[] entries;
+
+    protected boolean hasRows;
+
+    protected TableImport(DecisionTable table, DmnModelInstance dmnModelInstance, int counter) {
+      this.table = table;
+      this.dmnModelInstance = dmnModelInstance;
+      this.counter = counter;
+    }
+
+    protected void setHeader(String[] headerRow) {
+      this.headerRow = headerRow != null ? headerRow : new String[0];
+      if (!hasRows) {
+        table.getRules().clear();
+        hasRows = true;
+      }
+    }
+
+    protected int getColumnCount() {
+      return headerRow != null ? headerRow.length : 0;
+    }
+
+    protected boolean hasRows() {
+      return hasRows;
+    }
+
+    protected void addRow(int i, String[] row) {
+      if (row == null || Arrays.stream(row).allMatch(StringUtils::isBlank)) {
+        return;
+      }
+
+      // Rules without header row, or with an empty one.
+      if (getColumnCount() == 0) {
+        throw new IllegalStateException(BpmExceptionMessage.INVALID_HEADER);
+      }
+
+      if (entries == null) {
+        entries = new Object[headerRow.length];
+        for (int j = 0; j < headerRow.length; j++) {
+          entries[j] = checkEntry(headerRow, j, table);
+        }
+      }
+
+      Rule rule = dmnModelInstance.newInstance(Rule.class);
+      rule.setId(RULE + i + counter);
+
+      for (int j = 0; j < row.length && j < entries.length; j++) {
+        String value = StringUtils.isBlank(row[j]) ? null : row[j].trim();
+        rule = createEntries(entries[j], value, j, i, counter, rule, dmnModelInstance);
+      }
+
+      if (rule.getOutputEntries().isEmpty()) {
+        throw new IllegalStateException(BpmExceptionMessage.EMPTY_OUTPUT_COLUMN);
+      }
+      table.getRules().add(rule);
+    }
+  }
+
+  /** Collects the cells of the streamed xlsx rows. */
+  protected static class RowHandler implements SheetContentsHandler {
+
+    protected final TableImport tableImport;
+
+    protected String[] cells;
+
+    protected int lastColumn;
+
+    protected RowHandler(TableImport tableImport) {
+      this.tableImport = tableImport;
+    }
+
+    @Override
+    public void startRow(int rowNum) {
+      int columns = rowNum > 1 ? tableImport.getColumnCount() : 0;
+      cells = new String[Math.max(columns, 16)];
+      lastColumn = -1;
+    }
+
+    @Override
+    public void endRow(int rowNum) {
+      if (rowNum == 1) {
+        tableImport.setHeader(Arrays.copyOf(cells, lastColumn + 1));
+      } else if (rowNum > 1) {
+        int columns = tableImport.getColumnCount();
+        tableImport.addRow(rowNum, Arrays.copyOf(cells, columns > 0 ? columns : lastColumn + 1));
+      }
+    }
+
+    @Override
+    public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+      int column =
+          cellReference != null ? new CellReference(cellReference).getCol() : lastColumn + 1;
+      if (column >= cells.length) {
+        cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+      }
+      cells[column] = formattedValue;
+      lastColumn = column;
+    }
+  }
 }
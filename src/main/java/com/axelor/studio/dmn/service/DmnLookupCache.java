@@ -0,0 +1,179 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.dmn.service;
+
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.utils.context.FullContext;
+import com.axelor.utils.context.FullContextHelper;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records found by the relational outputs of a decision, by target model, field path and value.
+ *
+ * <p>It lives for one evaluation: a single record, or all the records of a bulk evaluation. Only
+ * the ids are kept, the records are loaded in the session of the caller. The missing values of a
+ * plain field path are searched with one {@code IN} query, the values it does not find being kept
+ * as matching no record. The other ones are searched value by value.
+ */
+public class DmnLookupCache {
+
+  protected static final int MAX_IN_SIZE = 500;
+
+  protected static final Pattern FIELD_PATH = Pattern.compile("[\\w.]+");
+
+  protected final Map<String, List<Long>> ids = new ConcurrentHashMap<>();
+
+  /** Records of the target model whose field matches the value, or one of the values. */
+  public List<Model> find(String targetModel, String subField, Object param) {
+
+    Class<? extends Model> klass = getModelClass(targetModel);
+    List<Long> found = getIds(targetModel, subField, getValues(param));
+    if (found.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    return found.stream()
+        .map(id -> JPA.em().find(klass, id))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Search the values not found yet and load the found records in the current session, so the
+   * next calls to {@link #find(String, String, Object)} do not query the database.
+   */
+  public void prefetch(String targetModel, String subField, Collection<?> values) {
+
+    List<Long> found = getIds(targetModel, subField, values);
+    if (found.isEmpty()) {
+      return;
+    }
+
+    Class<? extends Model> klass = getModelClass(targetModel);
+    for (List<Long> part : Lists.partition(found, MAX_IN_SIZE)) {
+      JPA.all(klass).filter("self.id IN (:ids)").bind("ids", part).fetch();
+    }
+  }
+
+  protected List<Long> getIds(String targetModel, String subField, Collection<?> values) {
+
+    resolve(targetModel, subField, values);
+
+    return values.stream()
+        .filter(Objects::nonNull)
+        .map(value -> ids.get(getKey(targetModel, subField, value)))
+        .filter(Objects::nonNull)
+        .flatMap(List::stream)
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  protected void resolve(String targetModel, String subField, Collection<?> values) {
+
+    List<Object> missing =
+        values.stream()
+            .filter(Objects::nonNull)
+            .filter(value -> !ids.containsKey(getKey(targetModel, subField, value)))
+            .distinct()
+            .collect(Collectors.toList());
+
+    if (missing.isEmpty()) {
+      return;
+    }
+
+    if (missing.size() > 1 && FIELD_PATH.matcher(subField).matches()) {
+      try {
+        ids.putAll(search(targetModel, subField, missing));
+        // Values matching no record, not searched again.
+        for (Object value : missing) {
+          ids.putIfAbsent(getKey(targetModel, subField, value), Collections.emptyList());
+        }
+        return;
+      } catch (IllegalArgumentException e) {
+        // Values not matching the type of the field, searched one by one as before.
+      }
+    }
+
+    for (Object value : missing) {
+      ids.computeIfAbsent(
+          getKey(targetModel, subField, value), key -> search(targetModel, subField, value));
+    }
+  }
+
+  protected Map<String, List<Long>> search(
+      String targetModel, String subField, List<Object> values) {
+
+    Map<String, List<Long>> found = new HashMap<>();
+    String[] fields = Stream.of("id", subField).distinct().toArray(String[]::new);
+
+    for (List<Object> part : Lists.partition(values, MAX_IN_SIZE)) {
+      JPA.all(getModelClass(targetModel))
+          .filter("self." + subField + " IN (:values)")
+          .bind("values", part)
+          .order("id")
+          .select(fields)
+          .fetch(0, 0)
+          .forEach(
+              row ->
+                  found
+                      .computeIfAbsent(
+                          getKey(targetModel, subField, row.get(subField)),
+                          key -> new ArrayList<>())
+                      .add((Long) row.get("id")));
+    }
+
+    return found;
+  }
+
+  protected List<Long> search(String targetModel, String subField, Object value) {
+
+    return FullContextHelper.filter(targetModel, "self." + subField + " = ?1", value).stream()
+        .map(FullContext::getTarget)
+        .map(target -> ((Model) target).getId())
+        .collect(Collectors.toList());
+  }
+
+  protected Collection<?> getValues(Object param) {
+    return param instanceof Collection ? (Collection<?>) param : Collections.singletonList(param);
+  }
+
+  protected String getKey(String targetModel, String subField, Object value) {
+    return targetModel + "#" + subField + "#" + value;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected Class<? extends Model> getModelClass(String targetModel) {
+    try {
+      return (Class<? extends Model>) Class.forName(targetModel);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
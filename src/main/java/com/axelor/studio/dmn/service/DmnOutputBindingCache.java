@@ -0,0 +1,152 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.dmn.service;
+
+import com.axelor.studio.baml.tools.BpmTools;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Output bindings of the decision tables, by decision and target model.
+ *
+ * <p>A binding holds the resolved target of an output: the field of the record, and for a dotted
+ * output field the target model of the relation and its cardinality. The bindings of a tenant are
+ * dropped once a decision model or a custom field is saved, deployed or removed.
+ */
+public class DmnOutputBindingCache {
+
+  protected static final int MAX_SIZE = 500;
+
+  private static final Map<String, Cache<String, List<OutputBinding>>> BINDINGS =
+      new ConcurrentHashMap<>();
+
+  private DmnOutputBindingCache() {}
+
+  public static List<OutputBinding> get(
+      String decisionId, String modelKey, Callable<List<OutputBinding>> loader) {
+
+    Cache<String, List<OutputBinding>> cache =
+        BINDINGS.computeIfAbsent(
+            BpmTools.getCurentTenant(),
+            key -> CacheBuilder.newBuilder().maximumSize(MAX_SIZE).build());
+
+    try {
+      return cache.get(decisionId + "#" + modelKey, loader);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  public static void invalidate(String tenantId) {
+    BINDINGS.remove(tenantId);
+  }
+
+  /** Drop the bindings of the current tenant, after commit so they are not loaded again stale. */
+  public static void invalidateAfterCommit() {
+    String tenantId = BpmTools.getCurentTenant();
+    BpmTools.afterCommit(() -> invalidate(tenantId));
+  }
+
+  public static final class OutputBinding {
+
+    private final String output;
+
+    private final String fieldName;
+
+    private final String subField;
+
+    private final String targetModel;
+
+    private final boolean collection;
+
+    private final boolean set;
+
+    private OutputBinding(
+        String output,
+        String fieldName,
+        String subField,
+        String targetModel,
+        boolean collection,
+        boolean set) {
+      this.output = output;
+      this.fieldName = fieldName;
+      this.subField = subField;
+      this.targetModel = targetModel;
+      this.collection = collection;
+      this.set = set;
+    }
+
+    /** Output set as is on a field of the record. */
+    public static OutputBinding field(String output, String fieldName) {
+      return new OutputBinding(output, fieldName, null, null, false, false);
+    }
+
+    /** Output searched on the given field of the target model of a relational field. */
+    public static OutputBinding relation(
+        String output,
+        String fieldName,
+        String subField,
+        String targetModel,
+        boolean collection,
+        boolean set) {
+      return new OutputBinding(output, fieldName, subField, targetModel, collection, set);
+    }
+
+    /** Relational field without target, the field is emptied. */
+    public static OutputBinding unresolved(String output, String fieldName, String subField) {
+      return new OutputBinding(output, fieldName, subField, null, false, false);
+    }
+
+    public String getOutput() {
+      return output;
+    }
+
+    public String getFieldName() {
+      return fieldName;
+    }
+
+    public String getSubField() {
+      return subField;
+    }
+
+    public String getTargetModel() {
+      return targetModel;
+    }
+
+    public boolean isRelational() {
+      return subField != null;
+    }
+
+    public boolean isResolved() {
+      return targetModel != null;
+    }
+
+    public boolean isCollection() {
+      return collection;
+    }
+
+    public boolean isSet() {
+      return set;
+    }
+  }
+}
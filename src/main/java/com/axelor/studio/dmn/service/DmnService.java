@@ -19,11 +19,28 @@ package com.axelor.studio.dmn.service;
 
 import com.axelor.db.Model;
 import com.axelor.studio.db.WkfDmnModel;
+import java.util.Map;
 
 public interface DmnService {
 
   public void executeDmn(String decisionDefinitionId, Model model);
 
+  /**
+   * Evaluate the decision on all the records of the model matching the filter.
+   *
+   * <p>Records are read by chunks of {@code studio.dmn.batch.size} ids and evaluated by {@code
+   * studio.dmn.batch.threads} worker threads, each chunk in its own transaction.
+   *
+   * @throws IllegalStateException if the evaluation is interrupted or a chunk fails outside of its
+   *     transaction, with the counts in the message. The records of the chunks left unfinished are
+   *     counted as failed.
+   */
+  public DmnBatchResult executeDmn(
+      String decisionDefinitionId,
+      Class<? extends Model> klass,
+      String filter,
+      Map<String, Object> params);
+
   public String createOutputToFieldScript(
       String decisionDefinitionId,
       String modelName,
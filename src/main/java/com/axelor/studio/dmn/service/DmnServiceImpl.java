@@ -26,8 +26,10 @@ import static com.axelor.utils.MetaJsonFieldType.ONE_TO_MANY;
 
 import com.axelor.common.StringUtils;
 import com.axelor.db.EntityHelper;
+import com.axelor.db.JPA;
 import com.axelor.db.JpaRepository;
 import com.axelor.db.Model;
+import com.axelor.db.Query;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.db.mapper.Property;
 import com.axelor.inject.Beans;
@@ -35,30 +37,42 @@ import com.axelor.meta.db.MetaJsonField;
 import com.axelor.meta.db.MetaJsonModel;
 import com.axelor.meta.db.MetaJsonRecord;
 import com.axelor.meta.db.repo.MetaJsonFieldRepository;
-import com.axelor.studio.bpm.context.WkfContextHelper;
+import com.axelor.studio.baml.tools.BpmTools;
 import com.axelor.studio.bpm.service.WkfCommonService;
 import com.axelor.studio.bpm.service.init.ProcessEngineService;
 import com.axelor.studio.db.DmnField;
 import com.axelor.studio.db.DmnTable;
 import com.axelor.studio.db.WkfDmnModel;
 import com.axelor.studio.db.repo.DmnTableRepository;
+import com.axelor.studio.dmn.service.DmnOutputBindingCache.OutputBinding;
+import com.axelor.studio.service.AppSettingsStudioService;
 import com.axelor.utils.ExceptionTool;
 import com.axelor.utils.context.FullContext;
-import com.axelor.utils.context.FullContextHelper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.persist.Transactional;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.camunda.bpm.dmn.engine.DmnDecisionTableResult;
+import org.camunda.bpm.engine.DecisionService;
 import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.repository.DecisionDefinition;
 import org.camunda.bpm.model.dmn.DmnModelInstance;
@@ -75,82 +89,360 @@ public class DmnServiceImpl implements DmnService {
   @Transactional
   public void executeDmn(String decisionDefinitionId, Model model) {
 
-    ProcessEngine processEngine = Beans.get(ProcessEngineService.class).getEngine();
+    DecisionService decisionService =
+        Beans.get(ProcessEngineService.class).getEngine().getDecisionService();
 
     FullContext context = new FullContext(model);
+    Map<String, Object> res = evaluateDecision(decisionService, decisionDefinitionId, context);
+    if (res != null) {
+      applyResult(decisionDefinitionId, context, res, new DmnLookupCache());
+    }
+
+    JpaRepository.of(EntityHelper.getEntityClass(model)).save(model);
+  }
+
+  /** Evaluate the decision on the record, returns the outputs of the first matched rule. */
+  protected Map<String, Object> evaluateDecision(
+      DecisionService decisionService, String decisionDefinitionId, FullContext context) {
+
+    Model model = (Model) context.getTarget();
     String varName = Beans.get(WkfCommonService.class).getVarName(EntityHelper.getEntity(model));
     Map<String, Object> modelMap = new HashMap<String, Object>();
     modelMap.put(varName, context);
     DmnDecisionTableResult dmnDecisionTableResult =
-        processEngine
-            .getDecisionService()
-            .evaluateDecisionTableByKey(decisionDefinitionId, modelMap);
+        decisionService.evaluateDecisionTableByKey(decisionDefinitionId, modelMap);
 
     List<Map<String, Object>> result = dmnDecisionTableResult.getResultList();
+
+    return CollectionUtils.isEmpty(result) ? null : result.get(0);
+  }
+
+  protected void applyResult(
+      String decisionDefinitionId,
+      FullContext context,
+      Map<String, Object> res,
+      DmnLookupCache lookupCache) {
+
+    for (OutputBinding binding :
+        getOutputBindings(decisionDefinitionId, (Model) context.getTarget())) {
+      addValue(context, binding, res.get(binding.getOutput()), lookupCache);
+    }
+  }
+
+  /** Search at once the related records of the outputs of all the given results. */
+  protected void prefetchRelations(
+      String decisionDefinitionId,
+      List<FullContext> contexts,
+      List<Map<String, Object>> results,
+      DmnLookupCache lookupCache) {
+
+    Map<OutputBinding, Set<Object>> values = new HashMap<>();
+
+    for (int i = 0; i < contexts.size(); i++) {
+      Model model = (Model) contexts.get(i).getTarget();
+      for (OutputBinding binding : getOutputBindings(decisionDefinitionId, model)) {
+        if (!binding.isResolved()) {
+          continue;
+        }
+        Object param = getParameter(results.get(i).get(binding.getOutput()));
+        Set<Object> bindingValues = values.computeIfAbsent(binding, key -> new HashSet<>());
+        if (param instanceof Collection) {
+          bindingValues.addAll((Collection<?>) param);
+        } else if (param != null) {
+          bindingValues.add(param);
+        }
+      }
+    }
+
+    values.forEach(
+        (binding, bindingValues) ->
+            lookupCache.prefetch(binding.getTargetModel(), binding.getSubField(), bindingValues));
+  }
+
+  @Override
+  public DmnBatchResult executeDmn(
+      String decisionDefinitionId,
+      Class<? extends Model> klass,
+      String filter,
+      Map<String, Object> params) {
+
+    AppSettingsStudioService appSettingsStudioService = Beans.get(AppSettingsStudioService.class);
+    int threads = Math.max(1, appSettingsStudioService.dmnBatchThreads());
+    int batchSize = Math.max(1, appSettingsStudioService.dmnBatchSize());
+    String tenantId = BpmTools.getCurentTenant();
+
+    long startTime = System.currentTimeMillis();
+    DmnBatchResult batchResult = new DmnBatchResult();
+    DmnLookupCache lookupCache = new DmnLookupCache();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("dmn-batch-" + decisionDefinitionId + "-%d")
+                .setDaemon(true)
+                .build());
+
+    // At most two chunks per thread are fetched ahead, the oldest one is awaited first.
+    Deque<Future<?>> chunks = new ArrayDeque<>();
+    Map<Future<?>, Integer> chunkSizes = new HashMap<>();
+    Future<?> awaited = null;
+    Exception failure = null;
+    try {
+      List<Long> ids = fetchIds(klass, filter, params, 0L, batchSize);
+      while (!ids.isEmpty()) {
+        if (chunks.size() >= threads * 2) {
+          awaited = chunks.poll();
+          awaited.get();
+        }
+        List<Long> chunk = ids;
+        Runnable task =
+            () -> executeChunk(decisionDefinitionId, klass, chunk, lookupCache, batchResult);
+        Future<?> future = executor.submit(() -> BpmTools.runInTenant(tenantId, task));
+        chunks.add(future);
+        chunkSizes.put(future, chunk.size());
+        ids = fetchIds(klass, filter, params, ids.get(ids.size() - 1), batchSize);
+      }
+      while (!chunks.isEmpty()) {
+        awaited = chunks.poll();
+        awaited.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = e;
+    } catch (ExecutionException e) {
+      // The chunk failed outside of its transaction, none of its records is counted.
+      batchResult.failed.addAndGet(chunkSizes.get(awaited));
+      failure = e;
+    } finally {
+      // Chunks not started yet, their records are not evaluated.
+      for (Runnable dropped : executor.shutdownNow()) {
+        batchResult.failed.addAndGet(chunkSizes.getOrDefault(dropped, 0));
+      }
+    }
+
+    log.info(
+        "Decision {} evaluated on {}: {}, time taken: {} ms",
+        decisionDefinitionId,
+        klass.getSimpleName(),
+        batchResult,
+        System.currentTimeMillis() - startTime);
+
+    if (failure != null) {
+      throw new IllegalStateException(
+          String.format(
+              "Error evaluating decision %s on %s, %s",
+              decisionDefinitionId, klass.getSimpleName(), batchResult),
+          failure instanceof ExecutionException ? failure.getCause() : failure);
+    }
+
+    return batchResult;
+  }
+
+  /** Next ids of the matching records, after the given id. */
+  protected List<Long> fetchIds(
+      Class<? extends Model> klass,
+      String filter,
+      Map<String, Object> params,
+      Long lastId,
+      int limit) {
+
+    String idFilter = "self.id > :_lastId";
+    if (!StringUtils.isBlank(filter)) {
+      idFilter = "(" + filter + ") AND " + idFilter;
+    }
+
+    Query<? extends Model> query = JPA.all(klass).filter(idFilter);
+    if (params != null) {
+      query.bind(params);
+    }
+
+    return query.bind("_lastId", lastId).order("id").select("id").fetch(limit, 0).stream()
+        .map(it -> (Long) it.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Evaluate the decision on a chunk of records in one transaction. A record is unchanged when its
+   * version is the same after the flush.
+   */
+  protected void executeChunk(
+      String decisionDefinitionId,
+      Class<? extends Model> klass,
+      List<Long> ids,
+      DmnLookupCache lookupCache,
+      DmnBatchResult batchResult) {
+
+    DecisionService decisionService =
+        Beans.get(ProcessEngineService.class).getEngine().getDecisionService();
+    Map<Long, Integer> versions = new HashMap<>();
+    // matched, unchanged and failed records
+    long[] counts = new long[3];
+
+    try {
+      JPA.runInTransaction(
+          () -> {
+            List<? extends Model> records =
+                JPA.all(klass).filter("self.id IN (:ids)").bind("ids", ids).fetch();
+
+            List<FullContext> contexts = new ArrayList<>();
+            List<Map<String, Object>> results = new ArrayList<>();
+
+            for (Model model : records) {
+              try {
+                Integer version = model.getVersion();
+                FullContext context = new FullContext(model);
+                Map<String, Object> res =
+                    evaluateDecision(decisionService, decisionDefinitionId, context);
+                if (res != null) {
+                  contexts.add(context);
+                  results.add(res);
+                }
+                versions.put(model.getId(), version);
+              } catch (Exception e) {
+                onRecordError(decisionDefinitionId, model, e);
+                counts[2]++;
+              }
+            }
+
+            prefetchRelations(decisionDefinitionId, contexts, results, lookupCache);
+
+            for (int i = 0; i < contexts.size(); i++) {
+              Model model = (Model) contexts.get(i).getTarget();
+              try {
+                applyResult(decisionDefinitionId, contexts.get(i), results.get(i), lookupCache);
+                JpaRepository.of(EntityHelper.getEntityClass(model)).save(model);
+                counts[0]++;
+              } catch (Exception e) {
+                versions.remove(model.getId());
+                onRecordError(decisionDefinitionId, model, e);
+                counts[2]++;
+              }
+            }
+
+            JPA.flush();
+
+            for (Model model : records) {
+              if (versions.containsKey(model.getId())
+                  && Objects.equals(versions.get(model.getId()), model.getVersion())) {
+                counts[1]++;
+              }
+            }
+          });
+    } catch (Exception e) {
+      log.error("Error evaluating decision {} on {} records", decisionDefinitionId, ids.size(), e);
+      batchResult.failed.addAndGet(ids.size());
+      return;
+    } finally {
+      JPA.clear();
+    }
+
+    batchResult.processed.addAndGet(versions.size());
+    batchResult.matched.addAndGet(counts[0]);
+    batchResult.unchanged.addAndGet(counts[1]);
+    batchResult.failed.addAndGet(counts[2]);
+  }
+
+  protected void onRecordError(String decisionDefinitionId, Model model, Exception e) {
+    log.warn("Error evaluating decision {} on record {}", decisionDefinitionId, model.getId(), e);
+    JPA.em().refresh(model);
+  }
+
+  protected List<OutputBinding> getOutputBindings(String decisionDefinitionId, Model model) {
+
+    String modelKey =
+        model instanceof MetaJsonRecord
+            ? ((MetaJsonRecord) model).getJsonModel()
+            : EntityHelper.getEntityClass(model).getName();
+
+    return DmnOutputBindingCache.get(
+        decisionDefinitionId, modelKey, () -> createOutputBindings(decisionDefinitionId, model));
+  }
+
+  protected List<OutputBinding> createOutputBindings(String decisionDefinitionId, Model model) {
+
+    List<OutputBinding> bindings = new ArrayList<>();
+
     DmnTable dmnTable =
         Beans.get(DmnTableRepository.class)
             .all()
             .filter("self.decisionId = ?1", decisionDefinitionId)
             .fetchOne();
 
-    if (dmnTable != null && !CollectionUtils.isEmpty(result)) {
-      Map<String, Object> res = result.get(0);
+    if (dmnTable != null && dmnTable.getOutputDmnFieldList() != null) {
       for (DmnField dmnField : dmnTable.getOutputDmnFieldList()) {
         if (dmnField.getField() != null) {
-          addValue(context, dmnField.getField(), res.get(dmnField.getName()), model);
+          OutputBinding binding =
+              createOutputBinding(dmnField.getName(), dmnField.getField(), model);
+          if (binding != null) {
+            bindings.add(binding);
+          }
         }
       }
     }
 
-    JpaRepository.of(EntityHelper.getEntityClass(model)).save(model);
+    log.debug("Output bindings of decision {}: {}", decisionDefinitionId, bindings.size());
+
+    return ImmutableList.copyOf(bindings);
   }
 
-  private void addValue(FullContext context, String field, Object value, Model model) {
+  private OutputBinding createOutputBinding(String output, String field, Model model) {
 
     if (!field.contains(".")) {
-      context.put(field, value);
-      return;
+      return OutputBinding.field(output, field);
     }
 
     if (field.startsWith(".") || field.endsWith(".")) {
-      return;
+      return null;
     }
 
     String fieldName = field.substring(0, field.indexOf("."));
     String subField = field.substring(field.indexOf(".") + 1);
 
-    log.debug("Process relational field: {}, value: {}", field, value);
     if (model instanceof MetaJsonRecord) {
-      context.put(
-          fieldName,
-          processMetaModelJson(
-              fieldName, subField, value, ((MetaJsonRecord) model).getJsonModel()));
-    } else {
-      context.put(
-          fieldName,
-          processMetaField(fieldName, subField, value, EntityHelper.getEntityClass(model)));
+      return processMetaModelJson(
+          output, fieldName, subField, ((MetaJsonRecord) model).getJsonModel());
     }
+
+    return processMetaField(output, fieldName, subField, EntityHelper.getEntityClass(model));
+  }
+
+  private void addValue(
+      FullContext context, OutputBinding binding, Object value, DmnLookupCache lookupCache) {
+
+    if (!binding.isRelational()) {
+      context.put(binding.getFieldName(), value);
+      return;
+    }
+
+    String fieldName = binding.getFieldName();
+
+    log.debug("Process relational field: {}, value: {}", fieldName, value);
+    context.put(fieldName, binding.isResolved() ? findResult(value, binding, lookupCache) : null);
     log.debug("Relational value added: {}", context.get(fieldName));
   }
 
-  private Object processMetaField(
-      String fieldName, String subField, Object value, Class<Model> entityClass) {
+  private OutputBinding processMetaField(
+      String output, String fieldName, String subField, Class<Model> entityClass) {
 
     Property property = Mapper.of(entityClass).getProperty(fieldName);
 
     if (property == null) {
-      return processMetaModelJson(fieldName, subField, value, entityClass);
+      return processMetaModelJson(output, fieldName, subField, entityClass);
+    }
+
+    if (property.getTarget() == null) {
+      return OutputBinding.unresolved(output, fieldName, subField);
     }
 
     String targetModel = property.getTarget().getName();
     boolean isCollection = property.isCollection();
     boolean isSet = property.getJavaType().isAssignableFrom(Set.class);
 
-    return findResult(value, subField, targetModel, isCollection, isSet);
+    return OutputBinding.relation(output, fieldName, subField, targetModel, isCollection, isSet);
   }
 
-  private Object processMetaModelJson(
-      String fieldName, String subField, Object value, Class<Model> entityClass) {
+  private OutputBinding processMetaModelJson(
+      String output, String fieldName, String subField, Class<Model> entityClass) {
 
     MetaJsonField jsonField =
         Beans.get(MetaJsonFieldRepository.class)
@@ -163,14 +455,14 @@ public class DmnServiceImpl implements DmnService {
         entityClass.getName(),
         jsonField);
     if (jsonField == null) {
-      return null;
+      return OutputBinding.unresolved(output, fieldName, subField);
     }
 
-    return processMetaJsonField(value, subField, jsonField);
+    return processMetaJsonField(output, fieldName, subField, jsonField);
   }
 
-  private Object processMetaModelJson(
-      String fieldName, String subField, Object value, String jsonModel) {
+  private OutputBinding processMetaModelJson(
+      String output, String fieldName, String subField, String jsonModel) {
 
     MetaJsonField jsonField =
         Beans.get(MetaJsonFieldRepository.class)
@@ -179,13 +471,14 @@ public class DmnServiceImpl implements DmnService {
             .fetchOne();
 
     if (jsonField == null) {
-      return null;
+      return OutputBinding.unresolved(output, fieldName, subField);
     }
 
-    return processMetaJsonField(value, subField, jsonField);
+    return processMetaJsonField(output, fieldName, subField, jsonField);
   }
 
-  private Object processMetaJsonField(Object value, String subField, MetaJsonField jsonField) {
+  private OutputBinding processMetaJsonField(
+      String output, String fieldName, String subField, MetaJsonField jsonField) {
 
     String type = jsonField.getType();
     String targetModel = null;
@@ -200,22 +493,23 @@ public class DmnServiceImpl implements DmnService {
     boolean isSet = type.contains(MANY_TO_MANY);
     boolean isCollection = isSet || type.contains("-to-many");
 
-    return findResult(value, subField, targetModel, isCollection, isSet);
+    return OutputBinding.relation(output, fieldName, subField, targetModel, isCollection, isSet);
   }
 
   @SuppressWarnings({"rawtypes", "unchecked"})
-  private Object findResult(
-      Object value, String subField, String targetModel, boolean isCollection, boolean isSet) {
+  private Object findResult(Object value, OutputBinding binding, DmnLookupCache lookupCache) {
 
     Object params = getParameter(value);
 
-    String query = getQuery(subField, params instanceof Collection);
-
-    log.debug("Find result for: {} , value: {}, targetModel: {}", subField, value, targetModel);
+    log.debug(
+        "Find result for: {} , value: {}, targetModel: {}",
+        binding.getSubField(),
+        value,
+        binding.getTargetModel());
 
-    if (isCollection) {
+    if (binding.isCollection()) {
       Collection resultCollection = null;
-      if (isSet) {
+      if (binding.isSet()) {
         resultCollection = new HashSet<>();
       } else {
         resultCollection = new ArrayList<>();
@@ -225,9 +519,8 @@ public class DmnServiceImpl implements DmnService {
         return resultCollection;
       }
 
-      for (FullContext res : FullContextHelper.filter(targetModel, query, params)) {
-        resultCollection.add(res.getTarget());
-      }
+      resultCollection.addAll(
+          lookupCache.find(binding.getTargetModel(), binding.getSubField(), params));
 
       return resultCollection;
     }
@@ -236,18 +529,9 @@ public class DmnServiceImpl implements DmnService {
       return null;
     }
 
-    return WkfContextHelper.filterOne(targetModel, query, params).getTarget();
-  }
-
-  private String getQuery(String subField, boolean collectionParameter) {
-
-    String operator = "=";
-    if (collectionParameter) {
-      operator = "in";
-    }
-    String query = "self." + subField + " " + operator + " ?1";
+    List<Model> result = lookupCache.find(binding.getTargetModel(), binding.getSubField(), params);
 
-    return query;
+    return result.isEmpty() ? null : result.get(0);
   }
 
   private Object getParameter(Object value) {
@@ -53,14 +53,20 @@ import com.axelor.studio.bpm.service.dashboard.WkfDashboardCommonService;
 import com.axelor.studio.bpm.service.dashboard.WkfDashboardCommonServiceImpl;
 import com.axelor.studio.bpm.service.dashboard.WkfDashboardService;
 import com.axelor.studio.bpm.service.dashboard.WkfDashboardServiceImpl;
+import com.axelor.studio.bpm.service.dashboard.WkfDashboardSnapshotService;
+import com.axelor.studio.bpm.service.dashboard.WkfDashboardSnapshotServiceImpl;
 import com.axelor.studio.bpm.service.deployment.BpmDeploymentService;
 import com.axelor.studio.bpm.service.deployment.BpmDeploymentServiceImpl;
 import com.axelor.studio.bpm.service.deployment.MetaAttrsService;
 import com.axelor.studio.bpm.service.deployment.MetaAttrsServiceImpl;
+import com.axelor.studio.bpm.service.execution.WkfContextService;
+import com.axelor.studio.bpm.service.execution.WkfContextServiceImpl;
 import com.axelor.studio.bpm.service.execution.WkfEmailService;
 import com.axelor.studio.bpm.service.execution.WkfEmailServiceImpl;
 import com.axelor.studio.bpm.service.execution.WkfInstanceService;
 import com.axelor.studio.bpm.service.execution.WkfInstanceServiceImpl;
+import com.axelor.studio.bpm.service.execution.WkfInstanceStatusService;
+import com.axelor.studio.bpm.service.execution.WkfInstanceStatusServiceImpl;
 import com.axelor.studio.bpm.service.execution.WkfTaskService;
 import com.axelor.studio.bpm.service.execution.WkfTaskServiceImpl;
 import com.axelor.studio.bpm.service.execution.WkfUserActionService;
@@ -68,6 +74,10 @@ import com.axelor.studio.bpm.service.execution.WkfUserActionServiceImpl;
 import com.axelor.studio.bpm.service.init.WkfProcessApplication;
 import com.axelor.studio.bpm.service.message.BpmErrorMessageService;
 import com.axelor.studio.bpm.service.message.BpmErrorMessageServiceImpl;
+import com.axelor.studio.bpm.service.message.WkfNotificationService;
+import com.axelor.studio.bpm.service.message.WkfNotificationServiceImpl;
+import com.axelor.studio.bpm.service.migration.WkfMigrationBatchService;
+import com.axelor.studio.bpm.service.migration.WkfMigrationBatchServiceImpl;
 import com.axelor.studio.bpm.service.migration.WkfMigrationService;
 import com.axelor.studio.bpm.service.migration.WkfMigrationServiceImpl;
 import com.axelor.studio.db.repo.BpmWkfDmnModelRepository;
@@ -162,6 +172,8 @@ public class StudioModule extends AxelorModule {
     bind(WkfEmailService.class).to(WkfEmailServiceImpl.class);
     bind(WkfInstanceService.class).to(WkfInstanceServiceImpl.class);
     bind(WkfTaskService.class).to(WkfTaskServiceImpl.class);
+    bind(WkfContextService.class).to(WkfContextServiceImpl.class);
+    bind(WkfInstanceStatusService.class).to(WkfInstanceStatusServiceImpl.class);
     bind(WkfUserActionService.class).to(WkfUserActionServiceImpl.class);
     bind(DmnDeploymentService.class).to(DmnDeploymentServiceImpl.class);
     bind(DmnService.class).to(DmnServiceImpl.class);
@@ -176,10 +188,13 @@ public class StudioModule extends AxelorModule {
     bind(BpmManagerDashboardService.class).to(BpmManagerDashboardServiceImpl.class);
     bind(BpmManagerDashboardUserService.class).to(BpmManagerDashboardUserServiceImpl.class);
     bind(BpmManagerDashboardTaskService.class).to(BpmManagerDashboardTaskServiceImpl.class);
+    bind(WkfDashboardSnapshotService.class).to(WkfDashboardSnapshotServiceImpl.class);
     bind(AppLoaderImportServiceImpl.class).to(AppLoaderImportBpmServiceImpl.class);
     bind(ServerStartListener.class);
 
     bind(BpmErrorMessageService.class).to(BpmErrorMessageServiceImpl.class);
+    bind(WkfNotificationService.class).to(WkfNotificationServiceImpl.class);
     bind(WkfMigrationService.class).to(WkfMigrationServiceImpl.class);
+    bind(WkfMigrationBatchService.class).to(WkfMigrationBatchServiceImpl.class);
   }
 }
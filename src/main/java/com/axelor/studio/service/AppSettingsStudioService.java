@@ -19,4 +19,54 @@ public interface AppSettingsStudioService extends AppSettingsMessageService {
   String surveyPublicUser();
 
   String surveyPublicPassword();
+
+  int bpmJobExecutorCorePoolSize();
+
+  int bpmJobExecutorMaxPoolSize();
+
+  int bpmJobExecutorQueueSize();
+
+  int bpmJobExecutorMaxJobsPerAcquisition();
+
+  int bpmJobExecutorLockTimeInMillis();
+
+  int bpmJobExecutorWaitTimeInMillis();
+
+  int bpmJobExecutorMaxWaitInMillis();
+
+  boolean bpmJobExecutorVirtualThreads();
+
+  int bpmJobExecutorTenantMaxBatches();
+
+  int bpmDashboardSnapshotRefreshInterval();
+
+  int bpmDashboardSnapshotMaxAge();
+
+  boolean bpmVariableMigrationHistory();
+
+  int bpmMigrationThreads();
+
+  int bpmMigrationChunkSize();
+
+  int bpmNotificationThreads();
+
+  int bpmNotificationPollInterval();
+
+  int bpmNotificationBatchSize();
+
+  int bpmNotificationMaxAttempts();
+
+  int dmnBatchThreads();
+
+  int dmnBatchSize();
+
+  int wsClientConnectTimeout();
+
+  int wsClientReadTimeout();
+
+  int wsClientMaxConnections();
+
+  int wsClientIdleTimeout();
+
+  int wsConnectorThreads();
 }
@@ -54,4 +54,129 @@ public class AppSettingsStudioServiceImpl extends AppSettingsMessageServiceImpl
   public String surveyPublicPassword() {
     return appSettings.get("survey.public.password");
   }
+
+  @Override
+  public int bpmJobExecutorCorePoolSize() {
+    return appSettings.getInt("studio.bpm.job-executor.core-pool-size", 3);
+  }
+
+  @Override
+  public int bpmJobExecutorMaxPoolSize() {
+    return appSettings.getInt("studio.bpm.job-executor.max-pool-size", 10);
+  }
+
+  @Override
+  public int bpmJobExecutorQueueSize() {
+    return appSettings.getInt("studio.bpm.job-executor.queue-size", 3);
+  }
+
+  @Override
+  public int bpmJobExecutorMaxJobsPerAcquisition() {
+    return appSettings.getInt("studio.bpm.job-executor.max-jobs-per-acquisition", 3);
+  }
+
+  @Override
+  public int bpmJobExecutorLockTimeInMillis() {
+    return appSettings.getInt("studio.bpm.job-executor.lock-time", 300000);
+  }
+
+  @Override
+  public int bpmJobExecutorWaitTimeInMillis() {
+    return appSettings.getInt("studio.bpm.job-executor.wait-time", 5000);
+  }
+
+  @Override
+  public int bpmJobExecutorMaxWaitInMillis() {
+    return appSettings.getInt("studio.bpm.job-executor.max-wait", 60000);
+  }
+
+  @Override
+  public boolean bpmJobExecutorVirtualThreads() {
+    return appSettings.getBoolean("studio.bpm.job-executor.virtual-threads", false);
+  }
+
+  @Override
+  public int bpmJobExecutorTenantMaxBatches() {
+    return appSettings.getInt("studio.bpm.job-executor.tenant-max-batches", 0);
+  }
+
+  @Override
+  public int bpmDashboardSnapshotRefreshInterval() {
+    return appSettings.getInt("studio.bpm.dashboard.snapshot-refresh-interval", 60);
+  }
+
+  @Override
+  public int bpmDashboardSnapshotMaxAge() {
+    return appSettings.getInt("studio.bpm.dashboard.snapshot-max-age", 3600);
+  }
+
+  @Override
+  public boolean bpmVariableMigrationHistory() {
+    return appSettings.getBoolean("studio.bpm.variable-migration.history", false);
+  }
+
+  @Override
+  public int bpmMigrationThreads() {
+    return appSettings.getInt("studio.bpm.migration.threads", 4);
+  }
+
+  @Override
+  public int bpmMigrationChunkSize() {
+    return appSettings.getInt("studio.bpm.migration.chunk-size", 200);
+  }
+
+  @Override
+  public int bpmNotificationThreads() {
+    return appSettings.getInt("studio.bpm.notification.threads", 2);
+  }
+
+  @Override
+  public int bpmNotificationPollInterval() {
+    return appSettings.getInt("studio.bpm.notification.poll-interval", 30);
+  }
+
+  @Override
+  public int bpmNotificationBatchSize() {
+    return appSettings.getInt("studio.bpm.notification.batch-size", 100);
+  }
+
+  @Override
+  public int bpmNotificationMaxAttempts() {
+    return appSettings.getInt("studio.bpm.notification.max-attempts", 5);
+  }
+
+  @Override
+  public int dmnBatchThreads() {
+    return appSettings.getInt("studio.dmn.batch.threads", 4);
+  }
+
+  @Override
+  public int dmnBatchSize() {
+    return appSettings.getInt("studio.dmn.batch.size", 500);
+  }
+
+  @Override
+  public int wsClientConnectTimeout() {
+    return appSettings.getInt("studio.ws.client.connect-timeout", 10000);
+  }
+
+  @Override
+  public int wsClientReadTimeout() {
+    return appSettings.getInt("studio.ws.client.read-timeout", 60000);
+  }
+
+  @Override
+  public int wsClientMaxConnections() {
+    return appSettings.getInt("studio.ws.client.max-connections", 20);
+  }
+
+  @Override
+  public int wsClientIdleTimeout() {
+    return appSettings.getInt("studio.ws.client.idle-timeout", 60);
+  }
+
+  @Override
+  public int wsConnectorThreads() {
+    return appSettings.getInt("studio.ws.connector.threads", 8);
+  }
 }
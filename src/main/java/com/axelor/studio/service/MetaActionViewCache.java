@@ -0,0 +1,117 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service;
+
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.meta.db.MetaAction;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.google.common.collect.ImmutableListMultimap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per tenant index of the action-views by the views they open.
+ *
+ * <p>The index is built on first lookup from the xml of the action-views, and dropped when a
+ * {@link MetaAction} is saved or removed. A lookup is a hash lookup in the current index.
+ */
+public class MetaActionViewCache {
+
+  protected static final int PAGE_SIZE = 500;
+
+  protected static final Pattern VIEW_NAME_PATTERN =
+      Pattern.compile("<view\\b[^>]*?\\bname\\s*=\\s*\"([^\"]+)\"");
+
+  private static final Map<String, ImmutableListMultimap<String, String>> INDEXES =
+      new ConcurrentHashMap<>();
+
+  private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
+  private MetaActionViewCache() {}
+
+  /** Names of the action-views opening the given view, ordered by id. */
+  public static List<String> getActions(String viewName) {
+    return getIndex(BpmTools.getCurentTenant()).get(viewName);
+  }
+
+  /** First action-view opening the given view, null if none. */
+  public static String getAction(String viewName) {
+    List<String> actions = getActions(viewName);
+    return actions.isEmpty() ? null : actions.get(0);
+  }
+
+  public static void invalidate() {
+    String tenantId = BpmTools.getCurentTenant();
+    getVersion(tenantId).incrementAndGet();
+    INDEXES.remove(tenantId);
+  }
+
+  protected static ImmutableListMultimap<String, String> getIndex(String tenantId) {
+
+    ImmutableListMultimap<String, String> index = INDEXES.get(tenantId);
+    if (index != null) {
+      return index;
+    }
+
+    // Not kept if an action changed during the load.
+    long version = getVersion(tenantId).get();
+    index = loadIndex();
+    if (getVersion(tenantId).get() == version) {
+      INDEXES.putIfAbsent(tenantId, index);
+    }
+
+    return index;
+  }
+
+  protected static AtomicLong getVersion(String tenantId) {
+    return VERSIONS.computeIfAbsent(tenantId, key -> new AtomicLong());
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected static ImmutableListMultimap<String, String> loadIndex() {
+
+    ImmutableListMultimap.Builder<String, String> builder = ImmutableListMultimap.builder();
+
+    Query<MetaAction> query =
+        JPA.all(MetaAction.class).filter("self.type = 'action-view'").order("id");
+
+    int offset = 0;
+    List<Map> actions;
+    do {
+      actions = query.select("name", "xml").fetch(PAGE_SIZE, offset);
+      for (Map action : actions) {
+        String xml = (String) action.get("xml");
+        if (xml == null) {
+          continue;
+        }
+        Matcher matcher = VIEW_NAME_PATTERN.matcher(xml);
+        while (matcher.find()) {
+          builder.put(matcher.group(1), (String) action.get("name"));
+        }
+      }
+      offset += PAGE_SIZE;
+    } while (actions.size() == PAGE_SIZE);
+
+    return builder.build();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service.ws;
+
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.db.WsConnector;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP clients of the web service connectors, one per connector and tenant.
+ *
+ * <p>Each client keeps a pool of persistent connections, so the calls of a connector reuse the
+ * open connections instead of connecting again on each call. The pool size and the timeouts come
+ * from the {@code studio.ws.client.*} settings, the connections idle for longer than the idle
+ * timeout are closed. The clients do not keep cookies, the session data of the connectors is sent
+ * with each request.
+ */
+@Singleton
+public class WsClientPool {
+
+  protected static final Logger log = LoggerFactory.getLogger(WsClientPool.class);
+
+  protected final AppSettingsStudioService appSettingsStudioService;
+
+  protected final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+
+  protected final AtomicLong requests = new AtomicLong();
+
+  @Inject
+  public WsClientPool(AppSettingsStudioService appSettingsStudioService) {
+    this.appSettingsStudioService = appSettingsStudioService;
+  }
+
+  public Client getClient(WsConnector wsConnector) {
+    return clients.computeIfAbsent(getKey(wsConnector), key -> createClient()).client;
+  }
+
+  protected String getKey(WsConnector wsConnector) {
+    return BpmTools.getCurentTenant() + "#" + wsConnector.getId();
+  }
+
+  protected PooledClient createClient() {
+
+    int connectTimeout = appSettingsStudioService.wsClientConnectTimeout();
+    int maxConnections = Math.max(1, appSettingsStudioService.wsClientMaxConnections());
+
+    PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+    manager.setMaxTotal(maxConnections);
+    manager.setDefaultMaxPerRoute(maxConnections);
+
+    RequestConfig requestConfig =
+        RequestConfig.custom()
+            .setConnectTimeout(connectTimeout)
+            .setConnectionRequestTimeout(connectTimeout)
+            .setSocketTimeout(appSettingsStudioService.wsClientReadTimeout())
+            .build();
+
+    CloseableHttpClient httpClient =
+        HttpClients.custom()
+            .setConnectionManager(manager)
+            .setDefaultRequestConfig(requestConfig)
+            .disableCookieManagement()
+            .evictExpiredConnections()
+            .evictIdleConnections(appSettingsStudioService.wsClientIdleTimeout(), TimeUnit.SECONDS)
+            .addInterceptorFirst(
+                (HttpRequestInterceptor) (request, context) -> requests.incrementAndGet())
+            .build();
+
+    Client client =
+        ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+            .httpEngine(new ApacheHttpClient43Engine(httpClient, true))
+            .build();
+
+    return new PooledClient(client, manager);
+  }
+
+  /** Connections of the pool of each connector, by tenant and connector id. */
+  public Map<String, PoolStats> getPoolStats() {
+    Map<String, PoolStats> stats = new HashMap<>();
+    clients.forEach((key, pooledClient) -> stats.put(key, pooledClient.manager.getTotalStats()));
+    return stats;
+  }
+
+  /** Requests sent by all the clients, retries and redirects included. */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public int getClientCount() {
+    return clients.size();
+  }
+
+  public void shutdown() {
+
+    clients.values().forEach(pooledClient -> pooledClient.client.close());
+
+    log.info("WS connector clients: {}, requests sent: {}", clients.size(), requests.get());
+
+    clients.clear();
+  }
+
+  protected static class PooledClient {
+
+    protected final Client client;
+
+    protected final PoolingHttpClientConnectionManager manager;
+
+    protected PooledClient(Client client, PoolingHttpClientConnectionManager manager) {
+      this.client = client;
+      this.manager = manager;
+    }
+  }
+}
@@ -18,12 +18,18 @@
 package com.axelor.studio.service.ws;
 
 import com.axelor.common.StringUtils;
+import com.axelor.db.EntityHelper;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.bpm.service.init.ProcessEngineService;
 import com.axelor.studio.db.*;
 import com.axelor.text.GroovyTemplates;
 import com.axelor.text.Templates;
 import com.axelor.utils.ExceptionTool;
+import com.axelor.utils.context.FullContext;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -39,11 +45,16 @@ import java.lang.invoke.MethodHandles;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
@@ -51,18 +62,35 @@ import javax.ws.rs.core.Response;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.client.utils.URIBuilder;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.impl.cfg.TransactionState;
+import org.camunda.bpm.engine.impl.context.Context;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class WsConnectoServiceImpl implements WsConnectorService {
 
+  protected static final String WS_CONNECTOR_INCIDENT = "failedWsConnector";
+  protected static final Pattern REQUEST_RESULT = Pattern.compile("\\b_(\\d+)\\b");
+
   protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   protected final SessionTypeFactory sessionTypeFactory;
+  protected final MediaTypeFactory mediaTypeFactory;
+  protected final WsClientPool wsClientPool;
+  protected final WsConnectorExecutor wsConnectorExecutor;
   protected SessionType sessionType = null;
 
   @Inject
-  public WsConnectoServiceImpl(SessionTypeFactory sessionTypeFactory) {
+  public WsConnectoServiceImpl(
+      SessionTypeFactory sessionTypeFactory,
+      MediaTypeFactory mediaTypeFactory,
+      WsClientPool wsClientPool,
+      WsConnectorExecutor wsConnectorExecutor) {
     this.sessionTypeFactory = sessionTypeFactory;
+    this.mediaTypeFactory = mediaTypeFactory;
+    this.wsClientPool = wsClientPool;
+    this.wsConnectorExecutor = wsConnectorExecutor;
   }
 
   @Override
@@ -81,7 +109,8 @@ public class WsConnectoServiceImpl implements WsConnectorService {
       ctx = new HashMap<>();
     }
 
-    Client client = ClientBuilder.newClient();
+    Client client = wsClientPool.getClient(wsConnector);
+    List<WsRequest> wsRequests = new ArrayList<>(wsConnector.getWsRequestList());
 
     Templates templates = Beans.get(GroovyTemplates.class);
     ctx.putAll(createContext(wsConnector, authenticator));
@@ -99,21 +128,29 @@ public class WsConnectoServiceImpl implements WsConnectorService {
         this.sessionType.extractSessionData(null, authenticator);
       } else if (this.sessionType != null) {
         Response wsResponse = callRequest(wsRequest, wsRequest.getWsUrl(), client, templates, ctx);
-        if (wsResponse.getStatus() == 401) {
-          throw new IllegalArgumentException(I18n.get("Error in authorization"));
-        } else {
-          this.sessionType.extractSessionData(wsResponse, authenticator);
+        try {
+          if (wsResponse.getStatus() == 401) {
+            throw new IllegalArgumentException(I18n.get("Error in authorization"));
+          } else {
+            this.sessionType.extractSessionData(wsResponse, authenticator);
+          }
+        } finally {
+          wsResponse.close();
         }
-        wsResponse.close();
       }
     }
 
+    if (Boolean.TRUE.equals(wsConnector.getParallelRequests()) && canRunInParallel(wsRequests)) {
+      callRequestsInParallel(wsConnector, authenticator, wsRequests, client, templates, ctx);
+      return ctx;
+    }
+
     String lastRepeatIf = null;
     int repeatRequestCount = 0;
     int count = 1;
     int repeatIndex = 0;
 
-    while (count < wsConnector.getWsRequestList().size() + 1) {
+    while (count < wsRequests.size() + 1) {
 
       ctx.put("_repeatIndex", repeatIndex);
 
@@ -130,7 +167,7 @@ public class WsConnectoServiceImpl implements WsConnectorService {
         ctx.put("_" + count, null);
       }
 
-      WsRequest wsRequest = (new ArrayList<>(wsConnector.getWsRequestList())).get(count - 1);
+      WsRequest wsRequest = wsRequests.get(count - 1);
       String repeatIf = wsRequest.getRepeatIf();
 
       String callIf = wsRequest.getCallIf();
@@ -145,53 +182,58 @@ public class WsConnectoServiceImpl implements WsConnectorService {
       String url = wsConnector.getBaseUrl() + "/" + wsRequest.getWsUrl();
 
       Response wsResponse = callRequest(wsRequest, url, client, templates, ctx);
+      try {
+        if (wsResponse.getStatus() == 401) {
 
-      if (wsResponse.getStatus() == 401) {
-
-        if (authenticator != null && authenticator.getAuthTypeSelect().equals("oauth2")) {
-          Beans.get(WsAuthenticatorService.class).refereshToken(authenticator).close();
-          ctx.putAll(createContext(wsConnector, authenticator));
-          wsResponse.close();
-          wsResponse = callRequest(wsRequest, url, client, templates, ctx);
-        }
+          if (authenticator != null && authenticator.getAuthTypeSelect().equals("oauth2")) {
+            Beans.get(WsAuthenticatorService.class).refereshToken(authenticator).close();
+            ctx.putAll(createContext(wsConnector, authenticator));
+            wsResponse.close();
+            wsResponse = callRequest(wsRequest, url, client, templates, ctx);
+          }
 
-        if (wsResponse == null || wsResponse.getStatus() == 401) {
-          throw new IllegalArgumentException(
-              String.format(
-                  I18n.get("Error in authorization of connector: %s"), wsConnector.getName()));
+          if (wsResponse == null || wsResponse.getStatus() == 401) {
+            throw new IllegalArgumentException(
+                String.format(
+                    I18n.get("Error in authorization of connector: %s"), wsConnector.getName()));
+          }
         }
-      }
 
-      // byte[] responseByte = wsResponse.readEntity(byte[].class);
-      ArrayList<Object> responseData = new ArrayList<>();
-      if (wsResponse.getMediaType() != null) {
-        MediaType mediaType = new MediaTypeFactory().get(wsResponse.getMediaType().getSubtype());
-        try {
+        // byte[] responseByte = wsResponse.readEntity(byte[].class);
+        ArrayList<Object> responseData = new ArrayList<>();
+        if (wsResponse.getMediaType() != null) {
+          MediaType mediaType = mediaTypeFactory.get(wsResponse.getMediaType().getSubtype());
+          try {
+            if (repeatIndex == 1) {
+              responseData.add(ctx.get("_" + count));
+              responseData.add(mediaType.parseResponse(wsResponse));
+              ctx.put("_" + count, responseData);
+            } else if (repeatIndex != 0) {
+              responseData = (ArrayList) ctx.get("_" + count);
+              responseData.add(mediaType.parseResponse(wsResponse));
+              ctx.put("_" + count, responseData);
+            } else {
+              ctx.put("_" + count, mediaType.parseResponse(wsResponse));
+            }
+          } catch (IOException e) {
+            ExceptionTool.trace(e);
+            ctx.put("_" + count, wsResponse.readEntity(byte[].class));
+          }
+        } else {
           if (repeatIndex == 1) {
             responseData.add(ctx.get("_" + count));
-            responseData.add(mediaType.parseResponse(wsResponse));
-            ctx.put("_" + count, responseData);
+            ctx.put("_" + count, responseData.add(wsResponse.readEntity(byte[].class)));
           } else if (repeatIndex != 0) {
             responseData = (ArrayList) ctx.get("_" + count);
-            responseData.add(mediaType.parseResponse(wsResponse));
+            responseData.add(wsResponse.readEntity(byte[].class));
             ctx.put("_" + count, responseData);
           } else {
-            ctx.put("_" + count, mediaType.parseResponse(wsResponse));
+            ctx.put("_" + count, wsResponse.readEntity(byte[].class));
           }
-        } catch (IOException e) {
-          ExceptionTool.trace(e);
-          ctx.put("_" + count, wsResponse.readEntity(byte[].class));
         }
-      } else {
-        if (repeatIndex == 1) {
-          responseData.add(ctx.get("_" + count));
-          ctx.put("_" + count, responseData.add(wsResponse.readEntity(byte[].class)));
-        } else if (repeatIndex != 0) {
-          responseData = (ArrayList) ctx.get("_" + count);
-          responseData.add(wsResponse.readEntity(byte[].class));
-          ctx.put("_" + count, responseData);
-        } else {
-          ctx.put("_" + count, wsResponse.readEntity(byte[].class));
+      } finally {
+        if (wsResponse != null) {
+          wsResponse.close();
         }
       }
 
@@ -210,7 +252,7 @@ public class WsConnectoServiceImpl implements WsConnectorService {
 
       count++;
 
-      if (count == (wsConnector.getWsRequestList().size() + 1) && lastRepeatIf != null) {
+      if (count == (wsRequests.size() + 1) && lastRepeatIf != null) {
         if (Boolean.parseBoolean(templates.fromText(lastRepeatIf).make(ctx).render())) {
           count = repeatRequestCount;
           repeatIndex++;
@@ -221,6 +263,295 @@ public class WsConnectoServiceImpl implements WsConnectorService {
     return ctx;
   }
 
+  /** The repeated requests depend on the order of the calls, they are always called in turn. */
+  protected boolean canRunInParallel(List<WsRequest> wsRequests) {
+    return wsRequests.size() > 1
+        && wsRequests.stream().allMatch(wsRequest -> StringUtils.isBlank(wsRequest.getRepeatIf()));
+  }
+
+  /**
+   * Call the requests by waves: a wave holds the requests whose results used in their templates
+   * are known, they are sent together and their results are added to the context once all of
+   * them are received. A request using the result of a next request is called before it, as the
+   * result is empty when the requests are called in turn.
+   */
+  protected void callRequestsInParallel(
+      WsConnector wsConnector,
+      WsAuthenticator authenticator,
+      List<WsRequest> wsRequests,
+      Client client,
+      Templates templates,
+      Map<String, Object> ctx) {
+
+    Map<Integer, Set<Integer>> dependencies = getDependencies(wsRequests);
+    Set<Integer> done = new HashSet<>();
+
+    ctx.put("_repeatIndex", 0);
+    for (int count = 1; count <= wsRequests.size(); count++) {
+      if (!ctx.containsKey("_" + count)) {
+        ctx.put("_" + count, null);
+      }
+    }
+
+    while (done.size() < wsRequests.size()) {
+      List<Integer> wave = new ArrayList<>();
+      for (int count = 1; count <= wsRequests.size(); count++) {
+        if (!done.contains(count) && done.containsAll(dependencies.get(count))) {
+          wave.add(count);
+        }
+      }
+
+      Map<Integer, CompletableFuture<Response>> responses = new LinkedHashMap<>();
+      try {
+        for (int count : wave) {
+          WsRequest wsRequest = wsRequests.get(count - 1);
+          String callIf = wsRequest.getCallIf();
+          if (callIf != null
+              && !Boolean.parseBoolean(templates.fromText(callIf).make(ctx).render())) {
+            continue;
+          }
+          String url = wsConnector.getBaseUrl() + "/" + wsRequest.getWsUrl();
+          Invocation invocation = buildRequest(wsRequest, url, client, templates, ctx);
+          responses.put(count, wsConnectorExecutor.invoke(invocation));
+        }
+
+        boolean tokenRefreshed = false;
+        Iterator<Map.Entry<Integer, CompletableFuture<Response>>> iterator =
+            responses.entrySet().iterator();
+        while (iterator.hasNext()) {
+          Map.Entry<Integer, CompletableFuture<Response>> entry = iterator.next();
+          iterator.remove();
+          int count = entry.getKey();
+          Response wsResponse = getResponse(entry.getValue());
+
+          try {
+            if (wsResponse.getStatus() == 401
+                && authenticator != null
+                && authenticator.getAuthTypeSelect().equals("oauth2")) {
+              if (!tokenRefreshed) {
+                Beans.get(WsAuthenticatorService.class).refereshToken(authenticator).close();
+                ctx.putAll(createContext(wsConnector, authenticator));
+                tokenRefreshed = true;
+              }
+              wsResponse.close();
+              WsRequest wsRequest = wsRequests.get(count - 1);
+              String url = wsConnector.getBaseUrl() + "/" + wsRequest.getWsUrl();
+              wsResponse = callRequest(wsRequest, url, client, templates, ctx);
+            }
+
+            if (wsResponse.getStatus() == 401) {
+              throw new IllegalArgumentException(
+                  String.format(
+                      I18n.get("Error in authorization of connector: %s"), wsConnector.getName()));
+            }
+
+            ctx.put("_" + count, readResponse(wsResponse));
+          } finally {
+            wsResponse.close();
+          }
+
+          log.debug("Request{}: {} ", count, ctx.get("_" + count));
+        }
+      } finally {
+        // The responses of the wave not read after a failure are closed once received.
+        responses.values().forEach(this::closeOnCompletion);
+      }
+
+      done.addAll(wave);
+    }
+  }
+
+  /**
+   * Requests to call before each request, by position: the requests whose results are used by the
+   * request, and the next requests using the result of the request.
+   */
+  protected Map<Integer, Set<Integer>> getDependencies(List<WsRequest> wsRequests) {
+
+    Map<Integer, Set<Integer>> dependencies = new HashMap<>();
+    for (int count = 1; count <= wsRequests.size(); count++) {
+      dependencies.put(count, new HashSet<>());
+    }
+
+    for (int count = 1; count <= wsRequests.size(); count++) {
+      Matcher matcher = REQUEST_RESULT.matcher(getTemplates(wsRequests.get(count - 1)));
+      while (matcher.find()) {
+        int used = NumberUtils.toInt(matcher.group(1));
+        if (used < count && used > 0) {
+          dependencies.get(count).add(used);
+        } else if (used > count && used <= wsRequests.size()) {
+          dependencies.get(used).add(count);
+        }
+      }
+    }
+
+    return dependencies;
+  }
+
+  /** All the texts of the request evaluated against the context. */
+  protected String getTemplates(WsRequest wsRequest) {
+
+    StringBuilder text = new StringBuilder();
+    text.append(wsRequest.getWsUrl()).append('\n').append(wsRequest.getCallIf()).append('\n');
+
+    for (WsKeyValueSelectionHeader header : wsRequest.getHeaderWsKeyValueList()) {
+      text.append(header.getWsValue()).append('\n');
+      if (header.getSubWsKeyValueList() != null) {
+        header.getSubWsKeyValueList().forEach(sub -> text.append(sub.getWsValue()).append('\n'));
+      }
+    }
+
+    Stream.concat(
+            wsRequest.getPayLoadWsKeyValueList().stream(),
+            wsRequest.getParameterWsKeyValueList().stream())
+        .forEach(wsKeyValue -> appendTemplates(wsKeyValue, text));
+
+    return text.toString();
+  }
+
+  protected void appendTemplates(WsKeyValue wsKeyValue, StringBuilder text) {
+    text.append(wsKeyValue.getWsKey()).append('\n').append(wsKeyValue.getWsValue()).append('\n');
+    if (wsKeyValue.getSubWsKeyValueList() != null) {
+      wsKeyValue.getSubWsKeyValueList().forEach(sub -> appendTemplates(sub, text));
+    }
+  }
+
+  protected Response getResponse(CompletableFuture<Response> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  protected void closeOnCompletion(CompletableFuture<Response> future) {
+    future.whenComplete(
+        (wsResponse, e) -> {
+          if (wsResponse != null) {
+            wsResponse.close();
+          }
+        });
+  }
+
+  protected Object readResponse(Response wsResponse) {
+    if (wsResponse.getMediaType() != null) {
+      MediaType mediaType = mediaTypeFactory.get(wsResponse.getMediaType().getSubtype());
+      try {
+        return mediaType.parseResponse(wsResponse);
+      } catch (IOException e) {
+        ExceptionTool.trace(e);
+      }
+    }
+    return wsResponse.readEntity(byte[].class);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Object>> callConnectorAsync(
+      WsConnector wsConnector, WsAuthenticator authenticator, Map<String, Object> ctx) {
+
+    return wsConnectorExecutor.submit(
+        BpmTools.getCurentTenant(), createAsyncCall(wsConnector, authenticator, ctx));
+  }
+
+  @Override
+  public void callConnectorAndSignal(
+      WsConnector wsConnector,
+      WsAuthenticator authenticator,
+      Map<String, Object> ctx,
+      DelegateExecution execution,
+      String resultVar) {
+
+    String tenantId = BpmTools.getCurentTenant();
+    String executionId = execution.getId();
+    String connectorName = wsConnector.getName();
+    Callable<Map<String, Object>> call = createAsyncCall(wsConnector, authenticator, ctx);
+
+    Runnable start =
+        () ->
+            wsConnectorExecutor.submit(
+                tenantId,
+                () -> {
+                  Map<String, Object> result = null;
+                  try {
+                    result = call.call();
+                  } catch (Exception e) {
+                    log.error("Error calling connector {}", connectorName, e);
+                    Beans.get(ProcessEngineService.class)
+                        .getEngine()
+                        .getRuntimeService()
+                        .createIncident(
+                            WS_CONNECTOR_INCIDENT, executionId, resultVar, e.getMessage());
+                    return null;
+                  }
+                  Beans.get(ProcessEngineService.class)
+                      .getEngine()
+                      .getRuntimeService()
+                      .signal(executionId, Collections.singletonMap(resultVar, getResults(result)));
+                  return result;
+                });
+
+    // The execution must be waiting in the database before it is signaled.
+    CommandContext commandContext = Context.getCommandContext();
+    if (commandContext == null) {
+      start.run();
+      return;
+    }
+    commandContext
+        .getTransactionContext()
+        .addTransactionListener(TransactionState.COMMITTED, committed -> start.run());
+  }
+
+  /**
+   * Call of the connector in another thread: the connector, the authenticator and the records of
+   * the context are read again in the session of the thread.
+   */
+  protected Callable<Map<String, Object>> createAsyncCall(
+      WsConnector wsConnector, WsAuthenticator authenticator, Map<String, Object> ctx) {
+
+    if (wsConnector.getId() == null) {
+      throw new IllegalArgumentException(I18n.get("The connector must be saved"));
+    }
+
+    Long connectorId = wsConnector.getId();
+    Long authenticatorId = authenticator != null ? authenticator.getId() : null;
+    Map<String, Object> asyncCtx = ctx != null ? new HashMap<>(ctx) : new HashMap<>();
+
+    return () -> {
+      asyncCtx.replaceAll((key, value) -> reload(value));
+      return Beans.get(WsConnectorService.class)
+          .callConnector(
+              JPA.find(WsConnector.class, connectorId),
+              authenticatorId != null ? JPA.find(WsAuthenticator.class, authenticatorId) : null,
+              asyncCtx);
+    };
+  }
+
+  protected Object reload(Object value) {
+    if (value instanceof FullContext) {
+      Object target = ((FullContext) value).getTarget();
+      return target instanceof Model ? new FullContext((Model) reload(target)) : value;
+    }
+    if (value instanceof Model && ((Model) value).getId() != null) {
+      Model model = (Model) value;
+      return JPA.find(EntityHelper.getEntityClass(model), model.getId());
+    }
+    return value;
+  }
+
+  /** Results of the requests, by request position. */
+  protected Map<String, Object> getResults(Map<String, Object> ctx) {
+    Map<String, Object> results = new HashMap<>();
+    ctx.forEach(
+        (key, value) -> {
+          if (key.matches("_\\d+")) {
+            results.put(key, value);
+          }
+        });
+    return results;
+  }
+
   @Override
   public Response callRequest(
       WsRequest wsRequest,
@@ -229,6 +560,16 @@ public class WsConnectoServiceImpl implements WsConnectorService {
       Templates templates,
       Map<String, Object> ctx) {
 
+    return buildRequest(wsRequest, url, client, templates, ctx).invoke();
+  }
+
+  protected Invocation buildRequest(
+      WsRequest wsRequest,
+      String url,
+      Client client,
+      Templates templates,
+      Map<String, Object> ctx) {
+
     url = templates.fromText(url).make(ctx).render();
     url = UrlEscapers.urlFragmentEscaper().escape(url);
 
@@ -305,7 +646,7 @@ public class WsConnectoServiceImpl implements WsConnectorService {
       this.sessionType.injectSessionData(request);
     }
 
-    return request.method(wsRequest.getRequestTypeSelect(), entity);
+    return request.build(wsRequest.getRequestTypeSelect(), entity);
   }
 
   @Override
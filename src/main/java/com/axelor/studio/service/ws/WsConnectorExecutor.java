@@ -0,0 +1,151 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service.ws;
+
+import com.axelor.studio.baml.tools.BpmTools;
+import com.axelor.studio.service.AppSettingsStudioService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Threads of the web service connectors.
+ *
+ * <p>The requests of a connector sent in parallel are invoked by the request pool, which runs a
+ * request in the calling thread when it is full. The asynchronous connector calls run in the
+ * connector pool, each one in the tenant of the caller with its own request scope and session.
+ * Both pools have {@code studio.ws.connector.threads} threads.
+ */
+@Singleton
+public class WsConnectorExecutor {
+
+  protected static final Logger log = LoggerFactory.getLogger(WsConnectorExecutor.class);
+
+  protected static final int QUEUE_CAPACITY = 1000;
+
+  protected static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  protected final ThreadPoolExecutor requestExecutor;
+
+  protected final ThreadPoolExecutor connectorExecutor;
+
+  @Inject
+  public WsConnectorExecutor(AppSettingsStudioService appSettingsStudioService) {
+    int threads = Math.max(1, appSettingsStudioService.wsConnectorThreads());
+    requestExecutor =
+        createExecutor(
+            threads, "ws-connector-request-%d", new ThreadPoolExecutor.CallerRunsPolicy());
+    connectorExecutor =
+        createExecutor(threads, "ws-connector-call-%d", new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  protected ThreadPoolExecutor createExecutor(
+      int threads, String nameFormat, RejectedExecutionHandler handler) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build(),
+            handler);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** Invoke the request in the request pool. */
+  public CompletableFuture<Response> invoke(Invocation invocation) {
+    return CompletableFuture.supplyAsync(invocation::invoke, requestExecutor);
+  }
+
+  /** Run the call in the connector pool, in the given tenant. */
+  public <T> CompletableFuture<T> submit(String tenantId, Callable<T> call) {
+
+    CompletableFuture<T> future = new CompletableFuture<>();
+
+    try {
+      connectorExecutor.execute(() -> run(tenantId, call, future));
+    } catch (RejectedExecutionException e) {
+      log.warn("WS connector queue is full, call rejected");
+      future.completeExceptionally(e);
+    }
+
+    return future;
+  }
+
+  protected <T> void run(String tenantId, Callable<T> call, CompletableFuture<T> future) {
+
+    AtomicReference<T> result = new AtomicReference<>();
+    try {
+      BpmTools.runInTenant(
+          tenantId,
+          () -> {
+            try {
+              result.set(call.call());
+            } catch (Exception e) {
+              future.completeExceptionally(e);
+            }
+          });
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+
+    // Completed once the session of the call is released.
+    future.complete(result.get());
+  }
+
+  public void shutdown() {
+
+    requestExecutor.shutdown();
+    connectorExecutor.shutdown();
+
+    try {
+      if (!connectorExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("WS connector calls cancelled: {}", connectorExecutor.shutdownNow().size());
+      }
+      if (!requestExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        requestExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      connectorExecutor.shutdownNow();
+      requestExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public int getQueueSize() {
+    return connectorExecutor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return connectorExecutor.getActiveCount() + requestExecutor.getActiveCount();
+  }
+}
@@ -23,9 +23,11 @@ import com.axelor.studio.db.WsRequest;
 import com.axelor.text.Templates;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Response;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
 
 public interface WsConnectorService {
 
@@ -39,4 +41,24 @@ public interface WsConnectorService {
 
   public Response callRequest(
       WsRequest wsRequest, String url, Client client, Templates templates, Map<String, Object> ctx);
+
+  /**
+   * Call the connector in another thread, in the tenant of the caller. The records of the context
+   * are read again in the session of the call.
+   */
+  public CompletableFuture<Map<String, Object>> callConnectorAsync(
+      WsConnector wsConnector, WsAuthenticator authenticator, Map<String, Object> ctx);
+
+  /**
+   * Call the connector in another thread once the current transaction is committed, then signal the
+   * execution with the results of the requests in the given variable. The execution must be in a
+   * wait state, e.g. a service task using {@code WsConnectorTaskExecution}, so no job thread waits
+   * for the responses. A failed call creates an incident on the execution.
+   */
+  public void callConnectorAndSignal(
+      WsConnector wsConnector,
+      WsAuthenticator authenticator,
+      Map<String, Object> ctx,
+      DelegateExecution execution,
+      String resultVar);
 }
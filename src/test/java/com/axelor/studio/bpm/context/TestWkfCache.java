@@ -0,0 +1,171 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.context;
+
+import com.axelor.studio.bpm.context.WkfCache.ProcessDefinitionInfo;
+import com.axelor.studio.bpm.context.WkfCache.Snapshot;
+import com.axelor.studio.bpm.context.WkfCache.TaskConfig;
+import com.axelor.studio.db.WkfModel;
+import com.axelor.studio.db.WkfProcess;
+import com.axelor.studio.db.WkfTaskConfig;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWkfCache {
+
+  protected TaskConfig createTaskConfig(Long id, Long wkfModelId, String name, String button) {
+    WkfModel wkfModel = new WkfModel();
+    wkfModel.setId(wkfModelId);
+    WkfTaskConfig config = new WkfTaskConfig();
+    config.setId(id);
+    config.setWkfModel(wkfModel);
+    config.setName(name);
+    config.setButton(button);
+    return new TaskConfig(config);
+  }
+
+  protected Snapshot createSnapshot() {
+    return new Snapshot(
+        Map.of(1L, "com.axelor.auth.db.User"),
+        Collections.singletonList(createTaskConfig(1L, 10L, "task1", "btn1,btn2")));
+  }
+
+  @Test
+  public void testSnapshotLoadedDuringChangeNotCached() {
+
+    String tenantId = "testSnapshotLoadedDuringChangeNotCached";
+
+    long version = WkfCache.getVersion(tenantId);
+    WkfCache.update(tenantId, snapshot -> snapshot.withoutTaskConfig(1L));
+
+    Snapshot stale = createSnapshot();
+    Assert.assertSame(stale, WkfCache.install(tenantId, version, stale));
+
+    Snapshot loaded = createSnapshot();
+    Assert.assertSame(loaded, WkfCache.install(tenantId, WkfCache.getVersion(tenantId), loaded));
+    Assert.assertSame(
+        loaded, WkfCache.install(tenantId, WkfCache.getVersion(tenantId), createSnapshot()));
+
+    WkfCache.remove(tenantId);
+  }
+
+  @Test
+  public void testChangeAppliedToCachedSnapshot() {
+
+    String tenantId = "testChangeAppliedToCachedSnapshot";
+
+    WkfCache.install(tenantId, WkfCache.getVersion(tenantId), createSnapshot());
+    WkfCache.update(
+        tenantId, snapshot -> snapshot.withTaskConfig(createTaskConfig(2L, 10L, "task2", "btn3")));
+
+    Snapshot snapshot = WkfCache.getSnapshot(tenantId);
+    Assert.assertTrue(snapshot.isWkfButton("btn3"));
+    Assert.assertNotNull(snapshot.getTaskConfig(10L, "task2"));
+
+    WkfCache.remove(tenantId);
+  }
+
+  @Test
+  public void testTaskConfigUpdate() {
+
+    Snapshot previous = createSnapshot();
+    Snapshot snapshot = previous.withTaskConfig(createTaskConfig(1L, 10L, "task1bis", "btn2,btn3"));
+
+    Assert.assertNull(snapshot.getTaskConfig(10L, "task1"));
+    Assert.assertEquals(Long.valueOf(1L), snapshot.getTaskConfig(10L, "task1bis").getId());
+    Assert.assertFalse(snapshot.isWkfButton("btn1"));
+    Assert.assertEquals(Collections.singleton(1L), snapshot.getTaskConfigIds("btn2"));
+    Assert.assertTrue(snapshot.isWkfButton("btn3"));
+
+    // The previous snapshot, still used by the readers, is unchanged.
+    Assert.assertNotNull(previous.getTaskConfig(10L, "task1"));
+    Assert.assertTrue(previous.isWkfButton("btn1"));
+    Assert.assertFalse(previous.isWkfButton("btn3"));
+  }
+
+  @Test
+  public void testTaskConfigRemove() {
+
+    Snapshot snapshot = createSnapshot().withoutTaskConfig(1L);
+
+    Assert.assertNull(snapshot.getTaskConfig(10L, "task1"));
+    Assert.assertFalse(snapshot.isWkfButton("btn1"));
+    Assert.assertTrue(snapshot.getTaskConfigIds("btn2").isEmpty());
+  }
+
+  @Test
+  public void testProcessConfigUpdate() {
+
+    Snapshot snapshot =
+        createSnapshot()
+            .withModel(1L, "com.axelor.auth.db.Group")
+            .withModel(2L, "com.axelor.auth.db.Group");
+
+    Assert.assertFalse(snapshot.isWkfModel("com.axelor.auth.db.User"));
+    Assert.assertEquals(2, snapshot.getProcessConfigIds("com.axelor.auth.db.Group").size());
+
+    snapshot = snapshot.withModel(1L, null);
+    Assert.assertEquals(
+        Collections.singleton(2L), snapshot.getProcessConfigIds("com.axelor.auth.db.Group"));
+    Assert.assertTrue(snapshot.getProcessConfigIds(null).isEmpty());
+  }
+
+  @Test
+  public void testProcessDefinitionWithoutProcessNotCached() {
+
+    WkfCache.putProcessDefinition(new ProcessDefinitionInfo("process1:1:1", "process1", null));
+    Assert.assertNull(WkfCache.getProcessDefinition("process1:1:1"));
+
+    WkfModel wkfModel = new WkfModel();
+    wkfModel.setId(10L);
+    WkfProcess wkfProcess = new WkfProcess();
+    wkfProcess.setId(5L);
+    wkfProcess.setWkfModel(wkfModel);
+    WkfCache.putProcessDefinition(
+        new ProcessDefinitionInfo("process1:1:1", "process1", wkfProcess));
+
+    ProcessDefinitionInfo definition = WkfCache.getProcessDefinition("process1:1:1");
+    Assert.assertNotNull(definition);
+    Assert.assertEquals(Long.valueOf(5L), definition.getWkfProcessId());
+    Assert.assertEquals(Long.valueOf(10L), definition.getWkfModelId());
+
+    WkfCache.invalidate();
+    Assert.assertNull(WkfCache.getProcessDefinition("process1:1:1"));
+  }
+
+  @Test
+  public void testTaskConfigNodeActions() {
+
+    WkfTaskConfig config = new WkfTaskConfig();
+    config.setId(1L);
+    TaskConfig taskConfig = new TaskConfig(config);
+    Assert.assertFalse(taskConfig.getCreateTask());
+    Assert.assertFalse(taskConfig.getNotificationEmail());
+    Assert.assertNull(taskConfig.getEmailEvent());
+
+    config.setCreateTask(true);
+    config.setNotificationEmail(true);
+    config.setEmailEvent("end");
+    taskConfig = new TaskConfig(config);
+    Assert.assertTrue(taskConfig.getCreateTask());
+    Assert.assertTrue(taskConfig.getNotificationEmail());
+    Assert.assertEquals("end", taskConfig.getEmailEvent());
+  }
+}
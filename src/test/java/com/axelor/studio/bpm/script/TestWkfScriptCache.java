@@ -0,0 +1,60 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.bpm.script;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import java.time.LocalDate;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWkfScriptCache {
+
+  @Test
+  public void testScriptCompiledOnce() {
+
+    String source = "value * 2 // testScriptCompiledOnce";
+    long misses = WkfScriptCache.getStats().missCount();
+    long hits = WkfScriptCache.getStats().hitCount();
+
+    Class<? extends Script> scriptClass = WkfScriptCache.getScriptClass(source);
+    Assert.assertSame(scriptClass, WkfScriptCache.getScriptClass(source));
+    Assert.assertEquals(misses + 1, WkfScriptCache.getStats().missCount());
+    Assert.assertEquals(hits + 1, WkfScriptCache.getStats().hitCount());
+
+    Binding binding = new Binding();
+    binding.setVariable("value", 21);
+    Assert.assertEquals(42, InvokerHelper.createScript(scriptClass, binding).run());
+  }
+
+  @Test
+  public void testDefaultImports() {
+
+    Class<? extends Script> scriptClass =
+        WkfScriptCache.getScriptClass("LocalDate.of(2022, 1, 1) // testDefaultImports");
+
+    Assert.assertEquals(
+        LocalDate.of(2022, 1, 1), InvokerHelper.createScript(scriptClass, new Binding()).run());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testInvalidScript() {
+    WkfScriptCache.getScriptClass("def (");
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.dmn.service;
+
+import com.axelor.studio.bpm.exception.BpmExceptionMessage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.camunda.bpm.model.dmn.Dmn;
+import org.camunda.bpm.model.dmn.DmnModelInstance;
+import org.camunda.bpm.model.dmn.instance.DecisionTable;
+import org.camunda.bpm.model.dmn.instance.Rule;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDmnImport {
+
+  protected static final String DMN =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<definitions xmlns=\"https://www.omg.org/spec/DMN/20191111/MODEL/\""
+          + " id=\"definitions\" name=\"Test\" namespace=\"http://camunda.org/schema/1.0/dmn\">\n"
+          + "  <decision id=\"decision1\" name=\"Decision 1\">\n"
+          + "    <decisionTable id=\"table1\">\n"
+          + "      <input id=\"input1\" label=\"Amount\">\n"
+          + "        <inputExpression id=\"inputExpression1\" typeRef=\"integer\">\n"
+          + "          <text>amount</text>\n"
+          + "        </inputExpression>\n"
+          + "      </input>\n"
+          + "      <output id=\"output1\" label=\"Result\" name=\"result\" typeRef=\"string\"/>\n"
+          + "      <rule id=\"previous\">\n"
+          + "        <inputEntry id=\"previousInput\"><text>-</text></inputEntry>\n"
+          + "        <outputEntry id=\"previousOutput\"><text>\"none\"</text></outputEntry>\n"
+          + "      </rule>\n"
+          + "    </decisionTable>\n"
+          + "  </decision>\n"
+          + "</definitions>";
+
+  @org.junit.Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  protected DmnImportServiceImpl importService = new DmnImportServiceImpl();
+
+  protected DmnModelInstance readModel() {
+    return Dmn.readModelFromStream(new ByteArrayInputStream(DMN.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  protected List<Rule> getRules(DmnModelInstance dmnModelInstance) {
+    return new ArrayList<>(
+        dmnModelInstance.getModelElementsByType(DecisionTable.class).iterator().next().getRules());
+  }
+
+  protected File writeCsv(String fileName, String content) throws Exception {
+    File file = folder.newFile(fileName);
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  protected void checkRules(List<Rule> rules) {
+
+    Assert.assertEquals(2, rules.size());
+
+    Rule first = rules.get(0);
+    Assert.assertEquals("> 10", first.getInputEntries().iterator().next().getTextContent());
+    Assert.assertEquals("\"high\"", first.getOutputEntries().iterator().next().getTextContent());
+    Assert.assertEquals("Large amounts", first.getDescription().getTextContent());
+
+    Rule second = rules.get(1);
+    Assert.assertEquals("<= 10", second.getInputEntries().iterator().next().getTextContent());
+    Assert.assertEquals("\"low\"", second.getOutputEntries().iterator().next().getTextContent());
+  }
+
+  @Test
+  public void testCsvImport() throws Exception {
+
+    File file =
+        writeCsv(
+            "decision1.csv",
+            "Decision 1\n"
+                + "Amount(input1),Result(output1),Annotation\n"
+                + "> 10,\"\"\"high\"\"\",Large amounts\n"
+                + ",,\n"
+                + "<= 10,\"\"\"low\"\"\",\n");
+
+    DmnModelInstance dmnModelInstance = readModel();
+    importService.processCsv(file, dmnModelInstance);
+
+    checkRules(getRules(dmnModelInstance));
+  }
+
+  @Test
+  public void testCsvImportOnlyTable() throws Exception {
+
+    File file =
+        writeCsv(
+            "rules.csv",
+            "Decision 1\n"
+                + "Amount(input1),Result(output1),Annotation\n"
+                + "> 10,\"\"\"high\"\"\",Large amounts\n"
+                + "<= 10,\"\"\"low\"\"\"\n");
+
+    DmnModelInstance dmnModelInstance = readModel();
+    importService.processCsv(file, dmnModelInstance);
+
+    checkRules(getRules(dmnModelInstance));
+  }
+
+  @Test
+  public void testXlsxImport() throws Exception {
+
+    File file = folder.newFile("decision1.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook();
+        OutputStream out = new FileOutputStream(file)) {
+      Sheet sheet = workbook.createSheet("decision1");
+      sheet.createRow(0).createCell(0).setCellValue("Decision 1");
+      Row header = sheet.createRow(1);
+      header.createCell(0).setCellValue("Amount(input1)");
+      header.createCell(1).setCellValue("Result(output1)");
+      header.createCell(2).setCellValue("Annotation");
+      Row first = sheet.createRow(2);
+      first.createCell(0).setCellValue("> 10");
+      first.createCell(1).setCellValue("\"high\"");
+      first.createCell(2).setCellValue("Large amounts");
+      // Empty row, skipped.
+      sheet.createRow(3);
+      Row second = sheet.createRow(4);
+      second.createCell(0).setCellValue("<= 10");
+      second.createCell(1).setCellValue("\"low\"");
+      workbook.write(out);
+    }
+
+    DmnModelInstance dmnModelInstance = readModel();
+    importService.processXlsx(file, dmnModelInstance);
+
+    checkRules(getRules(dmnModelInstance));
+  }
+
+  @Test
+  public void testUnknownTableIgnored() throws Exception {
+
+    File file = folder.newFile("decision1.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook();
+        OutputStream out = new FileOutputStream(file)) {
+      workbook.createSheet("other").createRow(1).createCell(0).setCellValue("Unknown");
+      workbook.write(out);
+    }
+
+    DmnModelInstance dmnModelInstance = readModel();
+    importService.processXlsx(file, dmnModelInstance);
+
+    Assert.assertEquals(1, getRules(dmnModelInstance).size());
+  }
+
+  @Test
+  public void testEmptySheetIgnored() throws Exception {
+
+    File file = folder.newFile("decision1.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook();
+        OutputStream out = new FileOutputStream(file)) {
+      workbook.createSheet("decision1").createRow(0).createCell(0).setCellValue("Decision 1");
+      workbook.write(out);
+    }
+
+    DmnModelInstance dmnModelInstance = readModel();
+    importService.processXlsx(file, dmnModelInstance);
+
+    Assert.assertEquals(1, getRules(dmnModelInstance).size());
+  }
+
+  @Test
+  public void testXlsxMissingHeader() throws Exception {
+
+    File file = folder.newFile("decision1.xlsx");
+    try (XSSFWorkbook workbook = new XSSFWorkbook();
+        OutputStream out = new FileOutputStream(file)) {
+      Sheet sheet = workbook.createSheet("decision1");
+      sheet.createRow(0).createCell(0).setCellValue("Decision 1");
+      Row first = sheet.createRow(2);
+      first.createCell(0).setCellValue("> 10");
+      first.createCell(1).setCellValue("\"high\"");
+      workbook.write(out);
+    }
+
+    try {
+      importService.processXlsx(file, readModel());
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(BpmExceptionMessage.INVALID_HEADER, e.getMessage());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testInvalidHeader() throws Exception {
+
+    File file =
+        writeCsv("decision1.csv", "Decision 1\nAmount(input1),Unknown\n> 10,\"\"\"high\"\"\"\n");
+
+    importService.processCsv(file, readModel());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMissingOutput() throws Exception {
+
+    File file = writeCsv("decision1.csv", "Decision 1\nAmount(input1)\n> 10\n");
+
+    importService.processCsv(file, readModel());
+  }
+}
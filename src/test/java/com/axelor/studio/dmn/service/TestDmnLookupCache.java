@@ -0,0 +1,141 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.dmn.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDmnLookupCache {
+
+  protected static final String MODEL = "com.axelor.auth.db.User";
+
+  protected static class TestLookupCache extends DmnLookupCache {
+
+    protected final Map<Object, Long> records = new HashMap<>();
+
+    protected final List<List<Object>> groupedSearches = new ArrayList<>();
+
+    protected final List<Object> searches = new ArrayList<>();
+
+    protected boolean invalidValues;
+
+    @Override
+    protected Map<String, List<Long>> search(
+        String targetModel, String subField, List<Object> values) {
+
+      if (invalidValues) {
+        throw new IllegalArgumentException();
+      }
+
+      groupedSearches.add(values);
+      Map<String, List<Long>> found = new HashMap<>();
+      for (Object value : values) {
+        if (records.containsKey(value)) {
+          found.put(
+              getKey(targetModel, subField, value), Collections.singletonList(records.get(value)));
+        }
+      }
+      return found;
+    }
+
+    @Override
+    protected List<Long> search(String targetModel, String subField, Object value) {
+      searches.add(value);
+      return records.containsKey(value)
+          ? Collections.singletonList(records.get(value))
+          : Collections.emptyList();
+    }
+  }
+
+  protected TestLookupCache createCache() {
+    TestLookupCache cache = new TestLookupCache();
+    cache.records.put("a", 1L);
+    cache.records.put("b", 2L);
+    return cache;
+  }
+
+  @Test
+  public void testGroupedSearch() {
+
+    TestLookupCache cache = createCache();
+
+    Assert.assertEquals(
+        Arrays.asList(1L, 2L), cache.getIds(MODEL, "code", Arrays.asList("a", "b", "c")));
+    Assert.assertEquals(1, cache.groupedSearches.size());
+    // Not found by the grouped search, kept as matching no record.
+    Assert.assertTrue(cache.searches.isEmpty());
+  }
+
+  @Test
+  public void testValuesSearchedOnce() {
+
+    TestLookupCache cache = createCache();
+    cache.getIds(MODEL, "code", Arrays.asList("a", "b", "c"));
+    cache.groupedSearches.clear();
+    cache.searches.clear();
+
+    Assert.assertEquals(
+        Collections.singletonList(2L), cache.getIds(MODEL, "code", Arrays.asList("b", "c")));
+    Assert.assertTrue(cache.groupedSearches.isEmpty());
+    Assert.assertTrue(cache.searches.isEmpty());
+
+    // Same value, other field.
+    Assert.assertEquals(
+        Collections.singletonList(1L), cache.getIds(MODEL, "name", Collections.singletonList("a")));
+    Assert.assertEquals(Collections.singletonList("a"), cache.searches);
+  }
+
+  @Test
+  public void testSingleValueSearch() {
+
+    TestLookupCache cache = createCache();
+
+    Assert.assertEquals(
+        Collections.singletonList(1L), cache.getIds(MODEL, "code", Arrays.asList("a", "a", null)));
+    Assert.assertTrue(cache.groupedSearches.isEmpty());
+    Assert.assertEquals(Collections.singletonList("a"), cache.searches);
+  }
+
+  @Test
+  public void testExpressionSearchedByValue() {
+
+    TestLookupCache cache = createCache();
+
+    Assert.assertEquals(
+        Arrays.asList(1L, 2L), cache.getIds(MODEL, "code.trim()", Arrays.asList("a", "b")));
+    Assert.assertTrue(cache.groupedSearches.isEmpty());
+    Assert.assertEquals(Arrays.asList("a", "b"), cache.searches);
+  }
+
+  @Test
+  public void testInvalidValuesSearchedByValue() {
+
+    TestLookupCache cache = createCache();
+    cache.invalidValues = true;
+
+    Assert.assertEquals(
+        Arrays.asList(1L, 2L), cache.getIds(MODEL, "code", Arrays.asList("a", "b")));
+    Assert.assertEquals(Arrays.asList("a", "b"), cache.searches);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2022 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service.ws;
+
+import com.axelor.studio.db.WsKeyValue;
+import com.axelor.studio.db.WsKeyValueSelectionHeader;
+import com.axelor.studio.db.WsRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWsConnectorDependencies {
+
+  protected WsConnectoServiceImpl wsConnectorService =
+      new WsConnectoServiceImpl(null, null, null, null);
+
+  protected WsRequest createRequest(String wsUrl) {
+    WsRequest wsRequest = new WsRequest();
+    wsRequest.setWsUrl(wsUrl);
+    wsRequest.setHeaderWsKeyValueList(new ArrayList<>());
+    wsRequest.setPayLoadWsKeyValueList(new ArrayList<>());
+    wsRequest.setParameterWsKeyValueList(new ArrayList<>());
+    return wsRequest;
+  }
+
+  protected WsKeyValue createKeyValue(String wsKey, String wsValue) {
+    WsKeyValue wsKeyValue = new WsKeyValue();
+    wsKeyValue.setWsKey(wsKey);
+    wsKeyValue.setWsValue(wsValue);
+    return wsKeyValue;
+  }
+
+  protected Set<Integer> set(Integer... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+
+  @Test
+  public void testIndependentRequests() {
+
+    List<WsRequest> wsRequests =
+        Arrays.asList(createRequest("api/users"), createRequest("api/groups"));
+
+    Map<Integer, Set<Integer>> dependencies = wsConnectorService.getDependencies(wsRequests);
+
+    Assert.assertEquals(Collections.emptySet(), dependencies.get(1));
+    Assert.assertEquals(Collections.emptySet(), dependencies.get(2));
+  }
+
+  @Test
+  public void testPreviousResultsUsed() {
+
+    WsRequest login = createRequest("api/login");
+    WsRequest items = createRequest("api/items?token=${_1.token}");
+    WsRequest other = createRequest("api/other");
+    WsRequest update = createRequest("api/update");
+    update.getPayLoadWsKeyValueList().add(createKeyValue("item", "_2[0].id"));
+
+    WsKeyValueSelectionHeader header = new WsKeyValueSelectionHeader();
+    header.setWsKey("Authorization");
+    header.setWsValue("Bearer ${_1.token}");
+    update.getHeaderWsKeyValueList().add(header);
+
+    Map<Integer, Set<Integer>> dependencies =
+        wsConnectorService.getDependencies(Arrays.asList(login, items, other, update));
+
+    Assert.assertEquals(set(), dependencies.get(1));
+    Assert.assertEquals(set(1), dependencies.get(2));
+    Assert.assertEquals(set(), dependencies.get(3));
+    Assert.assertEquals(set(1, 2), dependencies.get(4));
+  }
+
+  @Test
+  public void testSubValuesAndConditionsUsed() {
+
+    WsRequest first = createRequest("api/first");
+    WsRequest second = createRequest("api/second");
+    second.setCallIf("${_1 != null}");
+    WsRequest third = createRequest("api/third");
+    WsKeyValue parent = createKeyValue("filter", null);
+    parent.setSubWsKeyValueList(new ArrayList<>());
+    parent.getSubWsKeyValueList().add(createKeyValue("id", "_2.id"));
+    third.getParameterWsKeyValueList().add(parent);
+
+    Map<Integer, Set<Integer>> dependencies =
+        wsConnectorService.getDependencies(Arrays.asList(first, second, third));
+
+    Assert.assertEquals(set(1), dependencies.get(2));
+    Assert.assertEquals(set(2), dependencies.get(3));
+  }
+
+  @Test
+  public void testNextResultUsed() {
+
+    // The result of the next request is empty when the first one is called, as in turn.
+    WsRequest first = createRequest("api/first?value=${_2}");
+    WsRequest second = createRequest("api/second");
+
+    Map<Integer, Set<Integer>> dependencies =
+        wsConnectorService.getDependencies(Arrays.asList(first, second));
+
+    Assert.assertEquals(set(), dependencies.get(1));
+    Assert.assertEquals(set(1), dependencies.get(2));
+  }
+
+  @Test
+  public void testUnknownReferencesIgnored() {
+
+    WsRequest first = createRequest("api/first?a=${_0}&b=${_5}&c=${my_2}");
+    WsRequest second = createRequest("api/second?value=${_2}");
+
+    Map<Integer, Set<Integer>> dependencies =
+        wsConnectorService.getDependencies(Arrays.asList(first, second));
+
+    Assert.assertEquals(set(), dependencies.get(1));
+    Assert.assertEquals(set(), dependencies.get(2));
+  }
+}